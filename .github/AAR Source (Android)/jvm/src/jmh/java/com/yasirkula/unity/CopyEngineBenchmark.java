@@ -0,0 +1,160 @@
+package com.yasirkula.unity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the ways FileBrowserCopyEngine and FileBrowserPipelinedCopy copy a file: a single-threaded stream copy with various
+// buffer sizes, FileChannel.transferTo and the pipelined copy that reads and writes on separate threads
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CopyEngineBenchmark
+{
+	@Param( { "65536", "4194304", "67108864" } )
+	public int fileSize;
+
+	private File directory;
+	private File source;
+	private File destination;
+
+	@State( Scope.Thread )
+	public static class Buffer
+	{
+		@Param( { "8192", "65536", "524288" } )
+		public int bufferSize;
+
+		public byte[] buffer;
+
+		@Setup( Level.Trial )
+		public void Setup()
+		{
+			buffer = new byte[bufferSize];
+		}
+	}
+
+	@Setup( Level.Trial )
+	public void Setup() throws IOException
+	{
+		directory = File.createTempFile( "CopyEngineBenchmark", "" );
+		directory.delete();
+		directory.mkdirs();
+
+		source = new File( directory, "source" );
+		destination = new File( directory, "destination" );
+
+		byte[] data = new byte[1024 * 1024];
+		new Random( 1L ).nextBytes( data );
+
+		FileOutputStream output = new FileOutputStream( source );
+		try
+		{
+			for( int remaining = fileSize; remaining > 0; remaining -= data.length )
+				output.write( data, 0, Math.min( remaining, data.length ) );
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+
+	@TearDown( Level.Trial )
+	public void TearDown()
+	{
+		source.delete();
+		destination.delete();
+		directory.delete();
+	}
+
+	@Benchmark
+	public long CopyStream( Buffer buffer ) throws IOException
+	{
+		FileInputStream input = new FileInputStream( source );
+		try
+		{
+			FileOutputStream output = new FileOutputStream( destination, false );
+			try
+			{
+				return FileBrowserCopyEngine.Copy( input, output, buffer.buffer );
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	@Benchmark
+	public long CopyPooledStream() throws IOException
+	{
+		FileInputStream input = new FileInputStream( source );
+		try
+		{
+			FileOutputStream output = new FileOutputStream( destination, false );
+			try
+			{
+				return FileBrowserCopyEngine.Copy( input, output );
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	@Benchmark
+	public long CopyChannel() throws IOException
+	{
+		return FileBrowserCopyEngine.CopyFile( source, destination );
+	}
+
+	@Benchmark
+	public long CopyPipelined() throws IOException
+	{
+		FileInputStream input = new FileInputStream( source );
+		try
+		{
+			FileOutputStream output = new FileOutputStream( destination, false );
+			try
+			{
+				return FileBrowserPipelinedCopy.Copy( input, output );
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.yasirkula.unity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+// Measures encoding/decoding folder listings, building columnar listings and diffing two listings of a large folder
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ListingCodecBenchmark
+{
+	private static final String TREE_URI_PREFIX = "content://com.android.externalstorage.documents/tree/primary%3ADCIM";
+
+	@Param( { "100", "10000" } )
+	public int entryCount;
+
+	private ArrayList<FileBrowserEntryInfo> entries;
+	private ArrayList<FileBrowserEntryInfo> modifiedEntries;
+	private HashMap<String, FileBrowserEntryInfo> contents;
+	private HashMap<String, FileBrowserEntryInfo> modifiedContents;
+	private String listing;
+	private String listingWithAttributes;
+
+	@Setup( Level.Trial )
+	public void Setup()
+	{
+		entries = new ArrayList<FileBrowserEntryInfo>( entryCount );
+		modifiedEntries = new ArrayList<FileBrowserEntryInfo>( entryCount );
+		for( int i = 0; i < entryCount; i++ )
+		{
+			String name = ( i % 10 == 0 ) ? ( "Folder " + i ) : ( "IMG_2024" + i + ".jpg" );
+			FileBrowserEntryInfo entry = new FileBrowserEntryInfo( name, FileBrowserPathUtils.BuildDocumentUri( TREE_URI_PREFIX, "primary:DCIM/" + name ), i % 10 == 0, i * 1024L, 1700000000000L + i );
+			entries.add( entry );
+
+			// Every 20th entry is modified and every 50th entry is deleted
+			if( i % 50 != 0 )
+				modifiedEntries.add( i % 20 == 0 ? new FileBrowserEntryInfo( entry.name, entry.rawUri, entry.isDirectory, entry.size + 1L, entry.lastModified + 1L ) : entry );
+		}
+
+		contents = FileBrowserListingDiff.ToMap( entries );
+		modifiedContents = FileBrowserListingDiff.ToMap( modifiedEntries );
+		listing = FileBrowserListingCodec.Encode( entries, false );
+		listingWithAttributes = FileBrowserListingCodec.Encode( entries, true );
+	}
+
+	@Benchmark
+	public String Encode()
+	{
+		return FileBrowserListingCodec.Encode( entries, false );
+	}
+
+	@Benchmark
+	public String EncodeWithAttributes()
+	{
+		return FileBrowserListingCodec.Encode( entries, true );
+	}
+
+	@Benchmark
+	public ArrayList<FileBrowserEntryInfo> Decode()
+	{
+		return FileBrowserListingCodec.Decode( listing, false );
+	}
+
+	@Benchmark
+	public ArrayList<FileBrowserEntryInfo> DecodeWithAttributes()
+	{
+		return FileBrowserListingCodec.Decode( listingWithAttributes, true );
+	}
+
+	@Benchmark
+	public int BuildColumnarListing()
+	{
+		FileBrowserColumnarListing result = new FileBrowserColumnarListing( TREE_URI_PREFIX, entryCount );
+		for( int i = 0; i < entries.size(); i++ )
+		{
+			FileBrowserEntryInfo entry = entries.get( i );
+			result.Add( entry.name, "primary:DCIM/" + entry.name, entry.isDirectory, entry.size, entry.lastModified );
+		}
+
+		return result.IndexOf( entries.get( entries.size() - 1 ).name );
+	}
+
+	@Benchmark
+	public int Diff()
+	{
+		StringBuilder result = new StringBuilder( 1024 );
+		return FileBrowserListingDiff.AppendChanges( result, contents, modifiedEntries, modifiedContents, true );
+	}
+}
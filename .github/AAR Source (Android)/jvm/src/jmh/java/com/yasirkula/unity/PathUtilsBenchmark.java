@@ -0,0 +1,58 @@
+package com.yasirkula.unity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Measures the string operations that replace android.net.Uri parsing/building for each entry of a listing
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PathUtilsBenchmark
+{
+	private static final String DOCUMENT_URI = "content://com.android.externalstorage.documents/tree/primary%3ADCIM%2FCamera/document/primary%3ADCIM%2FCamera%2FIMG_20240101_120000.jpg";
+	private static final String TREE_URI_PREFIX = "content://com.android.externalstorage.documents/tree/primary%3ADCIM%2FCamera";
+	private static final String DOCUMENT_ID = "primary:DCIM/Camera/Holiday photos (2024)/IMG_20240101_120000.jpg";
+
+	@Benchmark
+	public String GetAuthority()
+	{
+		return FileBrowserPathUtils.GetAuthority( DOCUMENT_URI );
+	}
+
+	@Benchmark
+	public String GetTreeUriPrefix()
+	{
+		return FileBrowserPathUtils.GetTreeUriPrefix( DOCUMENT_URI );
+	}
+
+	@Benchmark
+	public String EncodeUriComponent()
+	{
+		return FileBrowserPathUtils.EncodeUriComponent( DOCUMENT_ID );
+	}
+
+	@Benchmark
+	public String BuildDocumentUri()
+	{
+		return FileBrowserPathUtils.BuildDocumentUri( TREE_URI_PREFIX, DOCUMENT_ID );
+	}
+
+	@Benchmark
+	public ArrayList<String> GetParentUriCandidates()
+	{
+		return FileBrowserPathUtils.GetParentUriCandidates( DOCUMENT_URI );
+	}
+}
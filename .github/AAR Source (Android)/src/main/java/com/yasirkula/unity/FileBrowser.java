@@ -4,22 +4,32 @@ import android.Manifest;
 import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.UriPermission;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.CancellationSignal;
 import android.os.Environment;
+import android.os.ParcelFileDescriptor;
 import android.os.storage.StorageManager;
 import android.os.storage.StorageVolume;
 import android.provider.DocumentsContract;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.text.TextUtils;
 import android.util.Log;
 import android.webkit.MimeTypeMap;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
@@ -200,153 +210,1135 @@ public class FileBrowser
 	@TargetApi( Build.VERSION_CODES.Q )
 	public static String FetchSAFQuickLinks( Context context )
 	{
-		// Store only the most recent maxPersistedUriPermissions quick links
-		final int maxPersistedUriPermissions = 5;
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_FETCH_SAF_QUICK_LINKS );
+		try
+		{
+			// Store only the most recent maxPersistedUriPermissions quick links
+			final int maxPersistedUriPermissions = 5;
 
-		stringBuilder.setLength( 0 );
+			stringBuilder.setLength( 0 );
+
+			List<UriPermission> uriPermissions = context.getContentResolver().getPersistedUriPermissions();
+			uriPermissions.sort( new UriPermissionSorter() );
 
-		List<UriPermission> uriPermissions = context.getContentResolver().getPersistedUriPermissions();
-		uriPermissions.sort( new UriPermissionSorter() );
+			int count = 0, keptCount = 0;
+			int status = FileBrowserProviderCalls.STATUS_OK;
+			for( int i = 0; i < uriPermissions.size(); i++ )
+			{
+				UriPermission uriPermission = uriPermissions.get( i );
+
+				if( keptCount >= maxPersistedUriPermissions || uriPermission.getPersistedTime() == UriPermission.INVALID_TIME || !uriPermission.isReadPermission() || !uriPermission.isWritePermission() )
+					context.getContentResolver().releasePersistableUriPermission( uriPermission.getUri(), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+				else
+				{
+					// Quick links may belong to different providers, so each one is scheduled separately
+					FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, uriPermission.getUri().toString() );
+					try
+					{
+						FileBrowserSAFEntry directory = FileBrowserSAFEntry.fromTreeUri( context, uriPermission.getUri() );
+						boolean isDirectory = directory != null && directory.exists() && directory.isDirectory();
+						String name = isDirectory ? directory.getName() : null;
 
-		int count = 0;
-		for( int i = 0; i < uriPermissions.size(); i++ )
+						if( FileBrowserProviderCalls.GetStatus() != FileBrowserProviderCalls.STATUS_OK )
+						{
+							// The provider didn't respond, the folder may still exist so its permission is kept
+							status = FileBrowserProviderCalls.GetStatus();
+							keptCount++;
+						}
+						else if( isDirectory )
+						{
+							stringBuilder.append( name ).append( "<>" ).append( directory.getUri().toString() ).append( "<>" );
+							count++;
+							keptCount++;
+						}
+						else
+							context.getContentResolver().releasePersistableUriPermission( uriPermission.getUri(), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+					}
+					finally
+					{
+						FileBrowserIOScheduler.End();
+					}
+				}
+			}
+
+			stringBuilder.append( count );
+
+			String result = stringBuilder.toString();
+
+			// The result lacks the quick links of the unresponsive providers, the previously stored quick links are kept in that case
+			if( status == FileBrowserProviderCalls.STATUS_OK )
+				FileBrowserListingIndex.StoreQuickLinks( context, result );
+			else
+				FileBrowserProviderCalls.SetStatus( status ); // Each quick link's Begin call has reset the status
+
+			return result;
+		}
+		finally
 		{
-			UriPermission uriPermission = uriPermissions.get( i );
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_FETCH_SAF_QUICK_LINKS );
+		}
+	}
 
-			if( count >= maxPersistedUriPermissions || uriPermission.getPersistedTime() == UriPermission.INVALID_TIME || !uriPermission.isReadPermission() || !uriPermission.isWritePermission() )
-				context.getContentResolver().releasePersistableUriPermission( uriPermission.getUri(), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+	// Returns the result of the last FetchSAFQuickLinks call, even if it was made in a previous session (or an empty string)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String GetCachedSAFQuickLinks( Context context )
+	{
+		return FileBrowserListingIndex.GetQuickLinks( context );
+	}
+
+	// Copies/moves a Storage Access Framework (SAF) file/raw file. Returns false if the file couldn't be copied, in which case the
+	// source isn't deleted
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean CopyFile( Context context, String sourceRawUri, String destinationRawUri, boolean isMoveOperation )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_COPY_FILE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, destinationRawUri );
+		try
+		{
+			// Parameters can point to either SAF files or raw filesystem files
+			boolean isSourceSAFFile = sourceRawUri.contains( "://" );
+			boolean isDestinationSAFFile = destinationRawUri.contains( "://" );
+
+			// Moving the file within the same volume/provider doesn't require copying its contents
+			if( isMoveOperation && isSourceSAFFile == isDestinationSAFFile )
+			{
+				if( isSourceSAFFile ? TryMoveSAFEntry( context, sourceRawUri, destinationRawUri, false ) : TryMoveRawEntry( sourceRawUri, destinationRawUri, false ) )
+					return true;
+			}
+
+			boolean isCopied;
+			if( isSourceSAFFile )
+			{
+				if( isDestinationSAFFile )
+				{
+					// Copy SAF file to SAF file
+					isCopied = CopySAFFile( context, sourceRawUri, destinationRawUri );
+				}
+				else
+				{
+					// Copy SAF file to raw file
+					isCopied = ReadFileFromSAFEntry( context, sourceRawUri, destinationRawUri );
+				}
+			}
 			else
 			{
-				FileBrowserSAFEntry directory = FileBrowserSAFEntry.fromTreeUri( context, uriPermission.getUri() );
-				if( directory != null && directory.exists() && directory.isDirectory() )
+				if( isDestinationSAFFile )
 				{
-					stringBuilder.append( directory.getName() ).append( "<>" ).append( directory.getUri().toString() ).append( "<>" );
-					count++;
+					// Copy raw file to SAF file
+					isCopied = WriteFileToSAFEntry( context, destinationRawUri, sourceRawUri, false );
 				}
 				else
-					context.getContentResolver().releasePersistableUriPermission( uriPermission.getUri(), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+				{
+					// Copy raw file to raw file
+					isCopied = CopyRawFile( sourceRawUri, destinationRawUri );
+				}
 			}
+
+			if( isMoveOperation && isCopied )
+			{
+				if( isSourceSAFFile )
+					DeleteSAFEntry( context, sourceRawUri );
+				else
+					new File( sourceRawUri ).delete();
+			}
+
+			return isCopied;
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_COPY_FILE );
 		}
+	}
 
-		stringBuilder.append( count );
-		return stringBuilder.toString();
+	// Copies/moves a Storage Access Framework (SAF) directory/raw directory. Returns false if some of its entries couldn't be copied,
+	// in which case the source isn't deleted
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean CopyDirectory( Context context, String sourceRawUri, String destinationRawUri, boolean isMoveOperation )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_COPY_DIRECTORY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, destinationRawUri );
+		try
+		{
+			// Parameters can point to either SAF directories or raw filesystem directories
+			boolean isSourceSAFDirectory = sourceRawUri.contains( "://" );
+			boolean isDestinationSAFDirectory = destinationRawUri.contains( "://" );
+
+			// Moving the directory within the same volume/provider doesn't require copying its contents
+			if( isMoveOperation && isSourceSAFDirectory == isDestinationSAFDirectory )
+			{
+				if( isSourceSAFDirectory ? TryMoveSAFEntry( context, sourceRawUri, destinationRawUri, true ) : TryMoveRawEntry( sourceRawUri, destinationRawUri, true ) )
+					return true;
+			}
+
+			boolean isCopied;
+			if( isSourceSAFDirectory )
+				isCopied = CopySAFDirectoryRecursively( context, sourceRawUri, destinationRawUri, isDestinationSAFDirectory );
+			else
+				isCopied = CopyRawDirectoryRecursively( context, new File( sourceRawUri ), destinationRawUri, isDestinationSAFDirectory );
+
+			// The source is kept if some of its entries couldn't be copied
+			if( isMoveOperation && isCopied )
+			{
+				if( isSourceSAFDirectory )
+					DeleteSAFEntry( context, sourceRawUri );
+				else
+					DeleteRawDirectoryRecursively( new File( sourceRawUri ) );
+			}
+
+			return isCopied;
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_COPY_DIRECTORY );
+		}
+	}
+
+	// Copies/moves a Storage Access Framework (SAF) file/directory or raw file/directory like CopyFile and CopyDirectory while journaling
+	// its progress. Returns true if the transfer is completed, otherwise it can be resumed later (see GetPendingTransfers)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean TransferEntry( Context context, String sourceRawUri, String destinationRawUri, boolean isDirectory, boolean isMoveOperation )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_TRANSFER_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, destinationRawUri );
+		try
+		{
+			return FileBrowserTransfers.Start( context, sourceRawUri, destinationRawUri, isDirectory, isMoveOperation );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_TRANSFER_ENTRY );
+		}
+	}
+
+	// Continues an interrupted TransferEntry call, skipping the entries that were already copied. Returns true if the transfer is completed
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean ResumeTransfer( Context context, String transferId )
+	{
+		FileBrowserTransfers.Journal journal = FileBrowserTransfers.Load( context, transferId );
+		if( journal == null )
+			return false;
+
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_TRANSFER_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, journal.sourceRawUri, journal.destinationRawUri );
+		try
+		{
+			return FileBrowserTransfers.Resume( context, journal );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_TRANSFER_ENTRY );
+		}
+	}
+
+	// Returns the interrupted TransferEntry calls (see FileBrowserTransfers for the format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String GetPendingTransfers( Context context )
+	{
+		return FileBrowserTransfers.GetPending( context );
+	}
+
+	// Forgets an interrupted TransferEntry call without deleting the entries that were copied so far
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void DiscardTransfer( Context context, String transferId )
+	{
+		FileBrowserTransfers.Discard( context, transferId );
+	}
+
+	// Copies only the new and changed files from a Storage Access Framework (SAF) directory/raw directory to another
+	// directory (see FileBrowserSync for the comparison rules and the result's format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String SyncDirectory( Context context, String sourceRawUri, String destinationRawUri, boolean compareChecksums, boolean deleteExtraEntries )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SYNC_DIRECTORY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, destinationRawUri );
+		try
+		{
+			return FileBrowserSync.Sync( context, sourceRawUri, destinationRawUri, compareChecksums, deleteExtraEntries );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SYNC_DIRECTORY );
+		}
+	}
+
+	// Compresses a Storage Access Framework (SAF) directory/raw directory into a zip archive (which can be a SAF file or a raw file)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean ExportArchive( Context context, String sourceRawUri, String archiveRawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_EXPORT_ARCHIVE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, archiveRawUri );
+		try
+		{
+			return FileBrowserArchive.Export( context, sourceRawUri, archiveRawUri );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_EXPORT_ARCHIVE );
+		}
 	}
 
-	// Copies/moves a Storage Access Framework (SAF) file/raw file
+	// Extracts a zip archive (which can be a SAF file or a raw file) into a Storage Access Framework (SAF) directory/raw directory.
+	// Returns false if some of its entries couldn't be extracted (the entries that were extracted until then are kept)
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static void CopyFile( Context context, String sourceRawUri, String destinationRawUri, boolean isMoveOperation )
+	public static boolean ImportArchive( Context context, String archiveRawUri, String destinationRawUri )
 	{
-		// Parameters can point to either SAF files or raw filesystem files
-		boolean isSourceSAFFile = sourceRawUri.contains( "://" );
-		boolean isDestinationSAFFile = destinationRawUri.contains( "://" );
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_IMPORT_ARCHIVE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, archiveRawUri, destinationRawUri );
+		try
+		{
+			return FileBrowserArchive.Import( context, archiveRawUri, destinationRawUri );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_IMPORT_ARCHIVE );
+		}
+	}
 
-		if( isSourceSAFFile )
+	// Fetches the contents of a Storage Access Framework (SAF) folder
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String OpenSAFFolder( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_SAF_FOLDER );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			return ListSAFFolder( context, rawUri, stringBuilder, null );
+		}
+		finally
 		{
-			if( isDestinationSAFFile )
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_SAF_FOLDER );
+		}
+	}
+
+	// Fetches the contents of a Storage Access Framework (SAF) folder asynchronously and reports them via listingReceiver. viewKey identifies
+	// the view that displays the folder: a view's new request cancels its previous request if no other view is waiting for that folder
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void OpenSAFFolderAsync( Context context, String rawUri, String viewKey, FileBrowserListingReceiver listingReceiver )
+	{
+		FileBrowserListingRequests.Open( context, rawUri, viewKey, listingReceiver );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CancelSAFFolderRequest( String viewKey )
+	{
+		FileBrowserListingRequests.Cancel( viewKey );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CancelAllSAFFolderRequests()
+	{
+		FileBrowserListingRequests.CancelAll();
+	}
+
+	// Fetches the contents of a raw filesystem folder alongside their sizes and last modified dates
+	@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+	public static String OpenRawFolder( String path )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_RAW_FOLDER );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, path );
+		try
+		{
+			return FileBrowserRawListing.List( path );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_RAW_FOLDER );
+		}
+	}
+
+	// Fetches the contents of a Storage Access Framework (SAF) folder/raw folder. If generation is the token that was returned by the
+	// previous call for this folder, only the added, removed and modified entries are returned (see FileBrowserListingSnapshots for the format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String OpenFolderDelta( Context context, String rawUri, long generation )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_FOLDER_DELTA );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			return FileBrowserListingSnapshots.List( context, rawUri, generation );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_FOLDER_DELTA );
+		}
+	}
+
+	// Returns the persisted listing of a Storage Access Framework (SAF) folder/raw folder immediately (or an empty string if it was never
+	// listed) and revalidates it in the background, reporting the up-to-date listing via listingReceiver only if it has changed
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String OpenCachedFolder( Context context, String rawUri, FileBrowserListingReceiver listingReceiver )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_CACHED_FOLDER );
+		try
+		{
+			return FileBrowserListingIndex.Open( context, rawUri, listingReceiver );
+		}
+		finally
+		{
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_CACHED_FOLDER );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ClearListingIndex( Context context )
+	{
+		FileBrowserListingIndex.Clear( context );
+	}
+
+	// Discards the retained folder listings of OpenFolderDelta (the next call for each folder will return the whole folder)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ClearFolderDeltaSnapshots()
+	{
+		FileBrowserListingSnapshots.Clear();
+	}
+
+	// Creates a new Storage Access Framework (SAF) file/folder and returns its uri (or an empty string on failure)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String CreateSAFEntry( Context context, String folderRawUri, boolean isFolder, String name )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_CREATE_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, folderRawUri );
+		try
+		{
+			FileBrowserPrefetcher.Invalidate();
+
+			FileBrowserSAFEntry directory = new FileBrowserSAFEntry( context, Uri.parse( folderRawUri ) );
+			FileBrowserSAFEntry entry;
+			if( isFolder )
+				entry = directory.createDirectory( name );
+			else
 			{
-				// Copy SAF file to SAF file
-				CopySAFEntry( context, sourceRawUri, destinationRawUri );
+				int extensionSeparator = name.lastIndexOf( '.' );
+				String extension = extensionSeparator >= 0 ? name.substring( extensionSeparator + 1 ) : "";
+
+				// Credit: https://stackoverflow.com/a/31691791/2373034
+				String mimeType = extension.length() > 0 ? MimeTypeMap.getSingleton().getMimeTypeFromExtension( extension.toLowerCase( Locale.ENGLISH ) ) : null;
+				if( mimeType == null || mimeType.length() == 0 )
+					mimeType = "application/octet-stream";
+
+				entry = directory.createFile( mimeType, name );
 			}
-			else
+
+			return entry != null ? entry.getUri().toString() : "";
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_CREATE_SAF_ENTRY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void WriteToSAFEntry( Context context, String rawUri, String sourceFile, boolean appendMode )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_WRITE_TO_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+		try
+		{
+			WriteFileToSAFEntry( context, rawUri, sourceFile, appendMode );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_WRITE_TO_SAF_ENTRY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ReadFromSAFEntry( Context context, String rawUri, String destinationFile )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_READ_FROM_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+		try
+		{
+			ReadFileFromSAFEntry( context, rawUri, destinationFile );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_READ_FROM_SAF_ENTRY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CopySAFEntry( Context context, String sourceRawUri, String destinationRawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_COPY_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, sourceRawUri, destinationRawUri );
+		try
+		{
+			CopySAFFile( context, sourceRawUri, destinationRawUri );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_COPY_SAF_ENTRY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean SAFEntryExists( Context context, String rawUri, boolean isDirectory )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SAF_ENTRY_EXISTS );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			String path = FileBrowserDirectPaths.Resolve( context, rawUri );
+			if( path != null )
 			{
-				// Copy SAF file to raw file
-				ReadFromSAFEntry( context, sourceRawUri, destinationRawUri );
+				File file = new File( path );
+				return file.exists() && file.isDirectory() == isDirectory;
 			}
+
+			FileBrowserSAFEntry entry = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) );
+			return entry.exists() && entry.isDirectory() == isDirectory;
 		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SAF_ENTRY_EXISTS );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean SAFEntryDirectory( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SAF_ENTRY_DIRECTORY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			String path = FileBrowserDirectPaths.Resolve( context, rawUri );
+			if( path != null )
+				return new File( path ).isDirectory();
+
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).isDirectory();
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SAF_ENTRY_DIRECTORY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String SAFEntryName( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SAF_ENTRY_NAME );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).getName();
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SAF_ENTRY_NAME );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static long SAFEntrySize( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SAF_ENTRY_SIZE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			String path = FileBrowserDirectPaths.Resolve( context, rawUri );
+			if( path != null )
+				return new File( path ).length();
+
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).length();
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SAF_ENTRY_SIZE );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static long SAFEntryLastModified( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_SAF_ENTRY_LAST_MODIFIED );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			String path = FileBrowserDirectPaths.Resolve( context, rawUri );
+			if( path != null )
+				return new File( path ).lastModified();
+
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).lastModified();
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_SAF_ENTRY_LAST_MODIFIED );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String RenameSAFEntry( Context context, String rawUri, String newName )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_RENAME_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			FileBrowserPrefetcher.Invalidate();
+
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).renameTo( newName );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_RENAME_SAF_ENTRY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean DeleteSAFEntry( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_DELETE_SAF_ENTRY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+		try
+		{
+			FileBrowserPrefetcher.Invalidate();
+
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).delete();
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_DELETE_SAF_ENTRY );
+		}
+	}
+
+	// Executes multiple Storage Access Framework (SAF)/raw file create, rename and delete operations in parallel
+	// (see FileBrowserBatch for the operations' and the result's format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String ExecuteBatchOperations( Context context, String operations )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_EXECUTE_BATCH_OPERATIONS );
+		try
+		{
+			return FileBrowserBatch.Execute( context, operations );
+		}
+		finally
+		{
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_EXECUTE_BATCH_OPERATIONS );
+		}
+	}
+
+	// Generates a thumbnail for a Storage Access Framework (SAF) file/raw file asynchronously and returns the cached thumbnail's
+	// path via thumbnailReceiver (or an empty string, if a thumbnail couldn't be generated). lastModified can be 0 if unknown
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void RequestThumbnail( Context context, String rawUri, int maxSize, long lastModified, FileBrowserThumbnailReceiver thumbnailReceiver )
+	{
+		FileBrowserThumbnails.Enqueue( context, rawUri, maxSize, lastModified, thumbnailReceiver );
+	}
+
+	// Cancels the pending thumbnail requests (of all sizes) of a file that is no longer visible, their receivers won't be invoked
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CancelThumbnailRequest( String rawUri )
+	{
+		FileBrowserThumbnails.Cancel( rawUri );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CancelAllThumbnailRequests()
+	{
+		FileBrowserThumbnails.CancelAll();
+	}
+
+	// Returns the JPEG data of a recently generated/used thumbnail (see RequestThumbnail) from memory or null if it isn't in the memory
+	// cache. It doesn't access the disk, so the visible rows can use it to skip RequestThumbnail and loading the thumbnail file.
+	// Unlike RequestThumbnail, lastModified must be the file's actual last modified date
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static byte[] GetCachedThumbnailData( String rawUri, int maxSize, long lastModified )
+	{
+		return FileBrowserThumbnails.GetFromMemoryCache( rawUri, maxSize, lastModified );
+	}
+
+	// Returns a handle for the Storage Access Framework (SAF) file/folder or raw file/folder that can be passed to the other EntryHandle
+	// functions. Acquiring the same entry multiple times returns the same handle, each call must be paired with ReleaseEntryHandle
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static int AcquireEntryHandle( String rawUri )
+	{
+		return FileBrowserHandles.Acquire( rawUri );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ReleaseEntryHandle( int handle )
+	{
+		FileBrowserHandles.Release( handle );
+	}
+
+	// Releases multiple handles at once, handles are formatted as "handle<>handle<>..."
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ReleaseEntryHandles( String handles )
+	{
+		FileBrowserHandles.ReleaseMultiple( handles );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void ReleaseAllEntryHandles()
+	{
+		FileBrowserHandles.ReleaseAll();
+	}
+
+	// Fetches the contents of a folder handle and acquires a handle for each entry (see FileBrowserHandles for the format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String OpenFolderHandle( Context context, int folderHandle )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_FOLDER_HANDLE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, FileBrowserHandles.GetRawUri( folderHandle ) );
+		try
+		{
+			return FileBrowserHandles.List( context, folderHandle );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_FOLDER_HANDLE );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String EntryHandleRawUri( int handle )
+	{
+		return FileBrowserHandles.GetRawUri( handle );
+	}
+
+	// Returns the cached size if the entry was listed via OpenFolderHandle
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static long EntryHandleSize( Context context, int handle )
+	{
+		return FileBrowserHandles.GetSize( context, handle );
+	}
+
+	// Returns the cached last modified date if the entry was listed via OpenFolderHandle
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static long EntryHandleLastModified( Context context, int handle )
+	{
+		return FileBrowserHandles.GetLastModified( context, handle );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean RenameEntryHandle( Context context, int handle, String newName )
+	{
+		return FileBrowserHandles.Rename( context, handle, newName );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean DeleteEntryHandle( Context context, int handle )
+	{
+		return FileBrowserHandles.Delete( context, handle );
+	}
+
+	// Copies/moves the file/folder to destinationRawUri (see CopyFile and CopyDirectory). Returns false on failure
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean CopyEntryHandle( Context context, int handle, String destinationRawUri, boolean isDirectory, boolean isMoveOperation )
+	{
+		String rawUri = FileBrowserHandles.GetRawUri( handle );
+		if( rawUri.length() == 0 )
+			return false;
+
+		if( isDirectory )
+			return CopyDirectory( context, rawUri, destinationRawUri, isMoveOperation );
 		else
+			return CopyFile( context, rawUri, destinationRawUri, isMoveOperation );
+	}
+
+	// Copies the file to a raw file. Returns false on failure
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean ReadFromEntryHandle( Context context, int handle, String destinationFile )
+	{
+		String rawUri = FileBrowserHandles.GetRawUri( handle );
+		return rawUri.length() > 0 && CopyFile( context, rawUri, destinationFile, false );
+	}
+
+	// Calculates a Storage Access Framework (SAF) file/raw file's checksum. algorithm can be "CRC32", "MD5" or "SHA-256"
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String CalculateChecksum( Context context, String rawUri, String algorithm )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_CALCULATE_CHECKSUM );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+		try
+		{
+			return FileBrowserChecksums.Calculate( context, rawUri, algorithm );
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_CALCULATE_CHECKSUM );
+		}
+	}
+
+	// Calculates the total size of the files in a Storage Access Framework (SAF) directory/raw directory and its subdirectories.
+	// Returns -1 if a SAF directory couldn't be listed. Symbolic links in raw directories are skipped since they may point to
+	// an ancestor folder (infinite loop) or to files that are already counted elsewhere
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static long CalculateDirectorySize( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_CALCULATE_DIRECTORY_SIZE );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+		try
 		{
-			if( isDestinationSAFFile )
+			long totalSize = 0L;
+
+			// Traverse the hierarchy iteratively, each SAF directory is listed with a single query that also returns the sizes
+			ArrayList<String> directories = new ArrayList<String>();
+			directories.add( rawUri );
+			for( int i = 0; i < directories.size(); i++ )
 			{
-				// Copy raw file to SAF file
-				WriteToSAFEntry( context, destinationRawUri, sourceRawUri, false );
+				FileBrowserIOScheduler.Checkpoint();
+
+				String directory = directories.get( i );
+				if( FileBrowserPathUtils.IsSAFPath( directory ) )
+				{
+					FileBrowserColumnarListing contents = new FileBrowserSAFEntry( context, Uri.parse( directory ) ).listFilesColumnar();
+					if( contents == null )
+						return -1L;
+
+					for( int j = 0; j < contents.GetCount(); j++ )
+					{
+						if( contents.IsDirectory( j ) )
+							directories.add( contents.GetRawUri( j ) );
+						else
+							totalSize += contents.GetSize( j );
+					}
+				}
+				else
+				{
+					File[] contents = new File( directory ).listFiles();
+					if( contents != null )
+					{
+						for( int j = 0; j < contents.length; j++ )
+						{
+							String path = contents[j].getPath();
+							try
+							{
+								// File.isDirectory follows symbolic links, lstat doesn't
+								StructStat stat = Os.lstat( path );
+								if( OsConstants.S_ISDIR( stat.st_mode ) )
+									directories.add( path );
+								else if( OsConstants.S_ISREG( stat.st_mode ) )
+									totalSize += stat.st_size;
+							}
+							catch( ErrnoException e )
+							{
+								// Entry was deleted after the folder was listed
+							}
+						}
+					}
+				}
 			}
-			else
+
+			return totalSize;
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_CALCULATE_DIRECTORY_SIZE );
+		}
+	}
+
+	// Calculates multiple files' checksums in parallel and reports the progress and the results via checksumReceiver
+	// (see FileBrowserChecksums for the format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void CalculateChecksums( Context context, String rawUris, String algorithm, FileBrowserChecksumReceiver checksumReceiver )
+	{
+		FileBrowserChecksums.CalculateMultiple( context, rawUris, algorithm, checksumReceiver );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static String GetParentDirectory( Context context, String rawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_GET_PARENT_DIRECTORY );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			try
+			{
+				if( !rawUri.contains( "://" ) )
+				{
+					// This is a raw filepath, not a SAF path
+					String parentPath = new File( rawUri ).getParent();
+					return parentPath != null ? parentPath : "";
+				}
+
+				// The most promising method is to calculate the URI's path using findDocumentPath, omit the last path segment from it
+				// and then replace the rawUri's path entirely
+				final ContentResolver resolver = context.getContentResolver();
+				final Uri uri = Uri.parse( rawUri );
+				DocumentsContract.Path rawUriPath = FileBrowserProviderCalls.Execute( uri.getAuthority(), new FileBrowserProviderCalls.Call<DocumentsContract.Path>()
+				{
+					@Override
+					protected DocumentsContract.Path Run( CancellationSignal cancellationSignal ) throws Exception
+					{
+						return DocumentsContract.findDocumentPath( resolver, uri );
+					}
+				}, null );
+
+				if( rawUriPath != null )
+				{
+					String parentRawUri = FileBrowserPathUtils.GetParentUriFromDocumentPath( rawUri, rawUriPath.getPath() );
+					if( parentRawUri != null && SAFEntryExists( context, parentRawUri, true ) )
+						return parentRawUri;
+				}
+
+				// Otherwise, try omitting the last path segment and trimming the tree component (see GetParentUriCandidates).
+				// Probing stops as soon as the provider times out since the remaining probes would most likely time out, too
+				ArrayList<String> parentRawUriCandidates = FileBrowserPathUtils.GetParentUriCandidates( rawUri );
+				for( int i = 0; i < parentRawUriCandidates.size() && FileBrowserProviderCalls.GetStatus() == FileBrowserProviderCalls.STATUS_OK; i++ )
+				{
+					if( SAFEntryExists( context, parentRawUriCandidates.get( i ), true ) )
+						return parentRawUriCandidates.get( i );
+				}
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+
+			return "";
+		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_GET_PARENT_DIRECTORY );
+		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static boolean IsSAFEntryChildOfAnother( Context context, String rawUri, String parentRawUri )
+	{
+		FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_IS_SAF_ENTRY_CHILD_OF_ANOTHER );
+		FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+		try
+		{
+			try
 			{
-				// Copy raw file to raw file
-				CopyRawFile( sourceRawUri, destinationRawUri );
+				final ContentResolver resolver = context.getContentResolver();
+				final Uri parentUri = Uri.parse( parentRawUri );
+				final Uri uri = Uri.parse( rawUri );
+				return FileBrowserProviderCalls.Execute( parentUri.getAuthority(), new FileBrowserProviderCalls.Call<Boolean>()
+				{
+					@Override
+					protected Boolean Run( CancellationSignal cancellationSignal ) throws Exception
+					{
+						return DocumentsContract.isChildDocument( resolver, parentUri, uri );
+					}
+				}, null );
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+				return false;
 			}
 		}
+		finally
+		{
+			FileBrowserIOScheduler.End();
+			FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_IS_SAF_ENTRY_CHILD_OF_ANOTHER );
+		}
+	}
+
+	// Starts watching a Storage Access Framework (SAF) folder/raw folder for changes and returns the watch's id (or 0 on failure).
+	// Changes are debounced and reported via watchReceiver (see FileBrowserWatcher for the format)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static int WatchFolder( Context context, String rawUri, FileBrowserWatchReceiver watchReceiver )
+	{
+		return FileBrowserWatcher.Watch( context, rawUri, watchReceiver );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void UnwatchFolder( int watchId )
+	{
+		FileBrowserWatcher.Unwatch( watchId );
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void UnwatchAllFolders()
+	{
+		FileBrowserWatcher.UnwatchAll();
+	}
+
+	// After a SAF folder is opened, its first maxFolders subfolders are listed in the background so that opening them is faster (0 disables prefetching)
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void SetPrefetchEnabled( int maxFolders )
+	{
+		FileBrowserPrefetcher.SetEnabled( maxFolders );
+	}
 
-		if( isMoveOperation )
-		{
-			if( isSourceSAFFile )
-				DeleteSAFEntry( context, sourceRawUri );
-			else
-				new File( sourceRawUri ).delete();
-		}
+	// While enabled, the media folders (DCIM, Pictures, Music etc.) of the external storage that were picked via Storage Access Framework (SAF)
+	// are listed via MediaStore if the app holds the media permissions. Only the media files are listed in that case
+	@TargetApi( Build.VERSION_CODES.Q )
+	public static void SetMediaStoreListingEnabled( boolean enabled )
+	{
+		FileBrowserMediaStoreListing.SetEnabled( enabled );
 	}
 
-	// Copies/moves a Storage Access Framework (SAF) directory/raw directory
+	// While enabled (default), the Storage Access Framework (SAF) uris of the external storage that the app can access directly (e.g. with the
+	// all files access permission) are listed, queried and copied via their file paths instead of the provider
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static void CopyDirectory( Context context, String sourceRawUri, String destinationRawUri, boolean isMoveOperation )
+	public static void SetDirectFileAccessEnabled( boolean enabled )
 	{
-		// Parameters can point to either SAF directories or raw filesystem directories
-		boolean isSourceSAFDirectory = sourceRawUri.contains( "://" );
-		boolean isDestinationSAFDirectory = destinationRawUri.contains( "://" );
+		FileBrowserDirectPaths.SetEnabled( enabled );
+	}
 
-		if( isSourceSAFDirectory )
-			CopySAFDirectoryRecursively( context, new FileBrowserSAFEntry( context, Uri.parse( sourceRawUri ) ), destinationRawUri, isDestinationSAFDirectory );
-		else
-			CopyRawDirectoryRecursively( context, new File( sourceRawUri ), destinationRawUri, isDestinationSAFDirectory );
+	// Sets the deadline of each provider call (e.g. query). A provider call that doesn't return in time is abandoned and the
+	// function returns its default result, GetLastProviderCallStatus can then be used to tell the timeout apart from an actual
+	// result. If hedgeDelayMillis is positive, a second identical call is issued when the first one takes longer than that.
+	// Providers that time out repeatedly are skipped for 30 seconds. timeoutMillis <= 0 disables the deadlines (default)
+	public static void SetProviderCallTimeout( int timeoutMillis, int hedgeDelayMillis )
+	{
+		FileBrowserProviderCalls.SetTimeout( timeoutMillis, hedgeDelayMillis );
+	}
 
-		if( isMoveOperation )
-		{
-			if( isSourceSAFDirectory )
-				DeleteSAFEntry( context, sourceRawUri );
-			else
-				DeleteRawDirectoryRecursively( new File( sourceRawUri ) );
-		}
+	// Returns 0 if the last public function called on this thread got responses for all of its provider calls,
+	// 1 if a provider call timed out and 2 if the provider was skipped because it kept timing out
+	public static int GetLastProviderCallStatus()
+	{
+		return FileBrowserProviderCalls.GetStatus();
 	}
 
-	// Fetches the contents of a Storage Access Framework (SAF) folder
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static String OpenSAFFolder( Context context, String rawUri )
+	// Enables/disables collecting the query counts, latencies and copied bytes of the plugin's functions
+	public static void SetMetricsEnabled( boolean enabled )
 	{
-		FileBrowserSAFEntry directory = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) );
+		FileBrowserMetrics.SetEnabled( enabled );
+	}
 
-		stringBuilder.setLength( 0 );
-		directory.appendFilesToStringBuilder( stringBuilder );
+	public static void ResetMetrics()
+	{
+		FileBrowserMetrics.Reset();
+	}
 
-		return stringBuilder.toString();
+	// Returns the metrics that were collected so far (see FileBrowserMetrics for the format)
+	public static String GetMetricsSnapshot()
+	{
+		return FileBrowserMetrics.GetSnapshot();
+	}
+
+	// While enabled, the latest 256 calls of the plugin's functions are recorded with their durations, query counts, copied bytes and
+	// provider call statuses. Calls that take at least slowCallThresholdMillis are marked as slow. While a system trace is being
+	// captured, the calls are also visible as android.os.Trace sections (Android 10+)
+	public static void SetTraceEnabled( boolean enabled, int slowCallThresholdMillis )
+	{
+		FileBrowserTrace.SetEnabled( enabled, slowCallThresholdMillis );
+	}
+
+	public static void ClearTrace()
+	{
+		FileBrowserTrace.Clear();
+	}
+
+	// Returns the recorded calls as human-readable text, one call per line
+	public static String GetTraceLog()
+	{
+		return FileBrowserTrace.Dump();
+	}
+
+	// Writes GetTraceLog's result to the file (e.g. to attach it to a bug report). Returns false on failure
+	public static boolean SaveTraceLog( String path )
+	{
+		return FileBrowserTrace.Save( path );
 	}
 
-	// Creates a new Storage Access Framework (SAF) file/folder
+	//// BEGIN UTILITY FUNCTIONS
+	// Returns false if the file couldn't be copied (e.g. the destination doesn't have enough free space)
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static String CreateSAFEntry( Context context, String folderRawUri, boolean isFolder, String name )
+	private static boolean CopyRawFile( String sourcePath, String destinationPath )
 	{
-		FileBrowserSAFEntry directory = new FileBrowserSAFEntry( context, Uri.parse( folderRawUri ) );
-		if( isFolder )
-			return directory.createDirectory( name ).getUri().toString();
+		try
+		{
+			File source = new File( sourcePath );
+			File destination = new File( destinationPath );
+			long length = source.length();
+			if( length < FileBrowserStorageSpace.LARGE_COPY_THRESHOLD )
+			{
+				FileBrowserMetrics.OnBytesCopied( FileBrowserCopyEngine.CopyFile( source, destination ) );
+				return true;
+			}
+
+			// The destination's current contents are freed when it is overwritten
+			FileBrowserStorageSpace.EnsureAvailable( FileBrowserStorageSpace.GetAvailableBytes( destination ), length - destination.length() );
+
+			FileInputStream input = new FileInputStream( source );
+			try
+			{
+				FileOutputStream output = new FileOutputStream( destination, false );
+				boolean isCopied = false;
+				try
+				{
+					boolean isPreallocated = FileBrowserStorageSpace.Preallocate( output.getFD(), 0L, length );
+					long copiedBytes = FileBrowserCopyEngine.Copy( input.getChannel(), output.getChannel() );
+					if( isPreallocated )
+						output.getChannel().truncate( copiedBytes );
 
-		int extensionSeparator = name.lastIndexOf( '.' );
-		String extension = extensionSeparator >= 0 ? name.substring( extensionSeparator + 1 ) : "";
+					FileBrowserMetrics.OnBytesCopied( copiedBytes );
+					isCopied = true;
+				}
+				finally
+				{
+					output.close();
 
-		// Credit: https://stackoverflow.com/a/31691791/2373034
-		String mimeType = extension.length() > 0 ? MimeTypeMap.getSingleton().getMimeTypeFromExtension( extension.toLowerCase( Locale.ENGLISH ) ) : null;
-		if( mimeType == null || mimeType.length() == 0 )
-			mimeType = "application/octet-stream";
+					// Don't leave a truncated file behind
+					if( !isCopied )
+						destination.delete();
+				}
+			}
+			finally
+			{
+				input.close();
+			}
 
-		return directory.createFile( mimeType, name ).getUri().toString();
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
 	}
 
+	// Returns false if the file couldn't be copied
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static void WriteToSAFEntry( Context context, String rawUri, String sourceFile, boolean appendMode )
+	private static boolean WriteFileToSAFEntry( Context context, String rawUri, String sourceFile, boolean appendMode )
 	{
+		String path = appendMode ? null : FileBrowserDirectPaths.Resolve( context, rawUri );
+		if( path != null )
+			return CopyRawFile( sourceFile, path );
+
 		try
 		{
-			InputStream input = new FileInputStream( new File( sourceFile ) );
+			File source = new File( sourceFile );
+			long length = source.length();
+			InputStream input = new FileInputStream( source );
 			try
 			{
+				if( length >= FileBrowserStorageSpace.LARGE_COPY_THRESHOLD )
+				{
+					FileBrowserMetrics.OnBytesCopied( WriteLargeFileToSAFEntry( context, Uri.parse( rawUri ), input, length, appendMode ) );
+					return true;
+				}
+
 				OutputStream output = context.getContentResolver().openOutputStream( Uri.parse( rawUri ), appendMode ? "wa" : "rwt" );
 				if( output == null )
-					return;
+					return false;
 
 				try
 				{
-					byte[] buf = new byte[4096];
-					int len;
-					while( ( len = input.read( buf ) ) > 0 )
-						output.write( buf, 0, len );
+					FileBrowserMetrics.OnBytesCopied( FileBrowserPipelinedCopy.Copy( input, output ) );
 				}
 				finally
 				{
@@ -357,31 +1349,36 @@ public class FileBrowser
 			{
 				input.close();
 			}
+
+			return true;
 		}
 		catch( Exception e )
 		{
 			Log.e( "Unity", "Exception:", e );
+			return false;
 		}
 	}
 
+	// Returns false if the file couldn't be copied
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static void ReadFromSAFEntry( Context context, String rawUri, String destinationFile )
+	private static boolean ReadFileFromSAFEntry( Context context, String rawUri, String destinationFile )
 	{
+		String path = FileBrowserDirectPaths.Resolve( context, rawUri );
+		if( path != null )
+			return CopyRawFile( path, destinationFile );
+
 		try
 		{
 			InputStream input = context.getContentResolver().openInputStream( Uri.parse( rawUri ) );
 			if( input == null )
-				return;
+				return false;
 
 			try
 			{
 				OutputStream output = new FileOutputStream( new File( destinationFile ), false );
 				try
 				{
-					byte[] buf = new byte[4096];
-					int len;
-					while( ( len = input.read( buf ) ) > 0 )
-						output.write( buf, 0, len );
+					FileBrowserMetrics.OnBytesCopied( FileBrowserPipelinedCopy.Copy( input, output ) );
 				}
 				finally
 				{
@@ -392,34 +1389,40 @@ public class FileBrowser
 			{
 				input.close();
 			}
+
+			return true;
 		}
 		catch( Exception e )
 		{
 			Log.e( "Unity", "Exception:", e );
+			return false;
 		}
 	}
 
+	// Returns false if the file couldn't be copied
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static void CopySAFEntry( Context context, String sourceRawUri, String destinationRawUri )
+	private static boolean CopySAFFile( Context context, String sourceRawUri, String destinationRawUri )
 	{
+		String sourcePath = FileBrowserDirectPaths.Resolve( context, sourceRawUri );
+		String destinationPath = sourcePath != null ? FileBrowserDirectPaths.Resolve( context, destinationRawUri ) : null;
+		if( destinationPath != null )
+			return CopyRawFile( sourcePath, destinationPath );
+
 		try
 		{
 			InputStream input = context.getContentResolver().openInputStream( Uri.parse( sourceRawUri ) );
 			if( input == null )
-				return;
+				return false;
 
 			try
 			{
 				OutputStream output = context.getContentResolver().openOutputStream( Uri.parse( destinationRawUri ), "rwt" );
 				if( output == null )
-					return;
+					return false;
 
 				try
 				{
-					byte[] buf = new byte[4096];
-					int len;
-					while( ( len = input.read( buf ) ) > 0 )
-						output.write( buf, 0, len );
+					FileBrowserMetrics.OnBytesCopied( FileBrowserPipelinedCopy.Copy( input, output ) );
 				}
 				finally
 				{
@@ -430,224 +1433,286 @@ public class FileBrowser
 			{
 				input.close();
 			}
+
+			return true;
 		}
 		catch( Exception e )
 		{
 			Log.e( "Unity", "Exception:", e );
+			return false;
 		}
 	}
 
+	// Writes the large file via the destination's file descriptor so that the free space can be checked and the destination can be
+	// preallocated before anything is written. Returns the number of copied bytes
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static boolean SAFEntryExists( Context context, String rawUri, boolean isDirectory )
+	private static long WriteLargeFileToSAFEntry( Context context, Uri uri, InputStream input, long length, boolean appendMode ) throws IOException
 	{
-		FileBrowserSAFEntry entry = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) );
-		return entry.exists() && entry.isDirectory() == isDirectory;
-	}
+		ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor( uri, appendMode ? "wa" : "rwt" );
+		if( pfd == null )
+			throw new IOException( "Couldn't open " + uri );
 
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static boolean SAFEntryDirectory( Context context, String rawUri )
-	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).isDirectory();
-	}
+		FileOutputStream output = new ParcelFileDescriptor.AutoCloseOutputStream( pfd );
+		try
+		{
+			FileDescriptor fd = pfd.getFileDescriptor();
+			FileBrowserStorageSpace.EnsureAvailable( FileBrowserStorageSpace.GetAvailableBytes( fd ), length );
 
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static String SAFEntryName( Context context, String rawUri )
-	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).getName();
-	}
+			// Appended data is always written to the end of the file, so a preallocated (i.e. extended) file can't be appended to
+			boolean isPreallocated = !appendMode && FileBrowserStorageSpace.Preallocate( fd, 0L, length );
+			long copiedBytes = FileBrowserPipelinedCopy.Copy( input, output );
+			if( isPreallocated )
+				output.getChannel().truncate( copiedBytes );
 
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static long SAFEntrySize( Context context, String rawUri )
-	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).length();
+			return copiedBytes;
+		}
+		finally
+		{
+			output.close();
+		}
 	}
 
+	// Moves the raw file/directory with a single rename call. Directories can only replace empty directories (the contents of the
+	// source directory are otherwise merged into the destination directory by copying). Returns false if the destination is on
+	// another volume
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static long SAFEntryLastModified( Context context, String rawUri )
+	static boolean TryMoveRawEntry( String sourcePath, String destinationPath, boolean isDirectory )
 	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).lastModified();
-	}
+		File source = new File( sourcePath );
+		File destination = new File( destinationPath );
+		if( isDirectory )
+		{
+			String[] destinationContents = destination.list();
+			if( destinationContents != null && destinationContents.length > 0 )
+				return false;
+		}
 
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static String RenameSAFEntry( Context context, String rawUri, String newName )
-	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).renameTo( newName );
-	}
+		File destinationParent = destination.getParentFile();
+		if( destinationParent != null )
+			destinationParent.mkdirs();
 
-	@TargetApi( Build.VERSION_CODES.Q )
-	public static boolean DeleteSAFEntry( Context context, String rawUri )
-	{
-		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).delete();
+		return source.renameTo( destination );
 	}
 
+	// Moves the Storage Access Framework (SAF) file/directory onto the existing destination entry with DocumentsContract.moveDocument
+	// (or renameDocument if they are in the same directory) without copying its contents. Directories can only replace empty
+	// directories. Returns false if the provider can't move the entry (e.g. the destination is in another provider)
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static String GetParentDirectory( Context context, String rawUri )
+	static boolean TryMoveSAFEntry( Context context, String sourceRawUri, String destinationRawUri, boolean isDirectory )
 	{
+		if( sourceRawUri.equals( destinationRawUri ) )
+			return true;
+
 		try
 		{
-			if( !rawUri.contains( "://" ) )
-			{
-				// This is a raw filepath, not a SAF path
-				String parentPath = new File( rawUri ).getParent();
-				return parentPath != null ? parentPath : "";
-			}
+			Uri sourceUri = Uri.parse( sourceRawUri );
+			Uri destinationUri = Uri.parse( destinationRawUri );
+			if( !TextUtils.equals( sourceUri.getAuthority(), destinationUri.getAuthority() ) )
+				return false;
 
-			// The most promising method is to calculate the URI's path using findDocumentPath, omit the last path segment from it
-			// and then replace the rawUri's path entirely
-			DocumentsContract.Path rawUriPath = DocumentsContract.findDocumentPath( context.getContentResolver(), Uri.parse( rawUri ) );
-			if( rawUriPath != null )
-			{
-				List<String> pathSegments = rawUriPath.getPath();
-				if( pathSegments != null && pathSegments.size() > 0 )
-				{
-					String rawUriParentPath;
-					if( pathSegments.size() > 1 )
-						rawUriParentPath = Uri.encode( pathSegments.get( pathSegments.size() - 2 ) );
-					else
-					{
-						String fullPath = pathSegments.get( 0 );
-						int separatorIndex = Math.max( fullPath.lastIndexOf( '/' ), fullPath.lastIndexOf( ':' ) + 1 );
-						rawUriParentPath = separatorIndex > 0 ? Uri.encode( fullPath.substring( 0, separatorIndex ) ) : null;
-					}
+			FileBrowserSAFEntry destination = new FileBrowserSAFEntry( context, destinationUri );
+			if( !destination.exists() || destination.isDirectory() != isDirectory )
+				return false;
 
-					if( rawUriParentPath != null && rawUriParentPath.length() > 0 )
-					{
-						int rawUriLastPathSegmentIndex = rawUri.lastIndexOf( '/' ) + 1;
-						if( rawUriLastPathSegmentIndex > 0 )
-						{
-							String parentRawUri = rawUri.substring( 0, rawUriLastPathSegmentIndex ) + rawUriParentPath;
-							if( !parentRawUri.equals( rawUri ) && SAFEntryExists( context, parentRawUri, true ) )
-								return parentRawUri;
-						}
-					}
-				}
+			if( isDirectory )
+			{
+				// A directory that couldn't be listed is treated as non-empty
+				FileBrowserColumnarListing destinationContents = destination.listFilesColumnar();
+				if( destinationContents == null || destinationContents.GetCount() > 0 )
+					return false;
 			}
 
-			// Omit the last path segment (this method won't work for Downloads folder and probably some other ContentProviders, too)
-			int pathSeparatorIndex = rawUri.lastIndexOf( "%3A" ); // Encoded colon index
-			if( pathSeparatorIndex > 0 )
-				pathSeparatorIndex += 3; // Encoded colon shouldn't be omitted by substring
+			String sourceParentRawUri = GetParentDirectory( context, sourceRawUri );
+			String destinationParentRawUri = GetParentDirectory( context, destinationRawUri );
+			if( sourceParentRawUri.length() == 0 || destinationParentRawUri.length() == 0 )
+				return false;
 
-			pathSeparatorIndex = Math.max( pathSeparatorIndex, Math.max( rawUri.lastIndexOf( '/' ), rawUri.lastIndexOf( "%2F" ) ) );
-			if( pathSeparatorIndex < 0 || pathSeparatorIndex >= rawUri.length() )
-				return "";
+			String destinationName = destination.getName();
+			if( destinationName == null )
+				return false;
 
-			rawUri = rawUri.substring( 0, pathSeparatorIndex );
+			FileBrowserPrefetcher.Invalidate();
 
-			if( SAFEntryExists( context, rawUri, true ) )
-				return rawUri;
+			// While the destination entry occupies its name, providers may reject the move or give the moved entry an arbitrary name.
+			// So the destination entry is renamed out of the way first. It is deleted only after the move succeeds, otherwise its name
+			// is restored so that the copy fallback can still use it
+			if( !RenameSAFEntry( destination, destinationName + "." + System.currentTimeMillis() + ".tmp" ) )
+				return false;
 
-			// When we form the SAF URI using a subfolder as root (i.e. /storage/SomeFolder/), that subfolder is reflected in SAF URI
-			// in the form /tree/primary%3ASomeFolder/ and restricts our access to SomeFolder's parent directories. However, if we
-			// actually have permission to access the /storage/ directory (parent folder), we can remove the subfolder from the URI
-			// (i.e. change it to /tree/primary%3A/) and voila!
-			int treeStartIndex = rawUri.indexOf( "/tree/" );
-			if( treeStartIndex >= 0 )
+			boolean isMoved = false;
+			try
 			{
-				treeStartIndex += 6;
-				int treeEndIndex = rawUri.indexOf( '/', treeStartIndex );
-				if( treeEndIndex > treeStartIndex + 4 ) // +4: "/tree/SOMETHING/" here, SOMETHING should be able to contain at least 1 %2F/%3A and 1 other character
-				{
-					String treeComponent = rawUri.substring( treeStartIndex, treeEndIndex );
-					String preTreeComponent = rawUri.substring( 0, treeStartIndex );
-					String postTreeComponent = rawUri.substring( treeEndIndex );
-
-					String _treeComponent = treeComponent;
-					int treeSeparatorIndex = _treeComponent.length() - 3; // -3: if treeComponent ends with %2F, skip it
-					while( ( treeSeparatorIndex = _treeComponent.lastIndexOf( "%2F", treeSeparatorIndex - 1 ) ) > 0 )
-					{
-						_treeComponent = _treeComponent.substring( 0, treeSeparatorIndex );
+				boolean isSameParent = sourceParentRawUri.equals( destinationParentRawUri );
+				Uri movedUri = isSameParent ? sourceUri : MoveSAFDocument( context, sourceUri, sourceParentRawUri, destinationParentRawUri );
+				if( movedUri == null )
+					return false;
 
-						String _rawUri = preTreeComponent + _treeComponent + postTreeComponent;
-						if( SAFEntryExists( context, _rawUri, true ) )
-							return _rawUri;
-					}
+				FileBrowserSAFEntry movedEntry = new FileBrowserSAFEntry( context, movedUri );
+				if( destinationName.equals( movedEntry.getName() ) || RenameSAFEntry( movedEntry, destinationName ) )
+				{
+					isMoved = true;
+					return true;
+				}
 
-					_treeComponent = treeComponent;
-					treeSeparatorIndex = _treeComponent.length() - 3; // -3: if treeComponent ends with %3A, skip it
-					while( ( treeSeparatorIndex = _treeComponent.lastIndexOf( "%3A", treeSeparatorIndex - 1 ) ) > 0 )
-					{
-						_treeComponent = _treeComponent.substring( 0, treeSeparatorIndex + 3 ); // Encoded colon (%3A) shouldn't be omitted by substring
+				// Move the entry back so that the copy fallback can find it
+				if( !isSameParent && MoveSAFDocument( context, movedEntry.getUri(), destinationParentRawUri, sourceParentRawUri ) == null )
+					Log.e( "Unity", "Couldn't rename moved entry: " + movedEntry.getUri() );
 
-						String _rawUri = preTreeComponent + _treeComponent + postTreeComponent;
-						if( SAFEntryExists( context, _rawUri, true ) )
-							return _rawUri;
-					}
-				}
+				return false;
+			}
+			finally
+			{
+				if( isMoved )
+					destination.delete();
+				else if( !RenameSAFEntry( destination, destinationName ) )
+					Log.e( "Unity", "Couldn't restore the name of: " + destination.getUri() );
 			}
 		}
 		catch( Exception e )
 		{
-			Log.e( "Unity", "Exception:", e );
+			// Providers that don't support moving documents throw UnsupportedOperationException
+			return false;
 		}
+	}
+
+	@TargetApi( Build.VERSION_CODES.Q )
+	private static Uri MoveSAFDocument( Context context, final Uri uri, String sourceParentRawUri, String destinationParentRawUri ) throws Exception
+	{
+		final ContentResolver resolver = context.getContentResolver();
+		final Uri sourceParentUri = Uri.parse( sourceParentRawUri );
+		final Uri destinationParentUri = Uri.parse( destinationParentRawUri );
+		return FileBrowserProviderCalls.Execute( uri.getAuthority(), new FileBrowserProviderCalls.Call<Uri>()
+		{
+			@Override
+			protected Uri Run( CancellationSignal cancellationSignal ) throws Exception
+			{
+				return DocumentsContract.moveDocument( resolver, uri, sourceParentUri, destinationParentUri );
+			}
 
-		return "";
+			@Override
+			protected boolean CanHedge()
+			{
+				return false;
+			}
+		}, null );
 	}
 
+	// FileBrowserSAFEntry.renameTo doesn't report failures, so the new name is verified instead
 	@TargetApi( Build.VERSION_CODES.Q )
-	public static boolean IsSAFEntryChildOfAnother( Context context, String rawUri, String parentRawUri )
+	private static boolean RenameSAFEntry( FileBrowserSAFEntry entry, String name )
 	{
-		try
+		entry.renameTo( name );
+		return name.equals( entry.getName() );
+	}
+
+	// Returns false if some of the entries couldn't be listed, created or copied
+	@TargetApi( Build.VERSION_CODES.Q )
+	private static boolean CopySAFDirectoryRecursively( Context context, String sourceRawUri, String destinationRawUri, boolean isDestinationSAFDirectory )
+	{
+		File destinationDirectory = null;
+		FileBrowserColumnarListing destinationContents = null;
+		if( isDestinationSAFDirectory )
 		{
-			return DocumentsContract.isChildDocument( context.getContentResolver(), Uri.parse( parentRawUri ), Uri.parse( rawUri ) );
+			// Without the destination's listing, existing entries can't be found and would be duplicated
+			destinationContents = new FileBrowserSAFEntry( context, Uri.parse( destinationRawUri ) ).listFilesColumnar();
+			if( destinationContents == null )
+			{
+				Log.e( "Unity", "Couldn't list directory: " + destinationRawUri );
+				return false;
+			}
 		}
-		catch( Exception e )
+		else
 		{
-			Log.e( "Unity", "Exception:", e );
+			destinationDirectory = new File( destinationRawUri );
+			destinationDirectory.mkdirs();
+		}
+
+		// The listing contains the entries' names and types, so they don't have to be queried per entry
+		FileBrowserColumnarListing contents = new FileBrowserSAFEntry( context, Uri.parse( sourceRawUri ) ).listFilesColumnar();
+		if( contents == null )
+		{
+			Log.e( "Unity", "Couldn't list directory: " + sourceRawUri );
 			return false;
 		}
-	}
 
-	//// BEGIN UTILITY FUNCTIONS
-	@TargetApi( Build.VERSION_CODES.Q )
-	private static void CopyRawFile( String sourcePath, String destinationPath )
-	{
-		try
+		boolean result = true;
+		for( int i = 0; i < contents.GetCount(); i++ )
 		{
-			InputStream input = new FileInputStream( new File( sourcePath ) );
-			try
+			String name = contents.GetName( i );
+			if( contents.IsDirectory( i ) )
 			{
-				OutputStream output = new FileOutputStream( new File( destinationPath ), false );
-				try
-				{
-					byte[] buf = new byte[4096];
-					int len;
-					while( ( len = input.read( buf ) ) > 0 )
-						output.write( buf, 0, len );
-				}
-				finally
+				String targetRawUri;
+				if( isDestinationSAFDirectory )
+					targetRawUri = FindSAFEntryWithNameOrCreateNew( context, destinationRawUri, destinationContents, true, name );
+				else
+					targetRawUri = new File( destinationDirectory, name ).getPath();
+
+				if( targetRawUri == null )
 				{
-					output.close();
+					Log.e( "Unity", "Couldn't create directory: " + name );
+					result = false;
 				}
+				else if( !CopySAFDirectoryRecursively( context, contents.GetRawUri( i ), targetRawUri, isDestinationSAFDirectory ) )
+					result = false;
 			}
-			finally
+			else
 			{
-				input.close();
+				if( isDestinationSAFDirectory )
+				{
+					String targetRawUri = FindSAFEntryWithNameOrCreateNew( context, destinationRawUri, destinationContents, false, name );
+					if( targetRawUri == null )
+					{
+						Log.e( "Unity", "Couldn't create file: " + name );
+						result = false;
+					}
+					else if( !CopySAFFile( context, contents.GetRawUri( i ), targetRawUri ) )
+						result = false;
+				}
+				else
+				{
+					String targetRawUri = new File( destinationDirectory, name ).getPath();
+					if( !ReadFileFromSAFEntry( context, contents.GetRawUri( i ), targetRawUri ) )
+						result = false;
+				}
 			}
 		}
-		catch( Exception e )
-		{
-			Log.e( "Unity", "Exception:", e );
-		}
+
+		return result;
 	}
 
+	// Returns false if some of the entries couldn't be listed, created or copied
 	@TargetApi( Build.VERSION_CODES.Q )
-	private static void CopySAFDirectoryRecursively( Context context, FileBrowserSAFEntry sourceDirectory, String destinationRawUri, boolean isDestinationSAFDirectory )
+	private static boolean CopyRawDirectoryRecursively( Context context, File sourceDirectory, String destinationRawUri, boolean isDestinationSAFDirectory )
 	{
 		File destinationDirectory = null;
-		ArrayList<FileBrowserSAFEntry> destinationContents = null;
+		FileBrowserColumnarListing destinationContents = null;
 		if( isDestinationSAFDirectory )
-			destinationContents = new FileBrowserSAFEntry( context, Uri.parse( destinationRawUri ) ).listFiles();
+		{
+			// Without the destination's listing, existing entries can't be found and would be duplicated
+			destinationContents = new FileBrowserSAFEntry( context, Uri.parse( destinationRawUri ) ).listFilesColumnar();
+			if( destinationContents == null )
+			{
+				Log.e( "Unity", "Couldn't list directory: " + destinationRawUri );
+				return false;
+			}
+		}
 		else
 		{
 			destinationDirectory = new File( destinationRawUri );
 			destinationDirectory.mkdirs();
 		}
 
-		ArrayList<FileBrowserSAFEntry> contents = sourceDirectory.listFiles();
-		for( int i = 0; i < contents.size(); i++ )
+		File[] contents = sourceDirectory.listFiles();
+		if( contents == null )
+		{
+			Log.e( "Unity", "Couldn't list directory: " + sourceDirectory.getPath() );
+			return false;
+		}
+
+		boolean result = true;
+		for( int i = 0; i < contents.length; i++ )
 		{
-			FileBrowserSAFEntry content = contents.get( i );
+			File content = contents[i];
 			if( content.isDirectory() )
 			{
 				String targetRawUri;
@@ -656,108 +1721,152 @@ public class FileBrowser
 				else
 					targetRawUri = new File( destinationDirectory, content.getName() ).getPath();
 
-				CopySAFDirectoryRecursively( context, content, targetRawUri, isDestinationSAFDirectory );
+				if( targetRawUri == null )
+				{
+					Log.e( "Unity", "Couldn't create directory: " + content.getName() );
+					result = false;
+				}
+				else if( !CopyRawDirectoryRecursively( context, content, targetRawUri, isDestinationSAFDirectory ) )
+					result = false;
 			}
 			else
 			{
 				if( isDestinationSAFDirectory )
 				{
 					String targetRawUri = FindSAFEntryWithNameOrCreateNew( context, destinationRawUri, destinationContents, false, content.getName() );
-					CopySAFEntry( context, content.getUri().toString(), targetRawUri );
+					if( targetRawUri == null )
+					{
+						Log.e( "Unity", "Couldn't create file: " + content.getName() );
+						result = false;
+					}
+					else if( !WriteFileToSAFEntry( context, targetRawUri, content.getPath(), false ) )
+						result = false;
 				}
 				else
 				{
 					String targetRawUri = new File( destinationDirectory, content.getName() ).getPath();
-					ReadFromSAFEntry( context, content.getUri().toString(), targetRawUri );
+					if( !CopyRawFile( content.getPath(), targetRawUri ) )
+						result = false;
 				}
 			}
 		}
+
+		return result;
 	}
 
 	@TargetApi( Build.VERSION_CODES.Q )
-	private static void CopyRawDirectoryRecursively( Context context, File sourceDirectory, String destinationRawUri, boolean isDestinationSAFDirectory )
+	static void DeleteRawDirectoryRecursively( File directory )
 	{
-		File destinationDirectory = null;
-		ArrayList<FileBrowserSAFEntry> destinationContents = null;
-		if( isDestinationSAFDirectory )
-			destinationContents = new FileBrowserSAFEntry( context, Uri.parse( destinationRawUri ) ).listFiles();
-		else
+		// Traverse the hierarchy iteratively so that deeply nested folders can't overflow the stack. Files are deleted
+		// while traversing, folders are deleted afterwards in reverse order (i.e. children before their parents)
+		ArrayList<File> directories = new ArrayList<File>();
+		directories.add( directory );
+		for( int i = 0; i < directories.size(); i++ )
 		{
-			destinationDirectory = new File( destinationRawUri );
-			destinationDirectory.mkdirs();
-		}
+			FileBrowserIOScheduler.Checkpoint();
 
-		File[] contents = sourceDirectory.listFiles();
-		if( contents != null )
-		{
-			for( int i = 0; i < contents.length; i++ )
+			File[] contents = directories.get( i ).listFiles();
+			if( contents != null )
 			{
-				File content = contents[i];
-				if( content.isDirectory() )
-				{
-					String targetRawUri;
-					if( isDestinationSAFDirectory )
-						targetRawUri = FindSAFEntryWithNameOrCreateNew( context, destinationRawUri, destinationContents, true, content.getName() );
-					else
-						targetRawUri = new File( destinationDirectory, content.getName() ).getPath();
-
-					CopyRawDirectoryRecursively( context, content, targetRawUri, isDestinationSAFDirectory );
-				}
-				else
+				for( int j = 0; j < contents.length; j++ )
 				{
-					if( isDestinationSAFDirectory )
-					{
-						String targetRawUri = FindSAFEntryWithNameOrCreateNew( context, destinationRawUri, destinationContents, false, content.getName() );
-						WriteToSAFEntry( context, targetRawUri, content.getPath(), false );
-					}
+					if( contents[j].isDirectory() )
+						directories.add( contents[j] );
 					else
-					{
-						String targetRawUri = new File( destinationDirectory, content.getName() ).getPath();
-						CopyRawFile( content.getPath(), targetRawUri );
-					}
+						contents[j].delete();
 				}
 			}
 		}
+
+		for( int i = directories.size() - 1; i >= 0; i-- )
+			directories.get( i ).delete();
 	}
 
+	// Lists a Storage Access Framework (SAF) folder (formatted as in OpenSAFFolder) via its file path, MediaStore or SAF and prefetches its subfolders (if enabled).
+	// Returns null if cancellationSignal (which can be null) is canceled
 	@TargetApi( Build.VERSION_CODES.Q )
-	private static void DeleteRawDirectoryRecursively( File directory )
+	static String ListSAFFolder( Context context, String rawUri, StringBuilder stringBuilder, CancellationSignal cancellationSignal )
 	{
-		File[] contents = directory.listFiles();
-		if( contents != null )
+		String result = FileBrowserPrefetcher.Get( rawUri );
+		if( result == null )
 		{
-			for( int i = 0; i < contents.length; i++ )
-			{
-				if( contents[i].isDirectory() )
-					DeleteRawDirectoryRecursively( contents[i] );
-				else
-					contents[i].delete();
-			}
+			ArrayList<FileBrowserEntryInfo> entries = FileBrowserDirectPaths.ListEntries( context, rawUri );
+			if( entries != null )
+				result = FileBrowserListingCodec.Encode( entries, false );
 		}
 
-		directory.delete();
+		if( result == null )
+			result = FileBrowserMediaStoreListing.List( context, rawUri, cancellationSignal );
+
+		if( result == null )
+		{
+			FileBrowserSAFEntry directory = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) );
+
+			stringBuilder.setLength( 0 );
+			directory.appendFilesToStringBuilder( stringBuilder, cancellationSignal );
+			if( cancellationSignal != null && cancellationSignal.isCanceled() )
+				return null;
+
+			result = stringBuilder.toString();
+		}
+
+		FileBrowserPrefetcher.Prefetch( context, result );
+		return result;
+	}
+
+	// Lists a Storage Access Framework (SAF) folder/raw folder alongside its entries' attributes. Returns null if the folder can't be listed
+	@TargetApi( Build.VERSION_CODES.Q )
+	static ArrayList<FileBrowserEntryInfo> ListEntriesWithAttributes( Context context, String rawUri )
+	{
+		if( !rawUri.contains( "://" ) )
+			return FileBrowserRawListing.ListEntries( rawUri );
+
+		ArrayList<FileBrowserEntryInfo> entries = FileBrowserDirectPaths.ListEntries( context, rawUri );
+		if( entries != null )
+			return entries;
+
+		return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).listFilesWithAttributes();
+	}
+
+	// Deletes a Storage Access Framework (SAF) file/folder or raw file/folder. Returns false if it couldn't be deleted
+	@TargetApi( Build.VERSION_CODES.Q )
+	static boolean DeleteEntry( Context context, String rawUri, boolean isDirectory )
+	{
+		if( rawUri.contains( "://" ) )
+			return DeleteSAFEntry( context, rawUri );
+
+		File file = new File( rawUri );
+		if( isDirectory )
+			DeleteRawDirectoryRecursively( file );
+		else
+			file.delete();
+
+		return !file.exists();
 	}
 
+	// Returns null if the entry couldn't be found or created. Creating an entry while its name may still be occupied would create a
+	// duplicate with a different name (e.g. "Name (1)"), so nothing is created after a provider call of the function has timed out
 	@TargetApi( Build.VERSION_CODES.Q )
-	private static String FindSAFEntryWithNameOrCreateNew( Context context, String folderRawUri, ArrayList<FileBrowserSAFEntry> folderContents, boolean isDirectory, String entryName )
+	static String FindSAFEntryWithNameOrCreateNew( Context context, String folderRawUri, FileBrowserColumnarListing folderContents, boolean isDirectory, String entryName )
 	{
-		for( int i = 0; i < folderContents.size(); i++ )
+		int index = folderContents.IndexOf( entryName );
+		if( index >= 0 )
 		{
-			FileBrowserSAFEntry entry = folderContents.get( i );
-			if( entry.getName().equals( entryName ) )
+			if( folderContents.IsDirectory( index ) == isDirectory )
+				return folderContents.GetRawUri( index );
+			else
 			{
-				if( entry.isDirectory() == isDirectory )
-					return entry.getUri().toString();
-				else
-				{
-					// SAF entry's type doesn't match the type we want, delete the entry
-					entry.delete();
-					break;
-				}
+				// SAF entry's type doesn't match the type we want, delete the entry
+				if( !new FileBrowserSAFEntry( context, Uri.parse( folderContents.GetRawUri( index ) ) ).delete() )
+					return null;
 			}
 		}
 
-		return CreateSAFEntry( context, folderRawUri, isDirectory, entryName );
+		if( FileBrowserProviderCalls.GetStatus() != FileBrowserProviderCalls.STATUS_OK )
+			return null;
+
+		String result = CreateSAFEntry( context, folderRawUri, isDirectory, entryName );
+		return result.length() > 0 ? result : null;
 	}
 	//// END UTILITY FUNCTIONS
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+// Streams Storage Access Framework (SAF) directories/raw directories directly into zip archives and vice versa. Nothing
+// is staged in temporary files, file contents pass through a single pooled buffer
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserArchive
+{
+	// A destination folder whose children are listed lazily (at most once) while extracting an archive
+	private static class DestinationFolder
+	{
+		public final String rawUri;
+		private HashMap<String, FileBrowserEntryInfo> children;
+
+		public DestinationFolder( String rawUri )
+		{
+			this.rawUri = rawUri;
+		}
+
+		// Throws if the SAF folder can't be listed, its existing entries would otherwise be duplicated
+		public FileBrowserEntryInfo getChild( Context context, String name ) throws IOException
+		{
+			if( children == null && rawUri.contains( "://" ) )
+			{
+				ArrayList<FileBrowserEntryInfo> contents = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).listFilesWithAttributes();
+				if( contents == null )
+					throw new IOException( "Couldn't list " + rawUri );
+
+				children = new HashMap<String, FileBrowserEntryInfo>( contents.size() * 2 );
+				for( int i = 0; i < contents.size(); i++ )
+					children.put( contents.get( i ).name, contents.get( i ) );
+			}
+
+			if( rawUri.contains( "://" ) )
+				return children.get( name );
+
+			// Raw folders can be checked directly
+			File file = new File( rawUri, name );
+			return file.exists() ? new FileBrowserEntryInfo( name, file.getPath(), file.isDirectory(), 0L, 0L ) : null;
+		}
+
+		public void onChildCreated( FileBrowserEntryInfo child )
+		{
+			if( children != null )
+				children.put( child.name, child );
+		}
+	}
+
+	public static boolean Export( Context context, String sourceRawUri, String archiveRawUri )
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			OutputStream output = OpenOutputStream( context, archiveRawUri );
+			if( output == null )
+				return false;
+
+			ZipOutputStream zipOutput = new ZipOutputStream( new BufferedOutputStream( output, FileBrowserBufferPool.BUFFER_SIZE ) );
+			try
+			{
+				ExportDirectoryRecursively( context, sourceRawUri, "", zipOutput, buffer );
+			}
+			finally
+			{
+				zipOutput.close();
+			}
+
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+
+	public static boolean Import( Context context, String archiveRawUri, String destinationRawUri )
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			InputStream input = OpenInputStream( context, archiveRawUri );
+			if( input == null )
+				return false;
+
+			if( !destinationRawUri.contains( "://" ) )
+				new File( destinationRawUri ).mkdirs();
+
+			// Folders that are created/visited while extracting the archive, keyed by their relative paths
+			HashMap<String, DestinationFolder> destinationFolders = new HashMap<String, DestinationFolder>();
+			destinationFolders.put( "", new DestinationFolder( destinationRawUri ) );
+
+			ZipInputStream zipInput = new ZipInputStream( new BufferedInputStream( input, FileBrowserBufferPool.BUFFER_SIZE ) );
+			try
+			{
+				ZipEntry entry;
+				while( ( entry = zipInput.getNextEntry() ) != null )
+				{
+					String entryPath = entry.getName().replace( '\\', '/' );
+					if( !IsSafeEntryPath( entryPath ) )
+					{
+						Log.w( "Unity", "Skipped unsafe archive entry: " + entry.getName() );
+						continue;
+					}
+
+					if( entryPath.endsWith( "/" ) )
+						entryPath = entryPath.substring( 0, entryPath.length() - 1 );
+
+					// Like Export, the import fails as soon as an entry can't be extracted so that a partial import isn't reported as success
+					int nameSeparatorIndex = entryPath.lastIndexOf( '/' );
+					DestinationFolder parentFolder = GetDestinationFolder( context, destinationFolders, nameSeparatorIndex > 0 ? entryPath.substring( 0, nameSeparatorIndex ) : "" );
+					if( parentFolder == null )
+						throw new IOException( "Couldn't create the folder of " + entryPath );
+
+					if( entry.isDirectory() )
+					{
+						if( GetDestinationFolder( context, destinationFolders, entryPath ) == null )
+							throw new IOException( "Couldn't create " + entryPath );
+					}
+					else
+					{
+						String targetRawUri = GetDestinationFile( context, parentFolder, entryPath.substring( nameSeparatorIndex + 1 ) );
+						if( targetRawUri == null )
+							throw new IOException( "Couldn't create " + entryPath );
+
+						OutputStream output = OpenOutputStream( context, targetRawUri );
+						if( output == null )
+							throw new IOException( "Couldn't open " + targetRawUri );
+
+						try
+						{
+							FileBrowserCopyEngine.Copy( zipInput, output, buffer );
+						}
+						finally
+						{
+							output.close();
+						}
+
+						if( !targetRawUri.contains( "://" ) && entry.getTime() > 0L )
+							new File( targetRawUri ).setLastModified( entry.getTime() );
+					}
+				}
+			}
+			finally
+			{
+				zipInput.close();
+			}
+
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+
+	// Throws if a directory or file can't be read so that an incomplete archive isn't reported as a successful export
+	private static void ExportDirectoryRecursively( Context context, String directoryRawUri, String relativePath, ZipOutputStream zipOutput, byte[] buffer ) throws Exception
+	{
+		ArrayList<FileBrowserEntryInfo> contents = FileBrowser.ListEntriesWithAttributes( context, directoryRawUri );
+		if( contents == null )
+			throw new IOException( "Couldn't list " + directoryRawUri );
+
+		for( int i = 0; i < contents.size(); i++ )
+		{
+			FileBrowserEntryInfo content = contents.get( i );
+			String entryPath = relativePath + content.name;
+			if( content.isDirectory )
+			{
+				ZipEntry entry = new ZipEntry( entryPath + "/" );
+				if( content.lastModified > 0L )
+					entry.setTime( content.lastModified );
+
+				zipOutput.putNextEntry( entry );
+				zipOutput.closeEntry();
+
+				ExportDirectoryRecursively( context, content.rawUri, entryPath + "/", zipOutput, buffer );
+			}
+			else
+			{
+				InputStream input = OpenInputStream( context, content.rawUri );
+				if( input == null )
+					throw new IOException( "Couldn't open " + content.rawUri );
+
+				try
+				{
+					ZipEntry entry = new ZipEntry( entryPath );
+					if( content.lastModified > 0L )
+						entry.setTime( content.lastModified );
+
+					zipOutput.putNextEntry( entry );
+					FileBrowserCopyEngine.Copy( input, zipOutput, buffer );
+					zipOutput.closeEntry();
+				}
+				finally
+				{
+					input.close();
+				}
+			}
+		}
+	}
+
+	private static DestinationFolder GetDestinationFolder( Context context, HashMap<String, DestinationFolder> destinationFolders, String relativePath ) throws IOException
+	{
+		DestinationFolder result = destinationFolders.get( relativePath );
+		if( result != null )
+			return result;
+
+		// Archives don't have to contain entries for folders, create the missing parent folders on the fly
+		int nameSeparatorIndex = relativePath.lastIndexOf( '/' );
+		DestinationFolder parentFolder = GetDestinationFolder( context, destinationFolders, nameSeparatorIndex > 0 ? relativePath.substring( 0, nameSeparatorIndex ) : "" );
+		if( parentFolder == null )
+			return null;
+
+		String name = relativePath.substring( nameSeparatorIndex + 1 );
+		FileBrowserEntryInfo existingEntry = parentFolder.getChild( context, name );
+		String rawUri;
+		if( existingEntry != null && existingEntry.isDirectory )
+			rawUri = existingEntry.rawUri;
+		else
+		{
+			if( existingEntry != null )
+				FileBrowser.DeleteEntry( context, existingEntry.rawUri, existingEntry.isDirectory );
+
+			rawUri = CreateEntry( context, parentFolder, true, name );
+			if( rawUri == null )
+				return null;
+		}
+
+		result = new DestinationFolder( rawUri );
+		destinationFolders.put( relativePath, result );
+		return result;
+	}
+
+	private static String GetDestinationFile( Context context, DestinationFolder parentFolder, String name ) throws IOException
+	{
+		FileBrowserEntryInfo existingEntry = parentFolder.getChild( context, name );
+		if( existingEntry != null )
+		{
+			if( !existingEntry.isDirectory )
+				return existingEntry.rawUri;
+
+			FileBrowser.DeleteEntry( context, existingEntry.rawUri, existingEntry.isDirectory );
+		}
+
+		return CreateEntry( context, parentFolder, false, name );
+	}
+
+	private static String CreateEntry( Context context, DestinationFolder parentFolder, boolean isDirectory, String name )
+	{
+		String rawUri;
+		if( parentFolder.rawUri.contains( "://" ) )
+		{
+			try
+			{
+				rawUri = FileBrowser.CreateSAFEntry( context, parentFolder.rawUri, isDirectory, name );
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+				return null;
+			}
+
+			if( rawUri.length() == 0 )
+				return null;
+		}
+		else
+		{
+			File file = new File( parentFolder.rawUri, name );
+			if( isDirectory )
+				file.mkdirs();
+
+			rawUri = file.getPath();
+		}
+
+		parentFolder.onChildCreated( new FileBrowserEntryInfo( name, rawUri, isDirectory, 0L, 0L ) );
+		return rawUri;
+	}
+
+	// Rejects absolute paths and paths that try to escape the destination folder (Zip Slip)
+	private static boolean IsSafeEntryPath( String entryPath )
+	{
+		if( entryPath.length() == 0 || entryPath.startsWith( "/" ) )
+			return false;
+
+		for( String segment : entryPath.split( "/" ) )
+		{
+			if( segment.equals( ".." ) )
+				return false;
+		}
+
+		return true;
+	}
+
+	private static InputStream OpenInputStream( Context context, String rawUri ) throws Exception
+	{
+		return rawUri.contains( "://" ) ? context.getContentResolver().openInputStream( Uri.parse( rawUri ) ) : new FileInputStream( new File( rawUri ) );
+	}
+
+	private static OutputStream OpenOutputStream( Context context, String rawUri ) throws Exception
+	{
+		return rawUri.contains( "://" ) ? context.getContentResolver().openOutputStream( Uri.parse( rawUri ), "rwt" ) : new FileOutputStream( new File( rawUri ), false );
+	}
+}
\ No newline at end of file
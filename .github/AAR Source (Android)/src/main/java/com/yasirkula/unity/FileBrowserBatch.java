@@ -0,0 +1,226 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Executes multiple create/rename/delete operations in a single call. Operations that target the same
+// provider (or the raw filesystem) run with bounded parallelism, different providers run concurrently
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserBatch
+{
+	// Maximum number of simultaneous operations that are sent to a single provider
+	private static final int MAX_PARALLEL_OPERATIONS_PER_PROVIDER = 4;
+
+	private static final String OPERATION_CREATE_FILE = "cf";
+	private static final String OPERATION_CREATE_FOLDER = "cd";
+	private static final String OPERATION_RENAME = "r";
+	private static final String OPERATION_DELETE = "d";
+
+	private static class Operation
+	{
+		public final String type;
+		public final String target;
+		public final String argument;
+
+		public boolean succeeded;
+		public String result = "";
+
+		public Operation( String type, String target, String argument )
+		{
+			this.type = type;
+			this.target = target;
+			this.argument = argument;
+		}
+	}
+
+	// Operations are formatted as "type<>target<>argument<>" and concatenated. Supported types:
+	// cf: create file named argument inside target folder, cd: create folder named argument inside target folder,
+	// r: rename target to argument, d: delete target (folders are deleted recursively)
+	// Operations in the same batch must be independent of each other since they may run in any order
+	//
+	// Result is formatted as "count<>" followed by "Xvalue<>" for each operation (in the same order) where X is
+	// 1 on success and 0 on failure, and value is the created/renamed entry's path (empty for delete operations)
+	public static String Execute( final Context context, String operationsRaw )
+	{
+		ArrayList<Operation> operations = ParseOperations( operationsRaw );
+
+		// Group the operations by their providers
+		final HashMap<String, ArrayList<Operation>> providers = new HashMap<String, ArrayList<Operation>>();
+		for( int i = 0; i < operations.size(); i++ )
+		{
+			Operation operation = operations.get( i );
+			String provider = GetProvider( operation.target );
+
+			ArrayList<Operation> providerOperations = providers.get( provider );
+			if( providerOperations == null )
+			{
+				providerOperations = new ArrayList<Operation>();
+				providers.put( provider, providerOperations );
+			}
+
+			providerOperations.add( operation );
+		}
+
+		int workerCount = 0;
+		for( ArrayList<Operation> providerOperations : providers.values() )
+			workerCount += Math.min( providerOperations.size(), MAX_PARALLEL_OPERATIONS_PER_PROVIDER );
+
+		final CountDownLatch latch = new CountDownLatch( workerCount );
+		ExecutorService executor = FileBrowserWorkers.GetExecutor();
+		for( final ArrayList<Operation> providerOperations : providers.values() )
+		{
+			// Workers of the same provider pick the next pending operation from a shared index
+			final AtomicInteger nextOperationIndex = new AtomicInteger();
+			for( int i = Math.min( providerOperations.size(), MAX_PARALLEL_OPERATIONS_PER_PROVIDER ); i > 0; i-- )
+			{
+				executor.execute( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							int index;
+							while( ( index = nextOperationIndex.getAndIncrement() ) < providerOperations.size() )
+							{
+								Operation operation = providerOperations.get( index );
+								FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, operation.target );
+								try
+								{
+									ExecuteOperation( context, operation );
+								}
+								finally
+								{
+									FileBrowserIOScheduler.End();
+								}
+							}
+						}
+						finally
+						{
+							latch.countDown();
+						}
+					}
+				} );
+			}
+		}
+
+		try
+		{
+			latch.await();
+		}
+		catch( InterruptedException e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			Thread.currentThread().interrupt();
+		}
+
+		StringBuilder result = new StringBuilder( operations.size() * 64 );
+		result.append( operations.size() ).append( "<>" );
+		for( int i = 0; i < operations.size(); i++ )
+		{
+			Operation operation = operations.get( i );
+			result.append( operation.succeeded ? '1' : '0' ).append( operation.result ).append( "<>" );
+		}
+
+		return result.toString();
+	}
+
+	private static ArrayList<Operation> ParseOperations( String operationsRaw )
+	{
+		ArrayList<Operation> result = new ArrayList<Operation>();
+		String[] tokens = operationsRaw.split( "<>", -1 );
+		for( int i = 0; i + 2 < tokens.length; i += 3 )
+			result.add( new Operation( tokens[i], tokens[i + 1], tokens[i + 2] ) );
+
+		return result;
+	}
+
+	private static String GetProvider( String rawUri )
+	{
+		if( !rawUri.contains( "://" ) )
+			return "";
+
+		String authority = Uri.parse( rawUri ).getAuthority();
+		return authority != null ? authority : "";
+	}
+
+	private static void ExecuteOperation( Context context, Operation operation )
+	{
+		try
+		{
+			boolean isSAFEntry = operation.target.contains( "://" );
+			if( OPERATION_CREATE_FILE.equals( operation.type ) || OPERATION_CREATE_FOLDER.equals( operation.type ) )
+			{
+				boolean isFolder = OPERATION_CREATE_FOLDER.equals( operation.type );
+				if( isSAFEntry )
+				{
+					String createdRawUri = FileBrowser.CreateSAFEntry( context, operation.target, isFolder, operation.argument );
+					if( createdRawUri != null && createdRawUri.length() > 0 )
+					{
+						operation.result = createdRawUri;
+						operation.succeeded = true;
+					}
+				}
+				else
+				{
+					File createdFile = new File( operation.target, operation.argument );
+					if( isFolder ? createdFile.mkdir() : createdFile.createNewFile() )
+					{
+						operation.result = createdFile.getPath();
+						operation.succeeded = true;
+					}
+				}
+			}
+			else if( OPERATION_RENAME.equals( operation.type ) )
+			{
+				if( isSAFEntry )
+				{
+					// Some providers preserve the URI after renaming, verify the new name in that case
+					operation.result = FileBrowser.RenameSAFEntry( context, operation.target, operation.argument );
+					operation.succeeded = !operation.result.equals( operation.target ) || operation.argument.equals( FileBrowser.SAFEntryName( context, operation.result ) );
+				}
+				else
+				{
+					File file = new File( operation.target );
+					File renamedFile = new File( file.getParentFile(), operation.argument );
+					if( file.renameTo( renamedFile ) )
+					{
+						operation.result = renamedFile.getPath();
+						operation.succeeded = true;
+					}
+				}
+			}
+			else if( OPERATION_DELETE.equals( operation.type ) )
+			{
+				if( isSAFEntry )
+					operation.succeeded = FileBrowser.DeleteSAFEntry( context, operation.target );
+				else
+				{
+					File file = new File( operation.target );
+					if( file.isDirectory() )
+						FileBrowser.DeleteRawDirectoryRecursively( file );
+					else
+						file.delete();
+
+					operation.succeeded = !file.exists();
+				}
+			}
+			else
+				Log.e( "Unity", "Unknown batch operation: " + operation.type );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.yasirkula.unity;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reuses the large byte buffers of streaming operations instead of allocating a new buffer for each file.
+// This class must not depend on the Android framework
+public class FileBrowserBufferPool
+{
+	public static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 8;
+
+	private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+	private static final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+	public static byte[] Acquire()
+	{
+		byte[] buffer = buffers.poll();
+		if( buffer == null )
+			return new byte[BUFFER_SIZE];
+
+		pooledBufferCount.decrementAndGet();
+		return buffer;
+	}
+
+	public static void Release( byte[] buffer )
+	{
+		if( buffer == null || buffer.length != BUFFER_SIZE )
+			return;
+
+		if( pooledBufferCount.incrementAndGet() <= MAX_POOLED_BUFFERS )
+			buffers.offer( buffer );
+		else
+			pooledBufferCount.decrementAndGet();
+	}
+}
\ No newline at end of file
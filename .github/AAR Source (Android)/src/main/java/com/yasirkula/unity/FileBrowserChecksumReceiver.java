@@ -0,0 +1,7 @@
+package com.yasirkula.unity;
+
+public interface FileBrowserChecksumReceiver
+{
+	void OnChecksumProgress( int processedFileCount, long processedBytes );
+	void OnChecksumsCalculated( String checksums );
+}
\ No newline at end of file
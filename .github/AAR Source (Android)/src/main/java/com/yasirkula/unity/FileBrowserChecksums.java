@@ -0,0 +1,171 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// Calculates CRC32, MD5 or SHA-256 checksums of Storage Access Framework (SAF) files and raw files by streaming
+// their contents through pooled buffers, so that the files' contents never reach the managed heap
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserChecksums
+{
+	private static final int MAX_PARALLEL_FILES = 4;
+	private static final long PROGRESS_REPORT_INTERVAL = 250L; // milliseconds
+
+	private interface ProgressListener
+	{
+		void OnBytesProcessed( int byteCount );
+	}
+
+	// algorithm can be "CRC32", "MD5" or "SHA-256". Returns the checksum as a lowercase hex string (or an empty string on failure)
+	public static String Calculate( Context context, String rawUri, String algorithm )
+	{
+		return Calculate( context, rawUri, algorithm, null );
+	}
+
+	// Calculates the checksums of the files (formatted as "path1<>path2<>...") asynchronously. Result is formatted
+	// as "count<>" followed by "checksum<>" for each file in the same order (checksum is empty on failure)
+	public static void CalculateMultiple( final Context context, String rawUris, final String algorithm, final FileBrowserChecksumReceiver checksumReceiver )
+	{
+		final String[] files = rawUris.length() > 0 ? rawUris.split( "<>" ) : new String[0];
+		final String[] checksums = new String[files.length];
+
+		final AtomicInteger nextFileIndex = new AtomicInteger();
+		final AtomicInteger processedFileCount = new AtomicInteger();
+		final AtomicLong processedBytes = new AtomicLong();
+		final AtomicLong nextProgressReportTime = new AtomicLong();
+
+		final ProgressListener progressListener = new ProgressListener()
+		{
+			@Override
+			public void OnBytesProcessed( int byteCount )
+			{
+				long totalProcessedBytes = processedBytes.addAndGet( byteCount );
+				long nextReportTime = nextProgressReportTime.get();
+				long currentTime = SystemClock.uptimeMillis();
+				if( currentTime >= nextReportTime && nextProgressReportTime.compareAndSet( nextReportTime, currentTime + PROGRESS_REPORT_INTERVAL ) )
+					checksumReceiver.OnChecksumProgress( processedFileCount.get(), totalProcessedBytes );
+			}
+		};
+
+		int workerCount = Math.max( 1, Math.min( files.length, MAX_PARALLEL_FILES ) );
+		final AtomicInteger remainingWorkerCount = new AtomicInteger( workerCount );
+		for( int i = 0; i < workerCount; i++ )
+		{
+			FileBrowserWorkers.GetExecutor().execute( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					int index;
+					while( ( index = nextFileIndex.getAndIncrement() ) < files.length )
+					{
+						if( files[index].length() > 0 )
+						{
+							FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, files[index] );
+							try
+							{
+								checksums[index] = Calculate( context, files[index], algorithm, progressListener );
+							}
+							finally
+							{
+								FileBrowserIOScheduler.End();
+							}
+						}
+						else
+							checksums[index] = "";
+
+						checksumReceiver.OnChecksumProgress( processedFileCount.incrementAndGet(), processedBytes.get() );
+					}
+
+					// The last worker to finish reports the results
+					if( remainingWorkerCount.decrementAndGet() == 0 )
+					{
+						StringBuilder result = new StringBuilder( files.length * 68 );
+						result.append( files.length ).append( "<>" );
+						for( String checksum : checksums )
+							result.append( checksum ).append( "<>" );
+
+						checksumReceiver.OnChecksumsCalculated( result.toString() );
+					}
+				}
+			} );
+		}
+	}
+
+	public static String ToHexString( byte[] bytes )
+	{
+		StringBuilder result = new StringBuilder( bytes.length * 2 );
+		for( byte b : bytes )
+			result.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+
+		return result.toString();
+	}
+
+	private static String Calculate( Context context, String rawUri, String algorithm, ProgressListener progressListener )
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			InputStream input = rawUri.contains( "://" ) ? context.getContentResolver().openInputStream( Uri.parse( rawUri ) ) : new FileInputStream( new File( rawUri ) );
+			if( input == null )
+				return "";
+
+			try
+			{
+				if( "CRC32".equalsIgnoreCase( algorithm ) )
+				{
+					CRC32 crc = new CRC32();
+					int len;
+					while( ( len = input.read( buffer ) ) > 0 )
+					{
+						crc.update( buffer, 0, len );
+						FileBrowserIOScheduler.Checkpoint();
+						if( progressListener != null )
+							progressListener.OnBytesProcessed( len );
+					}
+
+					return String.format( "%08x", crc.getValue() );
+				}
+				else
+				{
+					MessageDigest digest = MessageDigest.getInstance( algorithm );
+					int len;
+					while( ( len = input.read( buffer ) ) > 0 )
+					{
+						digest.update( buffer, 0, len );
+						FileBrowserIOScheduler.Checkpoint();
+						if( progressListener != null )
+							progressListener.OnBytesProcessed( len );
+					}
+
+					return ToHexString( digest.digest() );
+				}
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return "";
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.yasirkula.unity;
+
+import java.util.Arrays;
+
+// A folder's listing that is stored in parallel primitive arrays instead of an object per entry: sizes, last modified dates,
+// flags and the offsets of the entries' names and document ids in a single shared char buffer. Walkers that traverse large
+// folder hierarchies (e.g. copying, calculating sizes) read the entries' attributes from here instead of querying each entry
+// separately. Uris are built only for the entries that need them. This class must not depend on the Android framework
+public class FileBrowserColumnarListing
+{
+	private static final int FLAG_DIRECTORY = 1;
+
+	// If null, document ids are stored as full uris
+	private final String treeUriPrefix;
+
+	private int count;
+	private long[] sizes;
+	private long[] lastModifieds;
+	private int[] flags;
+
+	// Entry i's name is stored at chars[offsets[2i], offsets[2i+1]) and its document id at chars[offsets[2i+1], offsets[2i+2])
+	private int[] offsets;
+	private char[] chars;
+
+	public FileBrowserColumnarListing( String treeUriPrefix, int capacity )
+	{
+		this.treeUriPrefix = treeUriPrefix;
+
+		capacity = Math.max( capacity, 4 );
+		sizes = new long[capacity];
+		lastModifieds = new long[capacity];
+		flags = new int[capacity];
+		offsets = new int[capacity * 2 + 1];
+		chars = new char[capacity * 48];
+	}
+
+	public void Add( String name, String documentId, boolean isDirectory, long size, long lastModified )
+	{
+		if( count == sizes.length )
+		{
+			int capacity = count * 2;
+			sizes = Arrays.copyOf( sizes, capacity );
+			lastModifieds = Arrays.copyOf( lastModifieds, capacity );
+			flags = Arrays.copyOf( flags, capacity );
+			offsets = Arrays.copyOf( offsets, capacity * 2 + 1 );
+		}
+
+		int charCount = offsets[count * 2];
+		if( charCount + name.length() + documentId.length() > chars.length )
+			chars = Arrays.copyOf( chars, Math.max( chars.length * 2, charCount + name.length() + documentId.length() ) );
+
+		name.getChars( 0, name.length(), chars, charCount );
+		charCount += name.length();
+		offsets[count * 2 + 1] = charCount;
+
+		documentId.getChars( 0, documentId.length(), chars, charCount );
+		charCount += documentId.length();
+		offsets[count * 2 + 2] = charCount;
+
+		sizes[count] = size;
+		lastModifieds[count] = lastModified;
+		flags[count] = isDirectory ? FLAG_DIRECTORY : 0;
+		count++;
+	}
+
+	public int GetCount()
+	{
+		return count;
+	}
+
+	public boolean IsDirectory( int index )
+	{
+		return ( flags[index] & FLAG_DIRECTORY ) != 0;
+	}
+
+	public long GetSize( int index )
+	{
+		return sizes[index];
+	}
+
+	public long GetLastModified( int index )
+	{
+		return lastModifieds[index];
+	}
+
+	public String GetName( int index )
+	{
+		return new String( chars, offsets[index * 2], offsets[index * 2 + 1] - offsets[index * 2] );
+	}
+
+	public String GetRawUri( int index )
+	{
+		String documentId = new String( chars, offsets[index * 2 + 1], offsets[index * 2 + 2] - offsets[index * 2 + 1] );
+		return treeUriPrefix != null ? FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, documentId ) : documentId;
+	}
+
+	// Returns the index of the entry with the name (compared without allocating a string per entry) or -1 if it doesn't exist
+	public int IndexOf( String name )
+	{
+		int length = name.length();
+		for( int i = 0; i < count; i++ )
+		{
+			int start = offsets[i * 2];
+			if( offsets[i * 2 + 1] - start != length )
+				continue;
+
+			int j = 0;
+			while( j < length && chars[start + j] == name.charAt( j ) )
+				j++;
+
+			if( j == length )
+				return i;
+		}
+
+		return -1;
+	}
+}
@@ -0,0 +1,140 @@
+package com.yasirkula.unity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Copies streams and files. This class must not depend on the Android framework so that
+// its throughput can be measured on a desktop JVM
+public class FileBrowserCopyEngine
+{
+	// Background copies yield to interactive work (see FileBrowserIOScheduler.Checkpoint) after this many bytes
+	private static final int CHECKPOINT_INTERVAL = 1024 * 1024;
+
+	// Copies the stream using a pooled buffer and returns the number of copied bytes. Streams aren't closed
+	public static long Copy( InputStream input, OutputStream output ) throws IOException
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			return Copy( input, output, buffer );
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+
+	public static long Copy( InputStream input, OutputStream output, byte[] buffer ) throws IOException
+	{
+		FileBrowserIOScheduler.Checkpoint();
+
+		long totalLength = 0L;
+		int bytesSinceCheckpoint = 0;
+		int len;
+		while( ( len = input.read( buffer ) ) > 0 )
+		{
+			output.write( buffer, 0, len );
+			totalLength += len;
+
+			bytesSinceCheckpoint += len;
+			if( bytesSinceCheckpoint >= CHECKPOINT_INTERVAL )
+			{
+				FileBrowserIOScheduler.Checkpoint();
+				bytesSinceCheckpoint = 0;
+			}
+		}
+
+		return totalLength;
+	}
+
+	// Copies the file with FileChannel.transferTo which lets the kernel copy the data without passing it through a Java buffer
+	public static long CopyFile( File source, File destination ) throws IOException
+	{
+		FileInputStream input = new FileInputStream( source );
+		try
+		{
+			FileOutputStream output = new FileOutputStream( destination, false );
+			try
+			{
+				return Copy( input.getChannel(), output.getChannel() );
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	// Throws IOException if the input ends before its initial size is copied
+	public static long Copy( FileChannel input, FileChannel output ) throws IOException
+	{
+		long size = input.size();
+		long position = 0L;
+		while( position < size )
+		{
+			FileBrowserIOScheduler.Checkpoint();
+
+			// Transfer in chunks so that the copy can yield to interactive work
+			long transferred = input.transferTo( position, Math.min( size - position, CHECKPOINT_INTERVAL * 8L ), output );
+			if( transferred <= 0L )
+			{
+				// transferTo may transfer nothing without reaching the end of the input (e.g. if the target can't accept the data
+				// at the moment), copy the rest through a buffer which distinguishes the end of the input from a stalled transfer
+				return CopyBuffered( input, output, position, size );
+			}
+
+			position += transferred;
+		}
+
+		return position;
+	}
+
+	private static long CopyBuffered( FileChannel input, FileChannel output, long position, long size ) throws IOException
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			ByteBuffer byteBuffer = ByteBuffer.wrap( buffer );
+			int bytesSinceCheckpoint = 0;
+			while( position < size )
+			{
+				byteBuffer.clear();
+				if( size - position < buffer.length )
+					byteBuffer.limit( (int) ( size - position ) );
+
+				int len = input.read( byteBuffer, position );
+				if( len <= 0 )
+					throw new IOException( "Input ended at " + position + " of " + size + " bytes" );
+
+				byteBuffer.flip();
+				while( byteBuffer.hasRemaining() )
+					output.write( byteBuffer );
+
+				position += len;
+
+				bytesSinceCheckpoint += len;
+				if( bytesSinceCheckpoint >= CHECKPOINT_INTERVAL )
+				{
+					FileBrowserIOScheduler.Checkpoint();
+					bytesSinceCheckpoint = 0;
+				}
+			}
+
+			return position;
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+}
\ No newline at end of file
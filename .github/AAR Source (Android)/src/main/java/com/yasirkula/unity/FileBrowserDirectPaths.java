@@ -0,0 +1,232 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.os.storage.StorageManager;
+import android.os.storage.StorageVolume;
+import android.provider.DocumentsContract;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Translates the Storage Access Framework (SAF) uris of the external storage provider (whose document ids are formatted as
+// "volume:relative/path") to the file paths they point to so that they can be accessed via File and FileChannel without any
+// provider round trips. Paths are used only if the app can access them directly: app-specific folders are always accessible,
+// whole volumes are accessible with the all files access permission (and the primary volume with legacy external storage).
+// Each volume's root is determined once. Its accessibility is re-evaluated whenever the app's storage permissions change (e.g. the
+// all files access permission is granted in the Settings app while the app is running), which is checked at most once per second
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserDirectPaths
+{
+	private static final String EXTERNAL_STORAGE_AUTHORITY = "com.android.externalstorage.documents";
+	private static final String PRIMARY_VOLUME = "primary";
+	private static final String HOME_VOLUME = "home";
+
+	private static final long PERMISSION_CHECK_INTERVAL = 1000L;
+
+	private static class Volume
+	{
+		public String rootPath; // null if the volume couldn't be found
+		public boolean isAccessible; // Whether or not the whole volume is accessible
+		public boolean hasPermission; // The permission state that isAccessible was determined with
+		public long permissionCheckTime; // SystemClock.elapsedRealtime
+		public final ArrayList<String> appSpecificPaths = new ArrayList<String>( 2 );
+	}
+
+	private static final HashMap<String, Volume> volumes = new HashMap<String, Volume>();
+	private static volatile boolean enabled = true;
+
+	public static void SetEnabled( boolean enabled )
+	{
+		FileBrowserDirectPaths.enabled = enabled;
+	}
+
+	// Returns the file path of the SAF uri or null if it can't be accessed directly
+	public static String Resolve( Context context, String rawUri )
+	{
+		if( !enabled || !EXTERNAL_STORAGE_AUTHORITY.equals( FileBrowserPathUtils.GetAuthority( rawUri ) ) )
+			return null;
+
+		String documentId = GetDocumentId( rawUri );
+		int volumeSeparator = documentId != null ? documentId.indexOf( ':' ) : -1;
+		if( volumeSeparator <= 0 )
+			return null;
+
+		String relativePath = documentId.substring( volumeSeparator + 1 );
+		if( ( "/" + relativePath + "/" ).contains( "/../" ) )
+			return null;
+
+		Volume volume = GetVolume( context, documentId.substring( 0, volumeSeparator ) );
+		if( volume.rootPath == null )
+			return null;
+
+		String path = relativePath.length() > 0 ? ( volume.rootPath + "/" + relativePath ) : volume.rootPath;
+		if( volume.isAccessible )
+			return path;
+
+		for( int i = 0; i < volume.appSpecificPaths.size(); i++ )
+		{
+			String appSpecificPath = volume.appSpecificPaths.get( i );
+			if( path.equals( appSpecificPath ) || path.startsWith( appSpecificPath + "/" ) )
+				return path;
+		}
+
+		return null;
+	}
+
+	// Lists the SAF folder via its file path. The entries' uris are SAF uris. Returns null if the folder can't be listed this way
+	public static ArrayList<FileBrowserEntryInfo> ListEntries( Context context, String rawUri )
+	{
+		String path = Resolve( context, rawUri );
+		String treeUriPrefix = path != null ? FileBrowserPathUtils.GetTreeUriPrefix( rawUri ) : null;
+		if( treeUriPrefix == null )
+			return null;
+
+		ArrayList<FileBrowserEntryInfo> entries = FileBrowserRawListing.ListEntries( path );
+		if( entries == null )
+			return null;
+
+		String documentId = GetDocumentId( rawUri );
+		String childDocumentIdPrefix = documentId.endsWith( ":" ) ? documentId : ( documentId + "/" );
+		for( int i = 0; i < entries.size(); i++ )
+		{
+			FileBrowserEntryInfo entry = entries.get( i );
+			String childRawUri = FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, childDocumentIdPrefix + entry.name );
+			entries.set( i, new FileBrowserEntryInfo( entry.name, childRawUri, entry.isDirectory, entry.size, entry.lastModified ) );
+		}
+
+		return entries;
+	}
+
+	private static String GetDocumentId( String rawUri )
+	{
+		try
+		{
+			return DocumentsContract.getDocumentId( Uri.parse( rawUri ) );
+		}
+		catch( Exception e )
+		{
+			// Tree uris don't have a document id
+			return null;
+		}
+	}
+
+	private static synchronized Volume GetVolume( Context context, String volumeName )
+	{
+		Volume volume = volumes.get( volumeName );
+		if( volume != null )
+		{
+			if( volume.rootPath != null && SystemClock.elapsedRealtime() - volume.permissionCheckTime >= PERMISSION_CHECK_INTERVAL )
+				UpdateAccess( context, volumeName, volume, false );
+
+			return volume;
+		}
+
+		volume = new Volume();
+		volumes.put( volumeName, volume );
+
+		File root = GetVolumeRoot( context, volumeName );
+		if( root == null )
+			return volume;
+
+		volume.rootPath = root.getAbsolutePath();
+		while( volume.rootPath.length() > 1 && volume.rootPath.endsWith( "/" ) )
+			volume.rootPath = volume.rootPath.substring( 0, volume.rootPath.length() - 1 );
+
+		UpdateAccess( context, volumeName, volume, true );
+
+		AddAppSpecificPaths( volume, context.getExternalFilesDirs( null ) );
+		AddAppSpecificPaths( volume, GetExternalMediaDirs( context ) );
+		return volume;
+	}
+
+	private static void UpdateAccess( Context context, String volumeName, Volume volume, boolean force )
+	{
+		volume.permissionCheckTime = SystemClock.elapsedRealtime();
+
+		// Files and folders created directly are visible to the provider since it is backed by the same filesystem
+		boolean hasAllFilesAccess = Build.VERSION.SDK_INT >= 30 && Environment.isExternalStorageManager();
+		boolean hasLegacyAccess = ( PRIMARY_VOLUME.equals( volumeName ) || HOME_VOLUME.equals( volumeName ) ) && Environment.isExternalStorageLegacy()
+				&& context.checkSelfPermission( Manifest.permission.WRITE_EXTERNAL_STORAGE ) == PackageManager.PERMISSION_GRANTED;
+		boolean hasPermission = hasAllFilesAccess || hasLegacyAccess;
+		if( !force && hasPermission == volume.hasPermission )
+			return;
+
+		volume.hasPermission = hasPermission;
+		if( hasPermission )
+		{
+			// Verify the access once per permission change
+			String[] contents = new File( volume.rootPath ).list();
+			volume.isAccessible = contents != null && new File( volume.rootPath ).canWrite();
+		}
+		else
+			volume.isAccessible = false;
+	}
+
+	// Media folders are app-specific, too. The function is deprecated in favor of MediaStore but still returns these folders
+	@SuppressWarnings( "deprecation" )
+	private static File[] GetExternalMediaDirs( Context context )
+	{
+		return context.getExternalMediaDirs();
+	}
+
+	// App-specific folders are formatted as "volumeRoot/Android/data/packageName/files", the package's folder is accessible as a whole
+	private static void AddAppSpecificPaths( Volume volume, File[] directories )
+	{
+		if( directories == null )
+			return;
+
+		for( int i = 0; i < directories.length; i++ )
+		{
+			if( directories[i] == null )
+				continue;
+
+			String path = directories[i].getAbsolutePath();
+			if( !path.startsWith( volume.rootPath + "/" ) )
+				continue;
+
+			if( path.endsWith( "/files" ) )
+				path = path.substring( 0, path.length() - "/files".length() );
+
+			volume.appSpecificPaths.add( path );
+		}
+	}
+
+	private static File GetVolumeRoot( Context context, String volumeName )
+	{
+		if( PRIMARY_VOLUME.equals( volumeName ) )
+			return Environment.getExternalStorageDirectory();
+		if( HOME_VOLUME.equals( volumeName ) )
+			return Environment.getExternalStoragePublicDirectory( Environment.DIRECTORY_DOCUMENTS );
+
+		// Secondary volumes (e.g. SD cards) are identified by their UUIDs
+		try
+		{
+			for( StorageVolume volume : ( (StorageManager) context.getSystemService( Context.STORAGE_SERVICE ) ).getStorageVolumes() )
+			{
+				if( !volumeName.equalsIgnoreCase( volume.getUuid() ) )
+					continue;
+
+				if( Build.VERSION.SDK_INT >= 30 )
+					return volume.getDirectory();
+
+				Method getPath = StorageVolume.class.getMethod( "getPath" );
+				return new File( (String) getPath.invoke( volume ) );
+			}
+		}
+		catch( Exception e )
+		{
+			// Fall back to the provider
+		}
+
+		return null;
+	}
+}
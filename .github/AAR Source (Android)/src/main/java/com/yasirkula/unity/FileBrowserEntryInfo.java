@@ -0,0 +1,21 @@
+package com.yasirkula.unity;
+
+// A file/folder and its attributes, fetched in a single pass while listing its parent folder.
+// This class must not depend on the Android framework
+public class FileBrowserEntryInfo
+{
+	public final String name;
+	public final String rawUri;
+	public final boolean isDirectory;
+	public final long size;
+	public final long lastModified;
+
+	public FileBrowserEntryInfo( String name, String rawUri, boolean isDirectory, long size, long lastModified )
+	{
+		this.name = name;
+		this.rawUri = rawUri;
+		this.isDirectory = isDirectory;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+}
\ No newline at end of file
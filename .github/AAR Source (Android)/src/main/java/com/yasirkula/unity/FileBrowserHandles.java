@@ -0,0 +1,437 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.DocumentsContract;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Maps compact integer handles to Storage Access Framework (SAF) files/folders and raw files/folders so that listings don't have
+// to send every entry's uri to Unity and follow-up calls don't have to parse the uri again. Each entry keeps its parsed uri
+// and the attributes that were fetched while listing its parent folder. Handles are reference counted: acquiring an entry
+// that already has a handle returns the same handle and each acquisition must be paired with a release. A handle also encodes
+// its slot's generation, so a stale handle (e.g. released twice or released after ReleaseAll) doesn't affect the entry that
+// reuses its slot
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserHandles
+{
+	private static class Entry
+	{
+		public String rawUri;
+		public Uri uri; // Parsed lazily
+		public boolean hasAttributes;
+		public String name;
+		public boolean isDirectory;
+		public long size;
+		public long lastModified;
+		public int referenceCount;
+
+		public Uri GetUri()
+		{
+			if( uri == null )
+				uri = Uri.parse( rawUri );
+
+			return uri;
+		}
+
+		public void SetAttributes( FileBrowserEntryInfo info )
+		{
+			rawUri = info.rawUri;
+			uri = null;
+			name = info.name;
+			isDirectory = info.isDirectory;
+			size = info.size;
+			lastModified = info.lastModified;
+			hasAttributes = true;
+		}
+	}
+
+	// A handle's low SLOT_BITS bits store its slot + 1 (so 0 is never a valid handle) and the remaining bits store the slot's
+	// generation which is incremented each time the slot is released. Generations wrap around after 2^11 reuses of a slot
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = ( 1 << SLOT_BITS ) - 1;
+	private static final int GENERATION_MASK = ( 1 << ( 31 - SLOT_BITS ) ) - 1;
+	private static final int MAX_SLOT_COUNT = SLOT_MASK;
+
+	// Released slots are reused, their entries are null while they are free
+	private static final ArrayList<Entry> entries = new ArrayList<Entry>();
+	private static int[] generations = new int[16];
+	private static final HashMap<String, Integer> handles = new HashMap<String, Integer>();
+	private static int[] freeSlots = new int[16];
+	private static int freeSlotCount;
+
+	// Returns 0 if too many handles are acquired
+	public static synchronized int Acquire( String rawUri )
+	{
+		Integer existingHandle = handles.get( rawUri );
+		if( existingHandle != null )
+		{
+			GetEntry( existingHandle ).referenceCount++;
+			return existingHandle;
+		}
+
+		int slot;
+		if( freeSlotCount > 0 )
+			slot = freeSlots[--freeSlotCount];
+		else if( entries.size() < MAX_SLOT_COUNT )
+		{
+			slot = entries.size();
+			entries.add( null );
+
+			if( slot == generations.length )
+			{
+				int[] newGenerations = new int[generations.length * 2];
+				System.arraycopy( generations, 0, newGenerations, 0, slot );
+				generations = newGenerations;
+			}
+		}
+		else
+			return 0;
+
+		Entry entry = new Entry();
+		entry.rawUri = rawUri;
+		entry.referenceCount = 1;
+		entries.set( slot, entry );
+
+		int handle = ( generations[slot] << SLOT_BITS ) | ( slot + 1 );
+		handles.put( rawUri, handle );
+		return handle;
+	}
+
+	public static synchronized void Release( int handle )
+	{
+		Entry entry = GetEntry( handle );
+		if( entry == null || --entry.referenceCount > 0 )
+			return;
+
+		RemoveMapping( entry.rawUri, handle );
+		FreeSlot( ( handle & SLOT_MASK ) - 1 );
+	}
+
+	// handles are formatted as "handle<>handle<>..."
+	public static synchronized void ReleaseMultiple( String packedHandles )
+	{
+		int startIndex = 0, endIndex;
+		while( ( endIndex = packedHandles.indexOf( FileBrowserListingCodec.SEPARATOR, startIndex ) ) > startIndex )
+		{
+			try
+			{
+				Release( Integer.parseInt( packedHandles.substring( startIndex, endIndex ) ) );
+			}
+			catch( NumberFormatException e )
+			{
+				// Skip malformed handles
+			}
+
+			startIndex = endIndex + FileBrowserListingCodec.SEPARATOR.length();
+		}
+	}
+
+	public static synchronized void ReleaseAll()
+	{
+		// The slots are kept so that their generations invalidate the handles that are released afterwards
+		handles.clear();
+		freeSlotCount = 0;
+		for( int slot = entries.size() - 1; slot >= 0; slot-- )
+			FreeSlot( slot );
+	}
+
+	// Returns an empty string for invalid handles
+	public static synchronized String GetRawUri( int handle )
+	{
+		Entry entry = GetEntry( handle );
+		return entry != null ? entry.rawUri : "";
+	}
+
+	// Lists the folder and acquires a handle for each of its entries. Result is formatted as "count<>" followed by
+	// "handle<>Xname<>size<>lastModified<>" for each entry where X is d for folders and f for files
+	public static String List( Context context, int folderHandle )
+	{
+		String folderRawUri = GetRawUri( folderHandle );
+		if( folderRawUri.length() == 0 )
+			return "0<>";
+
+		ArrayList<FileBrowserEntryInfo> contents = FileBrowser.ListEntriesWithAttributes( context, folderRawUri );
+		if( contents == null )
+			return "0<>";
+
+		StringBuilder result = new StringBuilder( contents.size() * 48 + 8 );
+		FileBrowserListingCodec.AppendHeader( result, contents.size() );
+		synchronized( FileBrowserHandles.class )
+		{
+			for( int i = 0; i < contents.size(); i++ )
+			{
+				FileBrowserEntryInfo info = contents.get( i );
+				int handle = Acquire( info.rawUri );
+				Entry entry = GetEntry( handle );
+				if( entry != null )
+					entry.SetAttributes( info );
+
+				result.append( handle ).append( FileBrowserListingCodec.SEPARATOR ).append( info.isDirectory ? 'd' : 'f' ).append( info.name ).append( FileBrowserListingCodec.SEPARATOR )
+						.append( info.size ).append( FileBrowserListingCodec.SEPARATOR ).append( info.lastModified ).append( FileBrowserListingCodec.SEPARATOR );
+			}
+		}
+
+		return result.toString();
+	}
+
+	// Returns the size that was fetched while listing the entry's parent folder (or fetches it if the entry wasn't listed)
+	public static long GetSize( Context context, int handle )
+	{
+		String rawUri;
+		Uri uri;
+		synchronized( FileBrowserHandles.class )
+		{
+			Entry entry = GetEntry( handle );
+			if( entry == null )
+				return 0L;
+			if( entry.hasAttributes )
+				return entry.size;
+
+			rawUri = entry.rawUri;
+			uri = entry.GetUri();
+		}
+
+		return FileBrowserPathUtils.IsSAFPath( rawUri ) ? new FileBrowserSAFEntry( context, uri ).length() : new File( rawUri ).length();
+	}
+
+	public static long GetLastModified( Context context, int handle )
+	{
+		String rawUri;
+		Uri uri;
+		synchronized( FileBrowserHandles.class )
+		{
+			Entry entry = GetEntry( handle );
+			if( entry == null )
+				return 0L;
+			if( entry.hasAttributes )
+				return entry.lastModified;
+
+			rawUri = entry.rawUri;
+			uri = entry.GetUri();
+		}
+
+		return FileBrowserPathUtils.IsSAFPath( rawUri ) ? new FileBrowserSAFEntry( context, uri ).lastModified() : new File( rawUri ).lastModified();
+	}
+
+	// The handle keeps referring to the renamed entry, the handles of a renamed folder's descendants are updated, too. Returns false on failure
+	public static boolean Rename( Context context, int handle, String newName )
+	{
+		Entry entry;
+		String rawUri;
+		Uri uri;
+		synchronized( FileBrowserHandles.class )
+		{
+			entry = GetEntry( handle );
+			if( entry == null )
+				return false;
+
+			// The entry may be modified by other threads while it is being renamed
+			rawUri = entry.rawUri;
+			uri = entry.GetUri();
+		}
+
+		String newRawUri;
+		if( FileBrowserPathUtils.IsSAFPath( rawUri ) )
+		{
+			FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_RENAME_SAF_ENTRY );
+			FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+			try
+			{
+				FileBrowserPrefetcher.Invalidate();
+
+				// Some providers preserve the URI after renaming, verify the new name in that case
+				FileBrowserSAFEntry safEntry = new FileBrowserSAFEntry( context, uri );
+				newRawUri = safEntry.renameTo( newName );
+				if( newRawUri.equals( rawUri ) && !newName.equals( safEntry.getName() ) )
+					newRawUri = null;
+			}
+			finally
+			{
+				FileBrowserIOScheduler.End();
+				FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_RENAME_SAF_ENTRY );
+			}
+		}
+		else
+		{
+			File file = new File( rawUri );
+			File newFile = new File( file.getParentFile(), newName );
+			newRawUri = file.renameTo( newFile ) ? newFile.getPath() : null;
+		}
+
+		if( newRawUri == null || newRawUri.length() == 0 )
+			return false;
+
+		synchronized( FileBrowserHandles.class )
+		{
+			if( GetEntry( handle ) == entry && rawUri.equals( entry.rawUri ) )
+			{
+				// Another handle may still refer to an entry that used to be at newRawUri (e.g. a deleted file with the same name).
+				// That handle stays valid until it is released but its cached attributes no longer describe the entry at that path
+				Remap( entry, handle, newRawUri );
+				entry.name = newName;
+
+				// Renaming a folder changes its children's paths (and their uris if the provider's document ids are paths)
+				if( !newRawUri.equals( rawUri ) )
+					RemapChildren( rawUri, newRawUri );
+			}
+		}
+
+		return true;
+	}
+
+	// Deletes the entry, the handle must still be released afterwards
+	public static boolean Delete( Context context, int handle )
+	{
+		String rawUri;
+		Uri uri;
+		boolean hasAttributes, isDirectory;
+		synchronized( FileBrowserHandles.class )
+		{
+			Entry entry = GetEntry( handle );
+			if( entry == null )
+				return false;
+
+			rawUri = entry.rawUri;
+			uri = entry.GetUri();
+			hasAttributes = entry.hasAttributes;
+			isDirectory = entry.isDirectory;
+		}
+
+		if( FileBrowserPathUtils.IsSAFPath( rawUri ) )
+		{
+			FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_DELETE_SAF_ENTRY );
+			FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_BULK, rawUri );
+			try
+			{
+				FileBrowserPrefetcher.Invalidate();
+				return new FileBrowserSAFEntry( context, uri ).delete();
+			}
+			finally
+			{
+				FileBrowserIOScheduler.End();
+				FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_DELETE_SAF_ENTRY );
+			}
+		}
+
+		return FileBrowser.DeleteEntry( context, rawUri, hasAttributes ? isDirectory : new File( rawUri ).isDirectory() );
+	}
+
+	// Returns null if the handle is invalid or stale
+	private static Entry GetEntry( int handle )
+	{
+		int slot = ( handle & SLOT_MASK ) - 1;
+		if( handle <= 0 || slot < 0 || slot >= entries.size() || generations[slot] != ( handle >>> SLOT_BITS ) )
+			return null;
+
+		return entries.get( slot );
+	}
+
+	private static void FreeSlot( int slot )
+	{
+		if( entries.get( slot ) == null )
+			return;
+
+		entries.set( slot, null );
+		generations[slot] = ( generations[slot] + 1 ) & GENERATION_MASK;
+
+		if( freeSlotCount == freeSlots.length )
+		{
+			int[] newFreeSlots = new int[freeSlots.length * 2];
+			System.arraycopy( freeSlots, 0, newFreeSlots, 0, freeSlotCount );
+			freeSlots = newFreeSlots;
+		}
+
+		freeSlots[freeSlotCount++] = slot;
+	}
+
+	// Points the entry to newRawUri
+	private static void Remap( Entry entry, int handle, String newRawUri )
+	{
+		// Another handle may still refer to an entry that used to be at newRawUri (e.g. a deleted file with the same name).
+		// That handle stays valid until it is released but its cached attributes no longer describe the entry at that path
+		Integer existingHandle = handles.get( newRawUri );
+		if( existingHandle != null && existingHandle != handle )
+			GetEntry( existingHandle ).hasAttributes = false;
+
+		RemoveMapping( entry.rawUri, handle );
+		handles.put( newRawUri, handle );
+		entry.rawUri = newRawUri;
+		entry.uri = null;
+	}
+
+	// Points the handles of the renamed folder's descendants to their new locations. Raw paths and SAF document ids that are paths
+	// (e.g. ExternalStorageProvider's "primary:Folder/File") start with their folder's path, other document ids don't change
+	private static void RemapChildren( String folderRawUri, String newFolderRawUri )
+	{
+		String prefix, newPrefix, treeUriPrefix = null;
+		if( FileBrowserPathUtils.IsSAFPath( folderRawUri ) )
+		{
+			treeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( folderRawUri );
+			String newTreeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( newFolderRawUri );
+			if( treeUriPrefix == null || !treeUriPrefix.equals( newTreeUriPrefix ) )
+				return;
+
+			prefix = GetDocumentId( folderRawUri );
+			newPrefix = GetDocumentId( newFolderRawUri );
+			if( prefix == null || newPrefix == null )
+				return;
+		}
+		else
+		{
+			prefix = folderRawUri;
+			newPrefix = newFolderRawUri;
+		}
+
+		prefix += "/";
+		newPrefix += "/";
+
+		for( int slot = 0; slot < entries.size(); slot++ )
+		{
+			Entry child = entries.get( slot );
+			if( child == null )
+				continue;
+
+			String newChildRawUri = null;
+			if( treeUriPrefix == null )
+			{
+				if( child.rawUri.startsWith( prefix ) )
+					newChildRawUri = newPrefix + child.rawUri.substring( prefix.length() );
+			}
+			else if( treeUriPrefix.equals( FileBrowserPathUtils.GetTreeUriPrefix( child.rawUri ) ) )
+			{
+				String documentId = GetDocumentId( child.rawUri );
+				if( documentId != null && documentId.startsWith( prefix ) )
+					newChildRawUri = FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, newPrefix + documentId.substring( prefix.length() ) );
+			}
+
+			if( newChildRawUri != null )
+				Remap( child, ( generations[slot] << SLOT_BITS ) | ( slot + 1 ), newChildRawUri );
+		}
+	}
+
+	// Returns null if the uri isn't a document uri
+	private static String GetDocumentId( String rawUri )
+	{
+		try
+		{
+			return DocumentsContract.getDocumentId( Uri.parse( rawUri ) );
+		}
+		catch( Exception e )
+		{
+			return null;
+		}
+	}
+
+	// Renaming may have moved rawUri's mapping to another handle, that mapping must be preserved
+	private static void RemoveMapping( String rawUri, int handle )
+	{
+		Integer mappedHandle = handles.get( rawUri );
+		if( mappedHandle != null && mappedHandle == handle )
+			handles.remove( rawUri );
+	}
+}
\ No newline at end of file
@@ -0,0 +1,219 @@
+package com.yasirkula.unity;
+
+import java.util.HashMap;
+
+// Schedules the plugin's I/O per provider (authority) so that interactive work (e.g. listing the folder that the user navigated
+// to) isn't slowed down by background work. Each authority runs a limited number of operations simultaneously, background
+// operations can use only some of these slots and they pause at chunk boundaries (see Checkpoint) while interactive work is
+// running or waiting. The raw filesystem is treated as a single authority. This class must not depend on the Android framework
+public class FileBrowserIOScheduler
+{
+	public static final int PRIORITY_INTERACTIVE = 0;
+	public static final int PRIORITY_PREFETCH = 1;
+	public static final int PRIORITY_BULK = 2;
+	private static final int PRIORITY_COUNT = 3;
+
+	private static final int MAX_OPERATIONS_PER_AUTHORITY = 4;
+	private static final int MAX_BACKGROUND_OPERATIONS_PER_AUTHORITY = 2;
+
+	private static class AuthorityState
+	{
+		public final int[] activeCounts = new int[PRIORITY_COUNT];
+		public final int[] waitingCounts = new int[PRIORITY_COUNT];
+
+		public boolean CanRun( int priority )
+		{
+			int activeCount = activeCounts[0] + activeCounts[1] + activeCounts[2];
+			if( activeCount >= MAX_OPERATIONS_PER_AUTHORITY )
+				return false;
+			if( priority == PRIORITY_INTERACTIVE )
+				return true;
+
+			if( activeCounts[PRIORITY_INTERACTIVE] > 0 || activeCount - activeCounts[PRIORITY_INTERACTIVE] >= MAX_BACKGROUND_OPERATIONS_PER_AUTHORITY )
+				return false;
+
+			// Higher priority background operations are started first
+			for( int i = 0; i < priority; i++ )
+			{
+				if( waitingCounts[i] > 0 )
+					return false;
+			}
+
+			return true;
+		}
+
+		public boolean HasInteractiveWork()
+		{
+			return activeCounts[PRIORITY_INTERACTIVE] > 0 || waitingCounts[PRIORITY_INTERACTIVE] > 0;
+		}
+	}
+
+	private static class ThreadState
+	{
+		public int depth;
+		public int priority;
+		public String authority;
+		public String otherAuthority;
+	}
+
+	private static final ThreadLocal<ThreadState> threadStates = new ThreadLocal<ThreadState>()
+	{
+		@Override
+		protected ThreadState initialValue()
+		{
+			return new ThreadState();
+		}
+	};
+
+	private static final Object lockObject = new Object();
+	private static final HashMap<String, AuthorityState> authorities = new HashMap<String, AuthorityState>();
+
+	// Number of interactive operations that are running or waiting, lets Checkpoint return without locking in the common case
+	private static volatile int interactiveOperationCount;
+
+	// Notified on the calling thread when an outermost Begin call starts an operation
+	public interface Listener
+	{
+		void OnBegin();
+	}
+
+	private static volatile Listener listener;
+
+	// Set by FileBrowserProviderCalls to reset its per-thread status. listener can be null
+	static void SetListener( Listener value )
+	{
+		listener = value;
+	}
+
+	// Must be paired with an End call in a finally block. Nested calls are executed immediately with the outermost call's priority
+	public static void Begin( int priority, String rawUri )
+	{
+		Begin( priority, rawUri, null );
+	}
+
+	// For operations that access two providers (e.g. copying a file from one provider to another). otherRawUri can be null
+	public static void Begin( int priority, String rawUri, String otherRawUri )
+	{
+		ThreadState state = threadStates.get();
+		if( state.depth++ > 0 )
+			return;
+
+		Listener listener = FileBrowserIOScheduler.listener;
+		if( listener != null )
+			listener.OnBegin();
+
+		state.priority = priority;
+		state.authority = FileBrowserPathUtils.GetAuthority( rawUri );
+		state.otherAuthority = otherRawUri != null ? FileBrowserPathUtils.GetAuthority( otherRawUri ) : null;
+		if( state.authority.equals( state.otherAuthority ) )
+			state.otherAuthority = null;
+
+		FileBrowserMetrics.OnAuthority( state.authority );
+
+		synchronized( lockObject )
+		{
+			if( priority == PRIORITY_INTERACTIVE )
+				interactiveOperationCount++;
+
+			Acquire( state );
+		}
+	}
+
+	public static void End()
+	{
+		ThreadState state = threadStates.get();
+		if( state.depth <= 0 || --state.depth > 0 )
+			return;
+
+		synchronized( lockObject )
+		{
+			Release( state );
+
+			if( state.priority == PRIORITY_INTERACTIVE )
+				interactiveOperationCount--;
+		}
+	}
+
+	// Should be called by background operations between chunks of work. Blocks while interactive work for the same authorities
+	// is running or waiting so that the interactive work gets the provider's full attention
+	public static void Checkpoint()
+	{
+		if( interactiveOperationCount == 0 )
+			return;
+
+		ThreadState state = threadStates.get();
+		if( state.depth <= 0 || state.priority == PRIORITY_INTERACTIVE )
+			return;
+
+		synchronized( lockObject )
+		{
+			if( !GetAuthorityState( state.authority ).HasInteractiveWork() && ( state.otherAuthority == null || !GetAuthorityState( state.otherAuthority ).HasInteractiveWork() ) )
+				return;
+
+			Release( state );
+			Acquire( state );
+		}
+	}
+
+	// Must be called while holding lockObject
+	private static void Acquire( ThreadState state )
+	{
+		AuthorityState authorityState = GetAuthorityState( state.authority );
+		AuthorityState otherAuthorityState = state.otherAuthority != null ? GetAuthorityState( state.otherAuthority ) : null;
+
+		boolean isWaiting = false;
+		while( !authorityState.CanRun( state.priority ) || ( otherAuthorityState != null && !otherAuthorityState.CanRun( state.priority ) ) )
+		{
+			if( !isWaiting )
+			{
+				isWaiting = true;
+				authorityState.waitingCounts[state.priority]++;
+				if( otherAuthorityState != null )
+					otherAuthorityState.waitingCounts[state.priority]++;
+			}
+
+			try
+			{
+				lockObject.wait();
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		if( isWaiting )
+		{
+			authorityState.waitingCounts[state.priority]--;
+			if( otherAuthorityState != null )
+				otherAuthorityState.waitingCounts[state.priority]--;
+		}
+
+		authorityState.activeCounts[state.priority]++;
+		if( otherAuthorityState != null )
+			otherAuthorityState.activeCounts[state.priority]++;
+	}
+
+	// Must be called while holding lockObject
+	private static void Release( ThreadState state )
+	{
+		GetAuthorityState( state.authority ).activeCounts[state.priority]--;
+		if( state.otherAuthority != null )
+			GetAuthorityState( state.otherAuthority ).activeCounts[state.priority]--;
+
+		lockObject.notifyAll();
+	}
+
+	private static AuthorityState GetAuthorityState( String authority )
+	{
+		AuthorityState result = authorities.get( authority );
+		if( result == null )
+		{
+			result = new AuthorityState();
+			authorities.put( authority, result );
+		}
+
+		return result;
+	}
+}
\ No newline at end of file
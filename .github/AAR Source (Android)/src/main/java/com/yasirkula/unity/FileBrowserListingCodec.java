@@ -0,0 +1,108 @@
+package com.yasirkula.unity;
+
+import java.util.ArrayList;
+
+// Encodes/decodes the folder listings that are sent to Unity. A listing is formatted as "count<>" followed by
+// "Xname<>rawUri<>" for each entry where X is d for folders and f for files. Listings with attributes also append
+// "size<>lastModified<>" to each entry. This class must not depend on the Android framework
+public class FileBrowserListingCodec
+{
+	public static final String SEPARATOR = "<>";
+
+	public static void AppendHeader( StringBuilder stringBuilder, int count )
+	{
+		stringBuilder.append( count ).append( SEPARATOR );
+	}
+
+	public static void AppendEntry( StringBuilder stringBuilder, boolean isDirectory, String name, String rawUri )
+	{
+		stringBuilder.append( isDirectory ? 'd' : 'f' ).append( name ).append( SEPARATOR ).append( rawUri ).append( SEPARATOR );
+	}
+
+	public static void AppendEntry( StringBuilder stringBuilder, boolean isDirectory, String name, String rawUri, long size, long lastModified )
+	{
+		AppendEntry( stringBuilder, isDirectory, name, rawUri );
+		stringBuilder.append( size ).append( SEPARATOR ).append( lastModified ).append( SEPARATOR );
+	}
+
+	public static String Encode( ArrayList<FileBrowserEntryInfo> entries, boolean includeAttributes )
+	{
+		StringBuilder result = new StringBuilder( entries.size() * 128 + 8 );
+		AppendHeader( result, entries.size() );
+		for( int i = 0; i < entries.size(); i++ )
+		{
+			FileBrowserEntryInfo entry = entries.get( i );
+			if( includeAttributes )
+				AppendEntry( result, entry.isDirectory, entry.name, entry.rawUri, entry.size, entry.lastModified );
+			else
+				AppendEntry( result, entry.isDirectory, entry.name, entry.rawUri );
+		}
+
+		return result.toString();
+	}
+
+	// Returns null if the listing is malformed
+	public static ArrayList<FileBrowserEntryInfo> Decode( String listing, boolean hasAttributes )
+	{
+		int separatorIndex = listing.indexOf( SEPARATOR );
+		if( separatorIndex <= 0 )
+			return null;
+
+		int count;
+		try
+		{
+			count = Integer.parseInt( listing.substring( 0, separatorIndex ) );
+		}
+		catch( NumberFormatException e )
+		{
+			return null;
+		}
+
+		ArrayList<FileBrowserEntryInfo> result = new ArrayList<FileBrowserEntryInfo>( count );
+		int index = separatorIndex + SEPARATOR.length();
+		for( int i = 0; i < count; i++ )
+		{
+			if( index >= listing.length() )
+				return null;
+
+			boolean isDirectory = listing.charAt( index ) == 'd';
+
+			int nameEndIndex = listing.indexOf( SEPARATOR, index + 1 );
+			if( nameEndIndex < 0 )
+				return null;
+
+			int rawUriEndIndex = listing.indexOf( SEPARATOR, nameEndIndex + SEPARATOR.length() );
+			if( rawUriEndIndex < 0 )
+				return null;
+
+			String name = listing.substring( index + 1, nameEndIndex );
+			String rawUri = listing.substring( nameEndIndex + SEPARATOR.length(), rawUriEndIndex );
+			index = rawUriEndIndex + SEPARATOR.length();
+
+			long size = 0L, lastModified = 0L;
+			if( hasAttributes )
+			{
+				int sizeEndIndex = listing.indexOf( SEPARATOR, index );
+				int lastModifiedEndIndex = sizeEndIndex >= 0 ? listing.indexOf( SEPARATOR, sizeEndIndex + SEPARATOR.length() ) : -1;
+				if( lastModifiedEndIndex < 0 )
+					return null;
+
+				try
+				{
+					size = Long.parseLong( listing.substring( index, sizeEndIndex ) );
+					lastModified = Long.parseLong( listing.substring( sizeEndIndex + SEPARATOR.length(), lastModifiedEndIndex ) );
+				}
+				catch( NumberFormatException e )
+				{
+					return null;
+				}
+
+				index = lastModifiedEndIndex + SEPARATOR.length();
+			}
+
+			result.add( new FileBrowserEntryInfo( name, rawUri, isDirectory, size, lastModified ) );
+		}
+
+		return result;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.yasirkula.unity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Compares a folder's current listing with its previous listing. Changes are formatted as "XYname<>rawUri<>" where X is
+// c for created, d for deleted and m for modified entries, and Y is d for folders and f for files. Changes with attributes
+// also append "size<>lastModified<>" to each entry. This class must not depend on the Android framework
+public class FileBrowserListingDiff
+{
+	public static final char CHANGE_CREATED = 'c';
+	public static final char CHANGE_DELETED = 'd';
+	public static final char CHANGE_MODIFIED = 'm';
+
+	// Entries are keyed by their raw uris since some SAF providers (e.g. Google Drive) allow multiple entries with the same name
+	// in a folder. Renaming an entry whose uri doesn't change is reported as a modification
+	public static HashMap<String, FileBrowserEntryInfo> ToMap( ArrayList<FileBrowserEntryInfo> entries )
+	{
+		HashMap<String, FileBrowserEntryInfo> result = new HashMap<String, FileBrowserEntryInfo>( entries.size() * 4 / 3 + 1 );
+		for( int i = 0; i < entries.size(); i++ )
+			result.put( entries.get( i ).rawUri, entries.get( i ) );
+
+		return result;
+	}
+
+	public static boolean IsModified( FileBrowserEntryInfo previousEntry, FileBrowserEntryInfo entry )
+	{
+		return previousEntry.isDirectory != entry.isDirectory || previousEntry.size != entry.size || previousEntry.lastModified != entry.lastModified
+				|| !previousEntry.name.equals( entry.name );
+	}
+
+	public static void AppendChange( StringBuilder stringBuilder, char changeType, FileBrowserEntryInfo entry, boolean includeAttributes )
+	{
+		stringBuilder.append( changeType );
+		if( includeAttributes )
+			FileBrowserListingCodec.AppendEntry( stringBuilder, entry.isDirectory, entry.name, entry.rawUri, entry.size, entry.lastModified );
+		else
+			FileBrowserListingCodec.AppendEntry( stringBuilder, entry.isDirectory, entry.name, entry.rawUri );
+	}
+
+	// Appends the changes to stringBuilder and returns the number of changes. currentContents must be ToMap( currentEntries )
+	public static int AppendChanges( StringBuilder stringBuilder, HashMap<String, FileBrowserEntryInfo> previousContents, ArrayList<FileBrowserEntryInfo> currentEntries,
+			HashMap<String, FileBrowserEntryInfo> currentContents, boolean includeAttributes )
+	{
+		int changeCount = 0, createdCount = 0;
+		for( int i = 0; i < currentEntries.size(); i++ )
+		{
+			FileBrowserEntryInfo entry = currentEntries.get( i );
+			FileBrowserEntryInfo previousEntry = previousContents.get( entry.rawUri );
+			if( previousEntry == null )
+			{
+				AppendChange( stringBuilder, CHANGE_CREATED, entry, includeAttributes );
+				createdCount++;
+			}
+			else if( IsModified( previousEntry, entry ) )
+				AppendChange( stringBuilder, CHANGE_MODIFIED, entry, includeAttributes );
+			else
+				continue;
+
+			changeCount++;
+		}
+
+		// Entries that existed previously and still exist = current entry count - created entry count
+		if( previousContents.size() > currentContents.size() - createdCount )
+		{
+			for( FileBrowserEntryInfo previousEntry : previousContents.values() )
+			{
+				if( !currentContents.containsKey( previousEntry.rawUri ) )
+				{
+					AppendChange( stringBuilder, CHANGE_DELETED, previousEntry, includeAttributes );
+					changeCount++;
+				}
+			}
+		}
+
+		return changeCount;
+	}
+}
\ No newline at end of file
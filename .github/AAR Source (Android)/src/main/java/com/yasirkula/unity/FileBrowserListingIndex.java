@@ -0,0 +1,352 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Persists the listings of recently visited folders and the SAF quick links in an SQLite database so that they can be shown
+// immediately after the app is restarted. Cached listings are revalidated against the provider in the background
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserListingIndex extends SQLiteOpenHelper
+{
+	private static final String DATABASE_NAME = "SimpleFileBrowserIndex.db";
+	private static final int DATABASE_VERSION = 1;
+
+	private static final String TABLE_LISTINGS = "listings";
+	private static final String COLUMN_KEY = "key";
+	private static final String COLUMN_LISTING = "listing";
+	private static final String COLUMN_SIZE = "size";
+	private static final String COLUMN_LAST_ACCESS = "last_access";
+
+	private static final String QUICK_LINKS_KEY = "#QuickLinks";
+
+	// When the total length of the cached listings exceeds this limit, least recently accessed listings are evicted until
+	// the total length drops below 3/4 of the limit
+	private static final long MAX_INDEX_SIZE = 8L * 1024L * 1024L;
+
+	private static FileBrowserListingIndex instance;
+
+	// Callers that opened a folder while its revalidation was pending are notified by that revalidation, too
+	private static final HashMap<String, ArrayList<PendingReceiver>> pendingRevalidations = new HashMap<String, ArrayList<PendingReceiver>>();
+
+	private static class PendingReceiver
+	{
+		public final String cachedListing; // The listing that was returned to the caller
+		public final FileBrowserListingReceiver listingReceiver;
+
+		public PendingReceiver( String cachedListing, FileBrowserListingReceiver listingReceiver )
+		{
+			this.cachedListing = cachedListing;
+			this.listingReceiver = listingReceiver;
+		}
+	}
+
+	private long indexSize = -1L;
+
+	private FileBrowserListingIndex( Context context )
+	{
+		super( context, DATABASE_NAME, null, DATABASE_VERSION );
+	}
+
+	private static synchronized FileBrowserListingIndex GetInstance( Context context )
+	{
+		if( instance == null )
+			instance = new FileBrowserListingIndex( context.getApplicationContext() );
+
+		return instance;
+	}
+
+	@Override
+	public void onCreate( SQLiteDatabase db )
+	{
+		db.execSQL( "CREATE TABLE " + TABLE_LISTINGS + " (" + COLUMN_KEY + " TEXT PRIMARY KEY, " + COLUMN_LISTING + " TEXT NOT NULL, "
+				+ COLUMN_SIZE + " INTEGER NOT NULL, " + COLUMN_LAST_ACCESS + " INTEGER NOT NULL)" );
+		db.execSQL( "CREATE INDEX " + TABLE_LISTINGS + "_" + COLUMN_LAST_ACCESS + " ON " + TABLE_LISTINGS + " (" + COLUMN_LAST_ACCESS + ")" );
+	}
+
+	@Override
+	public void onUpgrade( SQLiteDatabase db, int oldVersion, int newVersion )
+	{
+		// The index is only a cache, it can simply be rebuilt
+		db.execSQL( "DROP TABLE IF EXISTS " + TABLE_LISTINGS );
+		onCreate( db );
+	}
+
+	// Returns the cached listing of the Storage Access Framework (SAF) folder/raw folder (formatted as in OpenRawFolder) or an empty
+	// string if it isn't cached. The folder is then listed in the background and if its contents differ from the cached listing,
+	// the up-to-date listing is reported via listingReceiver (an empty listing means that the folder can no longer be listed)
+	public static String Open( Context context, final String rawUri, final FileBrowserListingReceiver listingReceiver )
+	{
+		final FileBrowserListingIndex index = GetInstance( context );
+		String cachedListing = index.Read( rawUri );
+		if( cachedListing == null )
+			cachedListing = "";
+
+		synchronized( pendingRevalidations )
+		{
+			ArrayList<PendingReceiver> receivers = pendingRevalidations.get( rawUri );
+			boolean isRevalidationPending = receivers != null;
+			if( !isRevalidationPending )
+			{
+				receivers = new ArrayList<PendingReceiver>( 1 );
+				pendingRevalidations.put( rawUri, receivers );
+			}
+
+			receivers.add( new PendingReceiver( cachedListing, listingReceiver ) );
+			if( isRevalidationPending )
+				return cachedListing;
+		}
+
+		final boolean isCached = cachedListing.length() > 0;
+		final Context applicationContext = context.getApplicationContext();
+		FileBrowserWorkers.GetExecutor().execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				String listing = "";
+				boolean isRevalidated = false;
+				ArrayList<PendingReceiver> receivers;
+				FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_PREFETCH, rawUri );
+				try
+				{
+					// Reading a listing counts as an access, too. Otherwise, a frequently visited folder whose listing rarely
+					// changes would be evicted first
+					if( isCached )
+						index.Touch( rawUri );
+
+					ArrayList<FileBrowserEntryInfo> entries = FileBrowser.ListEntriesWithAttributes( applicationContext, rawUri );
+					if( entries != null )
+					{
+						listing = FileBrowserListingCodec.Encode( entries, true );
+						index.Write( rawUri, listing );
+						isRevalidated = true;
+					}
+					else if( IsFolderMissing( applicationContext, rawUri ) )
+					{
+						index.Delete( rawUri );
+						isRevalidated = true;
+					}
+
+					// Otherwise, the listing failed (e.g. the provider timed out), keep serving the cached listing
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+				finally
+				{
+					FileBrowserIOScheduler.End();
+
+					synchronized( pendingRevalidations )
+					{
+						receivers = pendingRevalidations.remove( rawUri );
+					}
+				}
+
+				if( isRevalidated && receivers != null )
+				{
+					for( int i = 0; i < receivers.size(); i++ )
+					{
+						PendingReceiver receiver = receivers.get( i );
+						if( !listing.equals( receiver.cachedListing ) )
+							receiver.listingReceiver.OnListingUpdated( rawUri, listing );
+					}
+				}
+			}
+		} );
+
+		return cachedListing;
+	}
+
+	private static boolean IsFolderMissing( Context context, String rawUri )
+	{
+		if( FileBrowserPathUtils.IsSAFPath( rawUri ) )
+			return new FileBrowserSAFEntry( context, Uri.parse( rawUri ) ).isMissing();
+
+		return !new File( rawUri ).isDirectory();
+	}
+
+	// Returns the result of the last FetchSAFQuickLinks call or an empty string if it isn't cached
+	public static String GetQuickLinks( Context context )
+	{
+		String quickLinks = GetInstance( context ).Read( QUICK_LINKS_KEY );
+		return quickLinks != null ? quickLinks : "";
+	}
+
+	public static void StoreQuickLinks( Context context, final String quickLinks )
+	{
+		final FileBrowserListingIndex index = GetInstance( context );
+		FileBrowserWorkers.GetExecutor().execute( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				index.Write( QUICK_LINKS_KEY, quickLinks );
+			}
+		} );
+	}
+
+	public static void Clear( Context context )
+	{
+		FileBrowserListingIndex index = GetInstance( context );
+		synchronized( index )
+		{
+			try
+			{
+				index.getWritableDatabase().delete( TABLE_LISTINGS, null, null );
+				index.indexSize = 0L;
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+	}
+
+	private String Read( String key )
+	{
+		Cursor c = null;
+		try
+		{
+			c = getReadableDatabase().query( TABLE_LISTINGS, new String[] { COLUMN_LISTING }, COLUMN_KEY + "=?", new String[] { key }, null, null, null );
+			if( c.moveToFirst() )
+				return c.getString( 0 );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+		finally
+		{
+			if( c != null )
+				c.close();
+		}
+
+		return null;
+	}
+
+	private synchronized void Write( String key, String listing )
+	{
+		try
+		{
+			SQLiteDatabase db = getWritableDatabase();
+			if( indexSize < 0L )
+				indexSize = QuerySize( db );
+
+			Cursor c = db.query( TABLE_LISTINGS, new String[] { COLUMN_SIZE }, COLUMN_KEY + "=?", new String[] { key }, null, null, null );
+			try
+			{
+				if( c.moveToFirst() )
+					indexSize -= c.getLong( 0 );
+			}
+			finally
+			{
+				c.close();
+			}
+
+			ContentValues values = new ContentValues( 4 );
+			values.put( COLUMN_KEY, key );
+			values.put( COLUMN_LISTING, listing );
+			values.put( COLUMN_SIZE, listing.length() );
+			values.put( COLUMN_LAST_ACCESS, System.currentTimeMillis() );
+			db.insertWithOnConflict( TABLE_LISTINGS, null, values, SQLiteDatabase.CONFLICT_REPLACE );
+			indexSize += listing.length();
+
+			if( indexSize > MAX_INDEX_SIZE )
+				Trim( db );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			indexSize = -1L;
+		}
+	}
+
+	private synchronized void Touch( String key )
+	{
+		try
+		{
+			ContentValues values = new ContentValues( 1 );
+			values.put( COLUMN_LAST_ACCESS, System.currentTimeMillis() );
+			getWritableDatabase().update( TABLE_LISTINGS, values, COLUMN_KEY + "=?", new String[] { key } );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+	}
+
+	private synchronized void Delete( String key )
+	{
+		try
+		{
+			if( getWritableDatabase().delete( TABLE_LISTINGS, COLUMN_KEY + "=?", new String[] { key } ) > 0 )
+				indexSize = -1L;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+		}
+	}
+
+	private void Trim( SQLiteDatabase db )
+	{
+		long targetSize = MAX_INDEX_SIZE * 3L / 4L;
+		ArrayList<String> evictedKeys = new ArrayList<String>();
+
+		Cursor c = db.query( TABLE_LISTINGS, new String[] { COLUMN_KEY, COLUMN_SIZE }, null, null, null, null, COLUMN_LAST_ACCESS + " ASC" );
+		try
+		{
+			while( indexSize > targetSize && c.moveToNext() )
+			{
+				String key = c.getString( 0 );
+				if( QUICK_LINKS_KEY.equals( key ) )
+					continue;
+
+				evictedKeys.add( key );
+				indexSize -= c.getLong( 1 );
+			}
+		}
+		finally
+		{
+			c.close();
+		}
+
+		db.beginTransaction();
+		try
+		{
+			for( int i = 0; i < evictedKeys.size(); i++ )
+				db.delete( TABLE_LISTINGS, COLUMN_KEY + "=?", new String[] { evictedKeys.get( i ) } );
+
+			db.setTransactionSuccessful();
+		}
+		finally
+		{
+			db.endTransaction();
+		}
+	}
+
+	private static long QuerySize( SQLiteDatabase db )
+	{
+		Cursor c = db.rawQuery( "SELECT SUM(" + COLUMN_SIZE + ") FROM " + TABLE_LISTINGS, null );
+		try
+		{
+			return c.moveToFirst() ? c.getLong( 0 ) : 0L;
+		}
+		finally
+		{
+			c.close();
+		}
+	}
+}
\ No newline at end of file
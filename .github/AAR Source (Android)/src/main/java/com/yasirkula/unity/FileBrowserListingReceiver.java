@@ -0,0 +1,6 @@
+package com.yasirkula.unity;
+
+public interface FileBrowserListingReceiver
+{
+	void OnListingUpdated( String rawUri, String listing );
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Lists Storage Access Framework (SAF) folders asynchronously on behalf of views (e.g. a file browser window, its path bar's
+// autocomplete). A view's new request supersedes its outstanding request: if no other view is waiting for the superseded
+// folder, its query is canceled via CancellationSignal. Simultaneous requests for the same folder share a single query
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserListingRequests
+{
+	private static class Request implements Runnable
+	{
+		public final Context context;
+		public final String rawUri;
+		public final CancellationSignal cancellationSignal = new CancellationSignal();
+
+		// Views that are waiting for this request and their receivers
+		public final LinkedHashMap<String, FileBrowserListingReceiver> receivers = new LinkedHashMap<String, FileBrowserListingReceiver>( 4 );
+
+		public Request( Context context, String rawUri )
+		{
+			this.context = context;
+			this.rawUri = rawUri;
+		}
+
+		@Override
+		public void run()
+		{
+			String listing = null;
+			if( !cancellationSignal.isCanceled() )
+			{
+				FileBrowserMetrics.Begin( FileBrowserMetrics.OPERATION_OPEN_SAF_FOLDER );
+				FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_INTERACTIVE, rawUri );
+				try
+				{
+					listing = FileBrowser.ListSAFFolder( context, rawUri, new StringBuilder( 4096 ), cancellationSignal );
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+				finally
+				{
+					FileBrowserIOScheduler.End();
+					FileBrowserMetrics.End( FileBrowserMetrics.OPERATION_OPEN_SAF_FOLDER );
+				}
+			}
+
+			ArrayList<FileBrowserListingReceiver> finishedReceivers;
+			synchronized( requests )
+			{
+				if( requests.get( rawUri ) == this )
+					requests.remove( rawUri );
+
+				for( String viewKey : receivers.keySet() )
+				{
+					if( viewRequests.get( viewKey ) == this )
+						viewRequests.remove( viewKey );
+				}
+
+				if( cancellationSignal.isCanceled() )
+					return;
+
+				finishedReceivers = new ArrayList<FileBrowserListingReceiver>( receivers.values() );
+			}
+
+			if( listing == null )
+				listing = "";
+
+			for( int i = 0; i < finishedReceivers.size(); i++ )
+				finishedReceivers.get( i ).OnListingUpdated( rawUri, listing );
+		}
+	}
+
+	// Both maps are guarded by synchronized( requests )
+	private static final HashMap<String, Request> requests = new HashMap<String, Request>();
+	private static final HashMap<String, Request> viewRequests = new HashMap<String, Request>();
+
+	// The listing (formatted as in OpenSAFFolder) is reported via listingReceiver on a background thread, unless the request is superseded
+	public static void Open( Context context, String rawUri, String viewKey, FileBrowserListingReceiver listingReceiver )
+	{
+		Request request;
+		synchronized( requests )
+		{
+			Request previousRequest = viewRequests.get( viewKey );
+			if( previousRequest != null )
+			{
+				if( previousRequest.rawUri.equals( rawUri ) )
+				{
+					// The view is already waiting for this folder
+					previousRequest.receivers.put( viewKey, listingReceiver );
+					return;
+				}
+
+				Detach( previousRequest, viewKey );
+			}
+
+			request = requests.get( rawUri );
+			boolean isNewRequest = request == null;
+			if( isNewRequest )
+			{
+				request = new Request( context.getApplicationContext(), rawUri );
+				requests.put( rawUri, request );
+			}
+
+			request.receivers.put( viewKey, listingReceiver );
+			viewRequests.put( viewKey, request );
+
+			if( !isNewRequest )
+				return;
+		}
+
+		FileBrowserWorkers.GetExecutor().execute( request );
+	}
+
+	// Cancels the view's outstanding request, its receiver won't be invoked
+	public static void Cancel( String viewKey )
+	{
+		synchronized( requests )
+		{
+			Request request = viewRequests.remove( viewKey );
+			if( request != null )
+				Detach( request, viewKey );
+		}
+	}
+
+	public static void CancelAll()
+	{
+		synchronized( requests )
+		{
+			for( Map.Entry<String, Request> entry : requests.entrySet() )
+				entry.getValue().cancellationSignal.cancel();
+
+			requests.clear();
+			viewRequests.clear();
+		}
+	}
+
+	// Must be called while holding synchronized( requests )
+	private static void Detach( Request request, String viewKey )
+	{
+		request.receivers.remove( viewKey );
+		if( request.receivers.size() == 0 )
+		{
+			request.cancellationSignal.cancel();
+			if( requests.get( request.rawUri ) == request )
+				requests.remove( request.rawUri );
+		}
+	}
+}
\ No newline at end of file
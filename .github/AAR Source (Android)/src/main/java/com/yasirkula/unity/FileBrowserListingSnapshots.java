@@ -0,0 +1,106 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Retains the most recent listings of folders so that a folder can be re-listed by returning only the entries that have
+// changed since the caller's listing (identified by its generation token) instead of the whole folder
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserListingSnapshots
+{
+	// Least recently used snapshots are discarded when the total number of retained entries exceeds this limit
+	private static final int MAX_RETAINED_ENTRIES = 100000;
+
+	private static class Snapshot
+	{
+		public final long generation;
+		public final HashMap<String, FileBrowserEntryInfo> contents;
+
+		public Snapshot( long generation, HashMap<String, FileBrowserEntryInfo> contents )
+		{
+			this.generation = generation;
+			this.contents = contents;
+		}
+	}
+
+	private static final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>( 16, 0.75f, true );
+	private static int retainedEntryCount;
+	private static long lastGeneration;
+
+	// Lists the Storage Access Framework (SAF) folder/raw folder. If generation is the token that was returned by the previous
+	// call for this folder, only the changes are returned; otherwise (e.g. generation is 0 or the snapshot was discarded),
+	// the whole folder is returned
+	//
+	// Result is formatted as "generation<>0<>" followed by the folder's listing (formatted as in OpenRawFolder) or as
+	// "generation<>1<>count<>" followed by the changes with attributes (see FileBrowserListingDiff). If the folder can't
+	// be listed, "0<>0<>0<>" is returned
+	public static String List( Context context, String rawUri, long generation )
+	{
+		ArrayList<FileBrowserEntryInfo> entries = FileBrowser.ListEntriesWithAttributes( context, rawUri );
+		if( entries == null )
+		{
+			Forget( rawUri );
+			return "0<>0<>0<>";
+		}
+
+		HashMap<String, FileBrowserEntryInfo> contents = FileBrowserListingDiff.ToMap( entries );
+
+		Snapshot previousSnapshot;
+		long newGeneration;
+		synchronized( snapshots )
+		{
+			previousSnapshot = snapshots.get( rawUri );
+			newGeneration = ++lastGeneration;
+			Put( rawUri, new Snapshot( newGeneration, contents ) );
+		}
+
+		if( generation == 0L || previousSnapshot == null || previousSnapshot.generation != generation )
+			return newGeneration + "<>0<>" + FileBrowserListingCodec.Encode( entries, true );
+
+		StringBuilder changes = new StringBuilder( 256 );
+		int changeCount = FileBrowserListingDiff.AppendChanges( changes, previousSnapshot.contents, entries, contents, true );
+		return newGeneration + "<>1<>" + changeCount + "<>" + changes.toString();
+	}
+
+	public static void Forget( String rawUri )
+	{
+		synchronized( snapshots )
+		{
+			Snapshot snapshot = snapshots.remove( rawUri );
+			if( snapshot != null )
+				retainedEntryCount -= snapshot.contents.size();
+		}
+	}
+
+	public static void Clear()
+	{
+		synchronized( snapshots )
+		{
+			snapshots.clear();
+			retainedEntryCount = 0;
+		}
+	}
+
+	private static void Put( String rawUri, Snapshot snapshot )
+	{
+		Snapshot previousSnapshot = snapshots.put( rawUri, snapshot );
+		if( previousSnapshot != null )
+			retainedEntryCount -= previousSnapshot.contents.size();
+
+		retainedEntryCount += snapshot.contents.size();
+
+		// Discard the least recently used snapshots (but always keep the latest one, even if it alone exceeds the limit)
+		Iterator<Snapshot> iterator = snapshots.values().iterator();
+		while( retainedEntryCount > MAX_RETAINED_ENTRIES && snapshots.size() > 1 )
+		{
+			retainedEntryCount -= iterator.next().contents.size();
+			iterator.remove();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,177 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Environment;
+import android.os.OperationCanceledException;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+
+// Lists the folders of the standard media collections (DCIM, Pictures, Movies, Music etc.) that were picked via Storage Access
+// Framework (SAF) from the external storage provider using MediaStore queries, which are indexed and much faster than the provider.
+// Disabled by default and used only while the app holds the media permissions. MediaStore contains only the media files that
+// the app can read, so other files and empty subfolders are omitted from these listings
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserMediaStoreListing
+{
+	private static final String EXTERNAL_STORAGE_AUTHORITY = "com.android.externalstorage.documents";
+	private static final String PRIMARY_VOLUME = "primary";
+
+	private static final String[] VISUAL_MEDIA_DIRECTORIES = new String[] { Environment.DIRECTORY_DCIM, Environment.DIRECTORY_PICTURES, Environment.DIRECTORY_MOVIES };
+	private static final String[] AUDIO_DIRECTORIES = new String[] { Environment.DIRECTORY_MUSIC, Environment.DIRECTORY_PODCASTS, Environment.DIRECTORY_RINGTONES,
+			Environment.DIRECTORY_ALARMS, Environment.DIRECTORY_NOTIFICATIONS, Environment.DIRECTORY_AUDIOBOOKS };
+
+	private static volatile boolean enabled;
+
+	public static void SetEnabled( boolean enabled )
+	{
+		FileBrowserMediaStoreListing.enabled = enabled;
+	}
+
+	// Returns the folder's listing (formatted as in OpenSAFFolder) or null if the folder can't be listed via MediaStore (in which
+	// case it should be listed via SAF) or cancellationSignal (which can be null) is canceled
+	public static String List( Context context, String rawUri, CancellationSignal cancellationSignal )
+	{
+		if( !enabled || !EXTERNAL_STORAGE_AUTHORITY.equals( FileBrowserPathUtils.GetAuthority( rawUri ) ) )
+			return null;
+
+		String treeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( rawUri );
+		if( treeUriPrefix == null )
+			return null;
+
+		// Document ids of the external storage provider are formatted as "volume:relative/path"
+		String documentId;
+		try
+		{
+			documentId = DocumentsContract.getDocumentId( Uri.parse( rawUri ) );
+		}
+		catch( Exception e )
+		{
+			return null;
+		}
+
+		int volumeSeparator = documentId.indexOf( ':' );
+		if( volumeSeparator <= 0 )
+			return null;
+
+		String volume = documentId.substring( 0, volumeSeparator );
+		String relativePath = documentId.substring( volumeSeparator + 1 );
+		while( relativePath.endsWith( "/" ) )
+			relativePath = relativePath.substring( 0, relativePath.length() - 1 );
+
+		if( relativePath.length() == 0 || !HasPermission( context, relativePath ) )
+			return null;
+
+		String mediaStoreVolume = PRIMARY_VOLUME.equals( volume ) ? MediaStore.VOLUME_EXTERNAL_PRIMARY : volume.toLowerCase( Locale.ENGLISH );
+		String folderPrefix = relativePath + "/";
+
+		ArrayList<FileBrowserEntryInfo> entries = new ArrayList<FileBrowserEntryInfo>();
+		HashSet<String> subfolders = new HashSet<String>();
+		Cursor c = null;
+		try
+		{
+			// The folder's descendants are queried so that its subfolders can be deduced from their relative paths. Folders themselves
+			// may have rows without a MIME type, they are skipped
+			c = FileBrowserProviderCalls.Query( context.getContentResolver(), MediaStore.Files.getContentUri( mediaStoreVolume ), new String[] { MediaStore.MediaColumns.DISPLAY_NAME,
+					MediaStore.MediaColumns.RELATIVE_PATH, MediaStore.MediaColumns.SIZE, MediaStore.MediaColumns.DATE_MODIFIED },
+					MediaStore.MediaColumns.RELATIVE_PATH + " LIKE ? ESCAPE '\\' AND " + MediaStore.MediaColumns.MIME_TYPE + " IS NOT NULL", new String[] { EscapeLikePattern( folderPrefix ) + "%" }, cancellationSignal );
+			if( c == null )
+				return null;
+
+			while( c.moveToNext() )
+			{
+				String name = c.getString( 0 );
+				String entryRelativePath = c.getString( 1 );
+				if( name == null || entryRelativePath == null || entryRelativePath.length() < folderPrefix.length() )
+					continue;
+
+				if( entryRelativePath.length() == folderPrefix.length() )
+				{
+					String entryDocumentId = volume + ":" + folderPrefix + name;
+					entries.add( new FileBrowserEntryInfo( name, FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, entryDocumentId ), false, c.getLong( 2 ), c.getLong( 3 ) * 1000L ) );
+				}
+				else
+				{
+					// LIKE is case insensitive, so use the entry's own casing of the folder's path
+					int subfolderEnd = entryRelativePath.indexOf( '/', folderPrefix.length() );
+					String subfolderPath = subfolderEnd >= 0 ? entryRelativePath.substring( 0, subfolderEnd ) : entryRelativePath;
+					if( subfolders.add( subfolderPath ) )
+					{
+						String subfolderName = subfolderPath.substring( folderPrefix.length() );
+						entries.add( new FileBrowserEntryInfo( subfolderName, FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, volume + ":" + folderPrefix + subfolderName ), true, 0L, 0L ) );
+					}
+				}
+
+				if( cancellationSignal != null && cancellationSignal.isCanceled() )
+					return null;
+			}
+		}
+		catch( OperationCanceledException e )
+		{
+			return null;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return null;
+		}
+		finally
+		{
+			if( c != null )
+				c.close();
+		}
+
+		return FileBrowserListingCodec.Encode( entries, false );
+	}
+
+	private static boolean HasPermission( Context context, String relativePath )
+	{
+		int topLevelFolderEnd = relativePath.indexOf( '/' );
+		String topLevelFolder = topLevelFolderEnd >= 0 ? relativePath.substring( 0, topLevelFolderEnd ) : relativePath;
+
+		boolean isVisualMediaDirectory = Contains( VISUAL_MEDIA_DIRECTORIES, topLevelFolder );
+		if( !isVisualMediaDirectory && !Contains( AUDIO_DIRECTORIES, topLevelFolder ) )
+			return false;
+
+		if( Build.VERSION.SDK_INT < 33 )
+			return IsGranted( context, Manifest.permission.READ_EXTERNAL_STORAGE );
+
+		// Partial access to photos and videos (Android 14+) doesn't grant READ_MEDIA_IMAGES, such folders are listed via SAF
+		if( isVisualMediaDirectory )
+			return IsGranted( context, Manifest.permission.READ_MEDIA_IMAGES ) && IsGranted( context, Manifest.permission.READ_MEDIA_VIDEO );
+
+		return IsGranted( context, Manifest.permission.READ_MEDIA_AUDIO );
+	}
+
+	private static boolean IsGranted( Context context, String permission )
+	{
+		return context.checkSelfPermission( permission ) == PackageManager.PERMISSION_GRANTED;
+	}
+
+	private static boolean Contains( String[] directories, String directory )
+	{
+		for( int i = 0; i < directories.length; i++ )
+		{
+			if( directories[i].equalsIgnoreCase( directory ) )
+				return true;
+		}
+
+		return false;
+	}
+
+	private static String EscapeLikePattern( String value )
+	{
+		return value.replace( "\\", "\\\\" ).replace( "%", "\\%" ).replace( "_", "\\_" );
+	}
+}
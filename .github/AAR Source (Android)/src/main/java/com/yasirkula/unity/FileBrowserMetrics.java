@@ -0,0 +1,267 @@
+package com.yasirkula.unity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Collects the number of ContentResolver queries, latency histograms and the number of copied bytes of the public
+// FileBrowser functions. Recording doesn't allocate any memory and can be toggled at runtime (disabled by default).
+// Each call is also passed to the listener (FileBrowserTrace) while one is set. This class must not depend on the Android framework
+public class FileBrowserMetrics
+{
+	public static final int OPERATION_FETCH_SAF_QUICK_LINKS = 0;
+	public static final int OPERATION_COPY_FILE = 1;
+	public static final int OPERATION_COPY_DIRECTORY = 2;
+	public static final int OPERATION_SYNC_DIRECTORY = 3;
+	public static final int OPERATION_EXPORT_ARCHIVE = 4;
+	public static final int OPERATION_IMPORT_ARCHIVE = 5;
+	public static final int OPERATION_OPEN_SAF_FOLDER = 6;
+	public static final int OPERATION_OPEN_RAW_FOLDER = 7;
+	public static final int OPERATION_CREATE_SAF_ENTRY = 8;
+	public static final int OPERATION_WRITE_TO_SAF_ENTRY = 9;
+	public static final int OPERATION_READ_FROM_SAF_ENTRY = 10;
+	public static final int OPERATION_COPY_SAF_ENTRY = 11;
+	public static final int OPERATION_SAF_ENTRY_EXISTS = 12;
+	public static final int OPERATION_SAF_ENTRY_DIRECTORY = 13;
+	public static final int OPERATION_SAF_ENTRY_NAME = 14;
+	public static final int OPERATION_SAF_ENTRY_SIZE = 15;
+	public static final int OPERATION_SAF_ENTRY_LAST_MODIFIED = 16;
+	public static final int OPERATION_RENAME_SAF_ENTRY = 17;
+	public static final int OPERATION_DELETE_SAF_ENTRY = 18;
+	public static final int OPERATION_EXECUTE_BATCH_OPERATIONS = 19;
+	public static final int OPERATION_CALCULATE_CHECKSUM = 20;
+	public static final int OPERATION_GET_PARENT_DIRECTORY = 21;
+	public static final int OPERATION_IS_SAF_ENTRY_CHILD_OF_ANOTHER = 22;
+	public static final int OPERATION_OPEN_FOLDER_DELTA = 23;
+	public static final int OPERATION_OPEN_CACHED_FOLDER = 24;
+	public static final int OPERATION_OPEN_FOLDER_HANDLE = 25;
+	public static final int OPERATION_BACKGROUND = 26; // Work that runs on background threads outside of any public function
+	public static final int OPERATION_TRANSFER_ENTRY = 27;
+	public static final int OPERATION_CALCULATE_DIRECTORY_SIZE = 28;
+
+	private static final String[] OPERATION_NAMES = new String[] { "FetchSAFQuickLinks", "CopyFile", "CopyDirectory", "SyncDirectory", "ExportArchive",
+			"ImportArchive", "OpenSAFFolder", "OpenRawFolder", "CreateSAFEntry", "WriteToSAFEntry", "ReadFromSAFEntry", "CopySAFEntry", "SAFEntryExists",
+			"SAFEntryDirectory", "SAFEntryName", "SAFEntrySize", "SAFEntryLastModified", "RenameSAFEntry", "DeleteSAFEntry", "ExecuteBatchOperations",
+			"CalculateChecksum", "GetParentDirectory", "IsSAFEntryChildOfAnother", "OpenFolderDelta", "OpenCachedFolder", "OpenFolderHandle", "Background",
+			"TransferEntry", "CalculateDirectorySize" };
+	private static final int OPERATION_COUNT = OPERATION_NAMES.length;
+
+	// Latencies are recorded in microseconds into logarithmic buckets: each power of two is split into 2 buckets
+	private static final int HISTOGRAM_BUCKET_COUNT = 2 * 48;
+
+	// Receives the outermost calls of the public functions
+	public interface Listener
+	{
+		// The returned value is passed to OnEnd (e.g. whether a trace section was started)
+		boolean OnBegin( String operation );
+
+		void OnEnd( String operation, String authority, long duration, int queryCount, long bytesCopied, boolean beginResult );
+	}
+
+	private static class ThreadState
+	{
+		public int operation = -1;
+		public long startTime;
+		public int queryCount;
+		public long bytesCopied;
+		public String authority;
+		public Listener listener; // The listener that was notified in Begin, if any
+		public boolean listenerBeginResult;
+	}
+
+	private static final ThreadLocal<ThreadState> threadStates = new ThreadLocal<ThreadState>()
+	{
+		@Override
+		protected ThreadState initialValue()
+		{
+			return new ThreadState();
+		}
+	};
+
+	private static volatile boolean enabled;
+	private static volatile Listener listener;
+
+	private static final AtomicLongArray callCounts = new AtomicLongArray( OPERATION_COUNT );
+	private static final AtomicLongArray queryCounts = new AtomicLongArray( OPERATION_COUNT );
+	private static final AtomicLongArray totalDurations = new AtomicLongArray( OPERATION_COUNT );
+	private static final AtomicLongArray histograms = new AtomicLongArray( OPERATION_COUNT * HISTOGRAM_BUCKET_COUNT );
+	private static final AtomicLong bytesCopied = new AtomicLong();
+	private static final AtomicLong transferDuration = new AtomicLong();
+
+	public static void SetEnabled( boolean value )
+	{
+		enabled = value;
+	}
+
+	public static boolean IsEnabled()
+	{
+		return enabled;
+	}
+
+	// The calls are counted while either metrics are enabled or a listener is set. listener can be null
+	static void SetListener( Listener value )
+	{
+		listener = value;
+	}
+
+	// Must be paired with an End call in a finally block. Nested calls (public functions calling other
+	// public functions) are attributed to the outermost function
+	public static void Begin( int operation )
+	{
+		Listener listener = FileBrowserMetrics.listener;
+		if( !enabled && listener == null )
+			return;
+
+		ThreadState state = threadStates.get();
+		if( state.operation >= 0 )
+			return;
+
+		state.operation = operation;
+		state.queryCount = 0;
+		state.bytesCopied = 0L;
+		state.authority = null;
+		state.listener = listener;
+		state.listenerBeginResult = listener != null && listener.OnBegin( OPERATION_NAMES[operation] );
+		state.startTime = System.nanoTime();
+	}
+
+	public static void End( int operation )
+	{
+		ThreadState state = threadStates.get();
+		if( state.operation != operation )
+			return;
+
+		state.operation = -1;
+		long duration = ( System.nanoTime() - state.startTime ) / 1000L;
+
+		if( state.listener != null )
+		{
+			Listener listener = state.listener;
+			state.listener = null;
+			listener.OnEnd( OPERATION_NAMES[operation], state.authority, duration, state.queryCount, state.bytesCopied, state.listenerBeginResult );
+		}
+
+		if( !enabled )
+			return;
+
+		callCounts.incrementAndGet( operation );
+		totalDurations.addAndGet( operation, duration );
+		histograms.incrementAndGet( operation * HISTOGRAM_BUCKET_COUNT + GetHistogramBucket( duration ) );
+
+		if( state.queryCount > 0 )
+			queryCounts.addAndGet( operation, state.queryCount );
+
+		if( state.bytesCopied > 0L )
+		{
+			bytesCopied.addAndGet( state.bytesCopied );
+			transferDuration.addAndGet( duration );
+		}
+	}
+
+	public static void OnQuery()
+	{
+		if( !enabled && listener == null )
+			return;
+
+		ThreadState state = threadStates.get();
+		if( state.operation >= 0 )
+			state.queryCount++;
+		else if( enabled )
+			queryCounts.incrementAndGet( OPERATION_BACKGROUND );
+	}
+
+	public static void OnBytesCopied( long byteCount )
+	{
+		if( !enabled && listener == null )
+			return;
+
+		ThreadState state = threadStates.get();
+		if( state.operation >= 0 )
+			state.bytesCopied += byteCount;
+		else if( enabled )
+			bytesCopied.addAndGet( byteCount );
+	}
+
+	// Called by FileBrowserIOScheduler with the authority of the outermost function's (first) uri
+	static void OnAuthority( String authority )
+	{
+		ThreadState state = threadStates.get();
+		if( state.operation >= 0 && state.authority == null )
+			state.authority = authority;
+	}
+
+	public static void Reset()
+	{
+		for( int i = 0; i < OPERATION_COUNT; i++ )
+		{
+			callCounts.set( i, 0L );
+			queryCounts.set( i, 0L );
+			totalDurations.set( i, 0L );
+		}
+
+		for( int i = 0; i < histograms.length(); i++ )
+			histograms.set( i, 0L );
+
+		bytesCopied.set( 0L );
+		transferDuration.set( 0L );
+	}
+
+	// Result is formatted as "bytesCopied<>throughput<>count<>" (throughput is in bytes per second) followed by
+	// "name<>callCount<>queryCount<>totalDuration<>p50<>p95<>p99<>" for each function that was called at least once
+	// (durations are in microseconds)
+	public static String GetSnapshot()
+	{
+		StringBuilder operations = new StringBuilder( 1024 );
+		int operationCount = 0;
+		for( int i = 0; i < OPERATION_COUNT; i++ )
+		{
+			long callCount = callCounts.get( i );
+			long queryCount = queryCounts.get( i );
+			if( callCount == 0L && queryCount == 0L )
+				continue;
+
+			operations.append( OPERATION_NAMES[i] ).append( "<>" ).append( callCount ).append( "<>" ).append( queryCount ).append( "<>" ).append( totalDurations.get( i ) ).append( "<>" )
+					.append( GetPercentile( i, callCount, 0.50 ) ).append( "<>" ).append( GetPercentile( i, callCount, 0.95 ) ).append( "<>" ).append( GetPercentile( i, callCount, 0.99 ) ).append( "<>" );
+			operationCount++;
+		}
+
+		long totalBytesCopied = bytesCopied.get();
+		long totalTransferDuration = transferDuration.get();
+		long throughput = totalTransferDuration > 0L ? (long) ( totalBytesCopied * 1000000.0 / totalTransferDuration ) : 0L;
+
+		return totalBytesCopied + "<>" + throughput + "<>" + operationCount + "<>" + operations.toString();
+	}
+
+	private static int GetHistogramBucket( long duration )
+	{
+		if( duration < 2L )
+			return (int) Math.max( 0L, duration );
+
+		int highestBit = 63 - Long.numberOfLeadingZeros( duration );
+		int bucket = highestBit * 2 + (int) ( ( duration >> ( highestBit - 1 ) ) & 1L );
+		return Math.min( bucket, HISTOGRAM_BUCKET_COUNT - 1 );
+	}
+
+	// Returns the upper bound of the bucket that contains the percentile
+	private static long GetPercentile( int operation, long callCount, double percentile )
+	{
+		if( callCount <= 0L )
+			return 0L;
+
+		long targetCount = Math.max( 1L, (long) Math.ceil( callCount * percentile ) );
+		long count = 0L;
+		for( int bucket = 0; bucket < HISTOGRAM_BUCKET_COUNT; bucket++ )
+		{
+			count += histograms.get( operation * HISTOGRAM_BUCKET_COUNT + bucket );
+			if( count >= targetCount )
+			{
+				if( bucket < 2 )
+					return bucket + 1;
+
+				int highestBit = bucket / 2;
+				return ( 2L + ( bucket & 1 ) + 1L ) << ( highestBit - 1 );
+			}
+		}
+
+		return 0L;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.yasirkula.unity;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Path and URI string manipulation functions. This class must not depend on the Android framework
+// so that it can be compiled, tested and profiled on a desktop JVM
+public class FileBrowserPathUtils
+{
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	// Returns true if the path is a Storage Access Framework (SAF) uri rather than a raw filesystem path
+	public static boolean IsSAFPath( String rawUri )
+	{
+		return rawUri.contains( "://" );
+	}
+
+	// Returns the authority of a SAF uri (i.e. the provider) or an empty string for raw filesystem paths
+	public static String GetAuthority( String rawUri )
+	{
+		int authorityStartIndex = rawUri.indexOf( "://" );
+		if( authorityStartIndex < 0 )
+			return "";
+
+		authorityStartIndex += 3;
+		int authorityEndIndex = rawUri.indexOf( '/', authorityStartIndex );
+		return authorityEndIndex >= 0 ? rawUri.substring( authorityStartIndex, authorityEndIndex ) : rawUri.substring( authorityStartIndex );
+	}
+
+	// Same as android.net.Uri.encode( value ): characters other than letters, digits and "_-!.~'()*" are percent-encoded as UTF-8
+	public static String EncodeUriComponent( String value )
+	{
+		StringBuilder result = null;
+		int length = value.length();
+		for( int i = 0; i < length; i++ )
+		{
+			char ch = value.charAt( i );
+			if( IsAllowedUriCharacter( ch ) )
+			{
+				if( result != null )
+					result.append( ch );
+
+				continue;
+			}
+
+			if( result == null )
+			{
+				result = new StringBuilder( length + 16 );
+				result.append( value, 0, i );
+			}
+
+			// Encode the whole run of disallowed characters at once so that surrogate pairs are encoded correctly
+			int runEnd = i + 1;
+			while( runEnd < length && !IsAllowedUriCharacter( value.charAt( runEnd ) ) )
+				runEnd++;
+
+			byte[] bytes;
+			try
+			{
+				bytes = value.substring( i, runEnd ).getBytes( "UTF-8" );
+			}
+			catch( UnsupportedEncodingException e )
+			{
+				throw new AssertionError( e );
+			}
+
+			for( byte b : bytes )
+				result.append( '%' ).append( HEX_DIGITS[( b >> 4 ) & 0xF] ).append( HEX_DIGITS[b & 0xF] );
+
+			i = runEnd - 1;
+		}
+
+		return result != null ? result.toString() : value;
+	}
+
+	// Returns the "content://authority/tree/treeDocumentId" part of a document uri (which is formatted as
+	// "content://authority/tree/treeDocumentId/document/documentId"), or null if the uri isn't a document uri
+	public static String GetTreeUriPrefix( String documentRawUri )
+	{
+		int documentIndex = documentRawUri.indexOf( "/document/" );
+		if( documentIndex < 0 || documentRawUri.indexOf( "/tree/" ) < 0 )
+			return null;
+
+		return documentRawUri.substring( 0, documentIndex );
+	}
+
+	// Same as DocumentsContract.buildDocumentUriUsingTree( treeUri, documentId ).toString() without parsing the tree uri
+	public static String BuildDocumentUri( String treeUriPrefix, String documentId )
+	{
+		return treeUriPrefix + "/document/" + EncodeUriComponent( documentId );
+	}
+
+	// Calculates the parent uri from the path returned by DocumentsContract.findDocumentPath by replacing the
+	// rawUri's last path segment with the parent's document id. Returns null if it can't be calculated
+	public static String GetParentUriFromDocumentPath( String rawUri, List<String> pathSegments )
+	{
+		if( pathSegments == null || pathSegments.size() == 0 )
+			return null;
+
+		String rawUriParentPath;
+		if( pathSegments.size() > 1 )
+			rawUriParentPath = EncodeUriComponent( pathSegments.get( pathSegments.size() - 2 ) );
+		else
+		{
+			String fullPath = pathSegments.get( 0 );
+			int separatorIndex = Math.max( fullPath.lastIndexOf( '/' ), fullPath.lastIndexOf( ':' ) + 1 );
+			rawUriParentPath = separatorIndex > 0 ? EncodeUriComponent( fullPath.substring( 0, separatorIndex ) ) : null;
+		}
+
+		if( rawUriParentPath == null || rawUriParentPath.length() == 0 )
+			return null;
+
+		int rawUriLastPathSegmentIndex = rawUri.lastIndexOf( '/' ) + 1;
+		if( rawUriLastPathSegmentIndex <= 0 )
+			return null;
+
+		String parentRawUri = rawUri.substring( 0, rawUriLastPathSegmentIndex ) + rawUriParentPath;
+		return !parentRawUri.equals( rawUri ) ? parentRawUri : null;
+	}
+
+	// Returns the potential parent uris of a Storage Access Framework (SAF) uri in the order they should be tried.
+	// The first candidate omits the last path segment, the rest also trim the tree component of that candidate
+	public static ArrayList<String> GetParentUriCandidates( String rawUri )
+	{
+		ArrayList<String> result = new ArrayList<String>( 4 );
+
+		// Omit the last path segment (this method won't work for Downloads folder and probably some other ContentProviders, too)
+		int pathSeparatorIndex = rawUri.lastIndexOf( "%3A" ); // Encoded colon index
+		if( pathSeparatorIndex > 0 )
+			pathSeparatorIndex += 3; // Encoded colon shouldn't be omitted by substring
+
+		pathSeparatorIndex = Math.max( pathSeparatorIndex, Math.max( rawUri.lastIndexOf( '/' ), rawUri.lastIndexOf( "%2F" ) ) );
+		if( pathSeparatorIndex < 0 || pathSeparatorIndex >= rawUri.length() )
+			return result;
+
+		rawUri = rawUri.substring( 0, pathSeparatorIndex );
+		result.add( rawUri );
+
+		// When we form the SAF URI using a subfolder as root (i.e. /storage/SomeFolder/), that subfolder is reflected in SAF URI
+		// in the form /tree/primary%3ASomeFolder/ and restricts our access to SomeFolder's parent directories. However, if we
+		// actually have permission to access the /storage/ directory (parent folder), we can remove the subfolder from the URI
+		// (i.e. change it to /tree/primary%3A/) and voila!
+		int treeStartIndex = rawUri.indexOf( "/tree/" );
+		if( treeStartIndex >= 0 )
+		{
+			treeStartIndex += 6;
+			int treeEndIndex = rawUri.indexOf( '/', treeStartIndex );
+			if( treeEndIndex > treeStartIndex + 4 ) // +4: "/tree/SOMETHING/" here, SOMETHING should be able to contain at least 1 %2F/%3A and 1 other character
+			{
+				String treeComponent = rawUri.substring( treeStartIndex, treeEndIndex );
+				String preTreeComponent = rawUri.substring( 0, treeStartIndex );
+				String postTreeComponent = rawUri.substring( treeEndIndex );
+
+				String _treeComponent = treeComponent;
+				int treeSeparatorIndex = _treeComponent.length() - 3; // -3: if treeComponent ends with %2F, skip it
+				while( ( treeSeparatorIndex = _treeComponent.lastIndexOf( "%2F", treeSeparatorIndex - 1 ) ) > 0 )
+				{
+					_treeComponent = _treeComponent.substring( 0, treeSeparatorIndex );
+					result.add( preTreeComponent + _treeComponent + postTreeComponent );
+				}
+
+				_treeComponent = treeComponent;
+				treeSeparatorIndex = _treeComponent.length() - 3; // -3: if treeComponent ends with %3A, skip it
+				while( ( treeSeparatorIndex = _treeComponent.lastIndexOf( "%3A", treeSeparatorIndex - 1 ) ) > 0 )
+				{
+					_treeComponent = _treeComponent.substring( 0, treeSeparatorIndex + 3 ); // Encoded colon (%3A) shouldn't be omitted by substring
+					result.add( preTreeComponent + _treeComponent + postTreeComponent );
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static boolean IsAllowedUriCharacter( char ch )
+	{
+		return ( ch >= 'a' && ch <= 'z' ) || ( ch >= 'A' && ch <= 'Z' ) || ( ch >= '0' && ch <= '9' ) || "_-!.~'()*".indexOf( ch ) >= 0;
+	}
+}
\ No newline at end of file
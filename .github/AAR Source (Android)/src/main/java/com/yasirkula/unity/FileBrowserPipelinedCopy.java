@@ -0,0 +1,248 @@
+package com.yasirkula.unity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Copies a stream by reading it on a worker thread while the calling thread writes the previously read chunks. When the input
+// and/or the output belong to a provider, each read/write may be a Binder round trip and alternating them on a single thread
+// would leave each side idle while the other one is busy. The chunk size adapts to the observed read throughput: slow inputs
+// use small chunks so that the output is kept busy, fast inputs use large chunks so that fewer round trips are made.
+// This class must not depend on the Android framework
+public class FileBrowserPipelinedCopy
+{
+	private static final int MIN_CHUNK_SIZE = FileBrowserBufferPool.BUFFER_SIZE;
+	private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+	private static final int CHUNK_COUNT = 4;
+
+	// Chunks are sized so that reading each chunk takes about this many milliseconds
+	private static final long TARGET_CHUNK_DURATION = 50L;
+
+	// Up to CHUNK_COUNT large buffers are kept for the next copy
+	private static final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+	private static final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+	private static class Chunk
+	{
+		public final byte[] buffer;
+		public int length;
+
+		public Chunk( byte[] buffer )
+		{
+			this.buffer = buffer;
+		}
+	}
+
+	private static final Chunk END_OF_STREAM = new Chunk( null );
+
+	private static class Reader implements Runnable
+	{
+		private final InputStream input;
+		public final Chunk[] chunks = new Chunk[CHUNK_COUNT];
+		public final ArrayBlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<Chunk>( CHUNK_COUNT + 1 );
+		public final ArrayBlockingQueue<Chunk> filledChunks = new ArrayBlockingQueue<Chunk>( CHUNK_COUNT + 1 ); // END_OF_STREAM always fits
+		public volatile boolean isAborted;
+		public Throwable exception; // Published via END_OF_STREAM
+
+		private int chunkSize = MIN_CHUNK_SIZE;
+
+		public Reader( InputStream input )
+		{
+			this.input = input;
+
+			for( int i = 0; i < CHUNK_COUNT; i++ )
+			{
+				chunks[i] = new Chunk( AcquireBuffer() );
+				freeChunks.add( chunks[i] );
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while( !isAborted )
+				{
+					Chunk chunk = freeChunks.take();
+					if( isAborted )
+						break;
+
+					long startTime = System.nanoTime();
+					chunk.length = Fill( input, chunk.buffer, chunkSize );
+					if( chunk.length <= 0 )
+						break;
+
+					AdaptChunkSize( chunk.length, ( System.nanoTime() - startTime ) / 1000000L );
+					filledChunks.put( chunk );
+				}
+			}
+			catch( InterruptedException e )
+			{
+				exception = new InterruptedIOException();
+			}
+			catch( Throwable e )
+			{
+				// Streams of providers may also throw unchecked exceptions (e.g. when the provider dies). The failure must reach the
+				// writer either way, otherwise END_OF_STREAM would make the truncated copy look complete
+				exception = e;
+			}
+			finally
+			{
+				filledChunks.offer( END_OF_STREAM );
+			}
+		}
+
+		private void AdaptChunkSize( int length, long elapsedMillis )
+		{
+			long idealChunkSize = length * TARGET_CHUNK_DURATION / Math.max( 1L, elapsedMillis );
+			chunkSize = (int) Math.max( MIN_CHUNK_SIZE, Math.min( MAX_CHUNK_SIZE, ( chunkSize + idealChunkSize ) / 2L ) );
+		}
+	}
+
+	// Copies the stream and returns the number of copied bytes. Streams aren't closed. Small streams (that fit in a single chunk)
+	// are copied on the calling thread
+	public static long Copy( InputStream input, OutputStream output ) throws IOException
+	{
+		byte[] firstChunk = FileBrowserBufferPool.Acquire();
+		int firstChunkLength;
+		try
+		{
+			FileBrowserIOScheduler.Checkpoint();
+
+			firstChunkLength = Fill( input, firstChunk, firstChunk.length );
+			if( firstChunkLength <= 0 )
+				return 0L;
+
+			output.write( firstChunk, 0, firstChunkLength );
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( firstChunk );
+		}
+
+		if( firstChunkLength < MIN_CHUNK_SIZE )
+			return firstChunkLength;
+
+		Reader reader = new Reader( input );
+		FileBrowserWorkers.GetExecutor().execute( reader );
+
+		long totalLength = firstChunkLength;
+		boolean isReaderFinished = false;
+		try
+		{
+			while( true )
+			{
+				Chunk chunk = reader.filledChunks.take();
+				if( chunk == END_OF_STREAM )
+				{
+					isReaderFinished = true;
+					if( reader.exception != null )
+						RethrowReaderException( reader.exception );
+
+					break;
+				}
+
+				FileBrowserIOScheduler.Checkpoint();
+
+				output.write( chunk.buffer, 0, chunk.length );
+				totalLength += chunk.length;
+				reader.freeChunks.put( chunk );
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		finally
+		{
+			// If the copy has failed (e.g. while writing), the reader is stopped and waited for since the caller will close the input
+			// as soon as this function returns, possibly while the reader is still reading from it
+			if( !isReaderFinished )
+				StopReader( reader );
+
+			// The reader has finished, its buffers can be reused
+			for( int i = 0; i < reader.chunks.length; i++ )
+				ReleaseBuffer( reader.chunks[i].buffer );
+		}
+
+		return totalLength;
+	}
+
+	private static void RethrowReaderException( Throwable exception ) throws IOException
+	{
+		if( exception instanceof IOException )
+			throw (IOException) exception;
+
+		if( exception instanceof RuntimeException )
+			throw (RuntimeException) exception;
+
+		if( exception instanceof Error )
+			throw (Error) exception;
+
+		throw new IOException( exception );
+	}
+
+	private static void StopReader( Reader reader )
+	{
+		// Wake the reader up if it is waiting for a free chunk, otherwise it stops after its current read
+		reader.isAborted = true;
+		reader.freeChunks.offer( END_OF_STREAM );
+
+		boolean isInterrupted = false;
+		while( true )
+		{
+			try
+			{
+				if( reader.filledChunks.take() == END_OF_STREAM )
+					break;
+			}
+			catch( InterruptedException e )
+			{
+				isInterrupted = true;
+			}
+		}
+
+		if( isInterrupted )
+			Thread.currentThread().interrupt();
+	}
+
+	// Reads until length bytes are read or the end of the stream is reached
+	private static int Fill( InputStream input, byte[] buffer, int length ) throws IOException
+	{
+		int totalLength = 0;
+		while( totalLength < length )
+		{
+			int len = input.read( buffer, totalLength, length - totalLength );
+			if( len < 0 )
+				break;
+
+			totalLength += len;
+		}
+
+		return totalLength;
+	}
+
+	private static byte[] AcquireBuffer()
+	{
+		byte[] buffer = buffers.poll();
+		if( buffer == null )
+			return new byte[MAX_CHUNK_SIZE];
+
+		pooledBufferCount.decrementAndGet();
+		return buffer;
+	}
+
+	private static void ReleaseBuffer( byte[] buffer )
+	{
+		if( pooledBufferCount.incrementAndGet() <= CHUNK_COUNT )
+			buffers.offer( buffer );
+		else
+			pooledBufferCount.decrementAndGet();
+	}
+}
@@ -0,0 +1,156 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Speculatively lists the first few subfolders of an opened Storage Access Framework (SAF) folder on low priority background
+// threads so that descending into one of them doesn't have to wait for the provider. Disabled by default
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserPrefetcher
+{
+	private static final int WORKER_COUNT = 2;
+
+	// Prefetched listings are cached up to this many bytes and are served only if they are younger than MAX_LISTING_AGE milliseconds
+	private static final int MEMORY_BUDGET = 4 * 1024 * 1024;
+	private static final long MAX_LISTING_AGE = 30000L;
+
+	// Failed and empty listings aren't cached since a degraded provider may return an empty result for a non-empty folder
+	private static final String EMPTY_LISTING = "0" + FileBrowserListingCodec.SEPARATOR;
+
+	private static class Listing
+	{
+		public final String listing;
+		public final long timestamp;
+
+		public Listing( String listing, long timestamp )
+		{
+			this.listing = listing;
+			this.timestamp = timestamp;
+		}
+	}
+
+	private static final LruCache<String, Listing> cache = new LruCache<String, Listing>( MEMORY_BUDGET )
+	{
+		@Override
+		protected int sizeOf( String key, Listing value )
+		{
+			return ( key.length() + value.listing.length() ) * 2;
+		}
+	};
+
+	private static volatile int maxPrefetchedFolders;
+	private static volatile int generation; // Incremented when the cache is invalidated so that in-flight prefetches are discarded
+
+	private static ThreadPoolExecutor executor;
+
+	// maxFolders is the number of subfolders that are prefetched after a folder is opened (0 disables prefetching)
+	public static void SetEnabled( int maxFolders )
+	{
+		maxPrefetchedFolders = Math.max( 0, maxFolders );
+		if( maxFolders <= 0 )
+			Invalidate();
+	}
+
+	// Returns the prefetched listing of the folder (formatted as in OpenSAFFolder) or null if it isn't prefetched
+	public static String Get( String rawUri )
+	{
+		if( maxPrefetchedFolders <= 0 )
+			return null;
+
+		// Each prefetched listing is served only once, the folder is listed from scratch the next time it is opened
+		Listing listing = cache.remove( rawUri );
+		if( listing == null || SystemClock.uptimeMillis() - listing.timestamp > MAX_LISTING_AGE )
+			return null;
+
+		return listing.listing;
+	}
+
+	// Should be called with the listing of the folder that was just opened
+	public static void Prefetch( Context context, String listing )
+	{
+		int maxFolders = maxPrefetchedFolders;
+		if( maxFolders <= 0 )
+			return;
+
+		ArrayList<FileBrowserEntryInfo> entries = FileBrowserListingCodec.Decode( listing, false );
+		if( entries == null )
+			return;
+
+		synchronized( FileBrowserPrefetcher.class )
+		{
+			if( executor == null )
+			{
+				executor = new ThreadPoolExecutor( WORKER_COUNT, WORKER_COUNT, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), FileBrowserWorkers.CreateThreadFactory( "FileBrowserPrefetcher" ) );
+				executor.allowCoreThreadTimeOut( true );
+			}
+
+			// The user has navigated away from the folders whose subfolders are still waiting to be prefetched
+			executor.getQueue().clear();
+		}
+
+		final Context applicationContext = context.getApplicationContext();
+		for( int i = 0, prefetchedFolders = 0; i < entries.size() && prefetchedFolders < maxFolders; i++ )
+		{
+			final FileBrowserEntryInfo entry = entries.get( i );
+			if( !entry.isDirectory )
+				continue;
+
+			prefetchedFolders++;
+			if( cache.get( entry.rawUri ) != null )
+				continue;
+
+			executor.execute( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					Process.setThreadPriority( Process.THREAD_PRIORITY_BACKGROUND );
+
+					int startGeneration = generation;
+					FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_PREFETCH, entry.rawUri );
+					try
+					{
+						FileBrowserProviderCalls.ResetStatus();
+
+						StringBuilder stringBuilder = new StringBuilder( 1024 );
+						new FileBrowserSAFEntry( applicationContext, Uri.parse( entry.rawUri ) ).appendFilesToStringBuilder( stringBuilder );
+
+						String listing = stringBuilder.toString();
+						if( FileBrowserProviderCalls.GetStatus() != FileBrowserProviderCalls.STATUS_OK || listing.length() == 0 || listing.equals( EMPTY_LISTING ) )
+							return;
+
+						if( startGeneration == generation && maxPrefetchedFolders > 0 )
+							cache.put( entry.rawUri, new Listing( listing, SystemClock.uptimeMillis() ) );
+					}
+					catch( Exception e )
+					{
+						Log.e( "Unity", "Exception:", e );
+					}
+					finally
+					{
+						FileBrowserIOScheduler.End();
+					}
+				}
+			} );
+		}
+	}
+
+	// Should be called after the contents of a SAF folder are modified
+	public static void Invalidate()
+	{
+		generation++;
+		if( cache.size() > 0 )
+			cache.evictAll();
+	}
+}
\ No newline at end of file
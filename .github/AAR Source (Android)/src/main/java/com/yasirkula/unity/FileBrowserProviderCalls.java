@@ -0,0 +1,393 @@
+package com.yasirkula.unity;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Executes provider calls (queries, DocumentsContract calls) with a deadline so that a hung provider (e.g. a cloud provider
+// without connection) can't block the plugin indefinitely. While a timeout is set, each call runs on a worker thread and the
+// calling thread waits for it until the deadline; the call's CancellationSignal is then canceled and ProviderTimeoutException
+// is thrown. Optionally, a second identical call is issued if the first one hasn't returned after the hedge delay and whichever
+// returns first is used. Authorities that keep timing out are skipped for a while (circuit breaker). Without a timeout (default),
+// calls run directly on the calling thread
+public class FileBrowserProviderCalls
+{
+	public static final int STATUS_OK = 0;
+	public static final int STATUS_TIMED_OUT = 1;
+	public static final int STATUS_SKIPPED = 2; // The authority's circuit breaker was open
+
+	// After this many consecutive timeouts, the authority's calls fail immediately for CIRCUIT_OPEN_DURATION milliseconds.
+	// The first call after that is let through, its result decides whether the circuit is closed or opened again
+	private static final int CIRCUIT_TIMEOUT_THRESHOLD = 3;
+	private static final long CIRCUIT_OPEN_DURATION = 30000L;
+
+	public static class ProviderTimeoutException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		public final int status;
+
+		public ProviderTimeoutException( String authority, int status )
+		{
+			super( ( status == STATUS_SKIPPED ? "Skipped unresponsive provider: " : "Provider call timed out: " ) + authority );
+			this.status = status;
+		}
+	}
+
+	// A call that can be executed multiple times (hedging). Results of the abandoned executions are passed to Discard
+	public static abstract class Call<T>
+	{
+		protected abstract T Run( CancellationSignal cancellationSignal ) throws Exception;
+
+		protected void Discard( T result )
+		{
+		}
+
+		// Calls that modify documents (e.g. renameDocument) must return false since executing them twice isn't safe
+		protected boolean CanHedge()
+		{
+			return true;
+		}
+	}
+
+	private static class Attempt<T> implements Runnable
+	{
+		private final Call<T> call;
+		private final LinkedBlockingQueue<Attempt<T>> completedAttempts;
+		public final CancellationSignal cancellationSignal = new CancellationSignal();
+
+		public T result;
+		public Exception exception;
+		private boolean isCompleted, isAbandoned;
+
+		public Attempt( Call<T> call, LinkedBlockingQueue<Attempt<T>> completedAttempts )
+		{
+			this.call = call;
+			this.completedAttempts = completedAttempts;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				result = call.Run( cancellationSignal );
+			}
+			catch( Exception e )
+			{
+				exception = e;
+			}
+
+			boolean discard;
+			synchronized( this )
+			{
+				isCompleted = true;
+				discard = isAbandoned;
+			}
+
+			if( discard )
+				DiscardResult();
+			else
+				completedAttempts.offer( this );
+		}
+
+		public void Abandon()
+		{
+			cancellationSignal.cancel();
+
+			boolean discard;
+			synchronized( this )
+			{
+				isAbandoned = true;
+				discard = isCompleted;
+			}
+
+			if( discard )
+				DiscardResult();
+		}
+
+		private void DiscardResult()
+		{
+			if( result != null )
+			{
+				call.Discard( result );
+				result = null;
+			}
+		}
+	}
+
+	private static class Circuit
+	{
+		public int consecutiveTimeouts;
+		public long openUntil; // SystemClock.elapsedRealtime, 0 if closed
+		public boolean isProbing; // A call is let through while the circuit is half-open
+	}
+
+	private static class ThreadState
+	{
+		public int status;
+	}
+
+	private static final ThreadLocal<ThreadState> threadStates = new ThreadLocal<ThreadState>()
+	{
+		@Override
+		protected ThreadState initialValue()
+		{
+			return new ThreadState();
+		}
+	};
+
+	private static final HashMap<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+	// The status can only be set after this class is loaded, so the listener doesn't have to be set any earlier
+	static
+	{
+		FileBrowserIOScheduler.SetListener( new FileBrowserIOScheduler.Listener()
+		{
+			@Override
+			public void OnBegin()
+			{
+				ResetStatus();
+			}
+		} );
+	}
+
+	private static volatile long timeout;
+	private static volatile long hedgeDelay;
+
+	// timeoutMillis <= 0 disables the deadlines. hedgeDelayMillis <= 0 (or >= timeoutMillis) disables hedging
+	public static void SetTimeout( long timeoutMillis, long hedgeDelayMillis )
+	{
+		timeout = Math.max( 0L, timeoutMillis );
+		hedgeDelay = ( hedgeDelayMillis > 0L && hedgeDelayMillis < timeoutMillis ) ? hedgeDelayMillis : 0L;
+
+		if( timeout == 0L )
+		{
+			synchronized( circuits )
+			{
+				circuits.clear();
+			}
+		}
+	}
+
+	// Called when a public function starts (see FileBrowserIOScheduler.Listener) so that GetStatus reflects the latest function
+	static void ResetStatus()
+	{
+		threadStates.get().status = STATUS_OK;
+	}
+
+	// For functions that run multiple scheduled operations, each of which resets the status
+	static void SetStatus( int status )
+	{
+		threadStates.get().status = status;
+	}
+
+	// Returns the status of the calling thread's latest public function: STATUS_OK if none of its provider calls timed out
+	public static int GetStatus()
+	{
+		return threadStates.get().status;
+	}
+
+	public static Cursor Query( ContentResolver resolver, Uri uri, String[] projection ) throws Exception
+	{
+		return Query( resolver, uri, projection, null, null, null );
+	}
+
+	// cancellationSignal can be null. Throws OperationCanceledException if it is canceled
+	public static Cursor Query( final ContentResolver resolver, final Uri uri, final String[] projection, final String selection, final String[] selectionArgs, CancellationSignal cancellationSignal ) throws Exception
+	{
+		// Counted on the calling thread so that the query is attributed to its function (hedged attempts aren't counted)
+		FileBrowserMetrics.OnQuery();
+		return Execute( uri.getAuthority(), new Call<Cursor>()
+		{
+			@Override
+			protected Cursor Run( CancellationSignal cancellationSignal ) throws Exception
+			{
+				Cursor c = resolver.query( uri, projection, selection, selectionArgs, null, cancellationSignal );
+				if( c != null )
+					c.getCount(); // Remote cursors are filled lazily, fill the first window within the deadline, too
+
+				return c;
+			}
+
+			@Override
+			protected void Discard( Cursor result )
+			{
+				result.close();
+			}
+		}, cancellationSignal );
+	}
+
+	public static <T> T Execute( String authority, Call<T> call, CancellationSignal cancellationSignal ) throws Exception
+	{
+		long timeout = FileBrowserProviderCalls.timeout;
+		if( timeout <= 0L || authority == null )
+			return call.Run( cancellationSignal );
+
+		if( !TryEnterCircuit( authority ) )
+		{
+			threadStates.get().status = STATUS_SKIPPED;
+			throw new ProviderTimeoutException( authority, STATUS_SKIPPED );
+		}
+
+		long hedgeDelay = FileBrowserProviderCalls.hedgeDelay;
+		int maxAttemptCount = hedgeDelay > 0L && call.CanHedge() ? 2 : 1;
+		final LinkedBlockingQueue<Attempt<T>> completedAttempts = new LinkedBlockingQueue<Attempt<T>>();
+
+		// Accessed by the cancel listener, too, so it is synchronized on itself
+		final ArrayList<Attempt<T>> attempts = new ArrayList<Attempt<T>>( maxAttemptCount );
+		attempts.add( new Attempt<T>( call, completedAttempts ) );
+
+		if( cancellationSignal != null )
+		{
+			cancellationSignal.setOnCancelListener( new CancellationSignal.OnCancelListener()
+			{
+				@Override
+				public void onCancel()
+				{
+					synchronized( attempts )
+					{
+						for( int i = 0; i < attempts.size(); i++ )
+							attempts.get( i ).cancellationSignal.cancel();
+					}
+				}
+			} );
+		}
+
+		boolean isCompleted = false;
+		try
+		{
+			long startTime = SystemClock.elapsedRealtime();
+			FileBrowserWorkers.GetExecutor().execute( attempts.get( 0 ) );
+
+			int runningAttemptCount = 1;
+			while( true )
+			{
+				long elapsedTime = SystemClock.elapsedRealtime() - startTime;
+				boolean canHedge = attempts.size() < maxAttemptCount;
+				long waitTime = ( canHedge ? Math.min( timeout, hedgeDelay ) : timeout ) - elapsedTime;
+
+				Attempt<T> attempt = waitTime > 0L ? completedAttempts.poll( waitTime, TimeUnit.MILLISECONDS ) : null;
+				if( attempt != null )
+				{
+					runningAttemptCount--;
+					if( attempt.exception == null || runningAttemptCount == 0 )
+					{
+						// The other attempt (if any) is abandoned in finally
+						isCompleted = true;
+						OnCircuitResult( authority, false );
+
+						if( attempt.exception != null )
+							throw attempt.exception;
+
+						T result = attempt.result;
+						attempt.result = null;
+						return result;
+					}
+				}
+				else if( cancellationSignal != null && cancellationSignal.isCanceled() )
+					throw new OperationCanceledException();
+				else if( canHedge && elapsedTime < timeout )
+				{
+					Attempt<T> hedgedAttempt = new Attempt<T>( call, completedAttempts );
+					synchronized( attempts )
+					{
+						attempts.add( hedgedAttempt );
+					}
+
+					if( cancellationSignal != null && cancellationSignal.isCanceled() )
+						hedgedAttempt.cancellationSignal.cancel();
+
+					FileBrowserWorkers.GetExecutor().execute( hedgedAttempt );
+					runningAttemptCount++;
+				}
+				else if( elapsedTime >= timeout )
+				{
+					isCompleted = true;
+					OnCircuitResult( authority, true );
+
+					threadStates.get().status = STATUS_TIMED_OUT;
+					throw new ProviderTimeoutException( authority, STATUS_TIMED_OUT );
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		}
+		finally
+		{
+			// Waits for the cancel listener if it is running, so attempts is no longer accessed by other threads afterwards
+			if( cancellationSignal != null )
+				cancellationSignal.setOnCancelListener( null );
+
+			for( int i = 0; i < attempts.size(); i++ )
+				attempts.get( i ).Abandon();
+
+			// A canceled/interrupted call doesn't tell anything about the provider, let the next call probe the circuit
+			if( !isCompleted )
+				OnCircuitResult( authority, null );
+		}
+	}
+
+	private static boolean TryEnterCircuit( String authority )
+	{
+		synchronized( circuits )
+		{
+			Circuit circuit = circuits.get( authority );
+			if( circuit == null || circuit.openUntil == 0L )
+				return true;
+
+			if( circuit.isProbing || SystemClock.elapsedRealtime() < circuit.openUntil )
+				return false;
+
+			circuit.isProbing = true;
+			return true;
+		}
+	}
+
+	// timedOut is null if the call's result is inconclusive
+	private static void OnCircuitResult( String authority, Boolean timedOut )
+	{
+		synchronized( circuits )
+		{
+			Circuit circuit = circuits.get( authority );
+			if( circuit == null )
+			{
+				if( timedOut == null || !timedOut )
+					return;
+
+				circuit = new Circuit();
+				circuits.put( authority, circuit );
+			}
+
+			if( timedOut == null )
+			{
+				circuit.isProbing = false;
+				return;
+			}
+
+			if( !timedOut )
+			{
+				circuits.remove( authority );
+				return;
+			}
+
+			// A timed out probe reopens the circuit immediately
+			if( ++circuit.consecutiveTimeouts >= CIRCUIT_TIMEOUT_THRESHOLD || circuit.isProbing )
+				circuit.openUntil = SystemClock.elapsedRealtime() + CIRCUIT_OPEN_DURATION;
+
+			circuit.isProbing = false;
+		}
+	}
+}
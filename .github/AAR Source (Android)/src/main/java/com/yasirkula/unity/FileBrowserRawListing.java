@@ -0,0 +1,131 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lists a raw filesystem folder in a single pass: the folder is enumerated once and then each entry's
+// metadata is fetched with a single lstat call on background threads (File.isDirectory, File.length and
+// File.lastModified would each cost a separate round trip on FUSE-backed storage)
+@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+public class FileBrowserRawListing
+{
+	// Folders with fewer entries than this are processed on the calling thread
+	private static final int MIN_ENTRIES_FOR_PARALLEL_STAT = 64;
+	private static final int STAT_CHUNK_SIZE = 128;
+	private static final int MAX_STAT_WORKERS = 4;
+
+	private static final byte TYPE_INVALID = 0;
+	private static final byte TYPE_FILE = 1;
+	private static final byte TYPE_DIRECTORY = 2;
+
+	// Result is formatted as "count<>" followed by "Xname<>path<>size<>lastModified<>" for each entry where X is d for
+	// folders and f for files (same as OpenSAFFolder with the addition of size and last modified date in milliseconds)
+	public static String List( String path )
+	{
+		ArrayList<FileBrowserEntryInfo> entries = ListEntries( path );
+		if( entries == null )
+			return "0<>";
+
+		return FileBrowserListingCodec.Encode( entries, true );
+	}
+
+	// Returns null if the folder can't be listed
+	public static ArrayList<FileBrowserEntryInfo> ListEntries( String path )
+	{
+		final String directoryPath = path.endsWith( File.separator ) ? path : ( path + File.separator );
+		final String[] names = new File( path ).list();
+		if( names == null )
+			return null;
+
+		final byte[] types = new byte[names.length];
+		final long[] sizes = new long[names.length];
+		final long[] lastModifiedDates = new long[names.length];
+
+		if( names.length < MIN_ENTRIES_FOR_PARALLEL_STAT )
+			StatEntries( directoryPath, names, 0, names.length, types, sizes, lastModifiedDates );
+		else
+		{
+			final AtomicInteger nextChunkStartIndex = new AtomicInteger();
+			int workerCount = Math.min( MAX_STAT_WORKERS, ( names.length + STAT_CHUNK_SIZE - 1 ) / STAT_CHUNK_SIZE );
+			final CountDownLatch latch = new CountDownLatch( workerCount );
+			ExecutorService executor = FileBrowserWorkers.GetExecutor();
+			for( int i = 0; i < workerCount; i++ )
+			{
+				executor.execute( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							int chunkStartIndex;
+							while( ( chunkStartIndex = nextChunkStartIndex.getAndAdd( STAT_CHUNK_SIZE ) ) < names.length )
+								StatEntries( directoryPath, names, chunkStartIndex, Math.min( chunkStartIndex + STAT_CHUNK_SIZE, names.length ), types, sizes, lastModifiedDates );
+						}
+						finally
+						{
+							latch.countDown();
+						}
+					}
+				} );
+			}
+
+			try
+			{
+				latch.await();
+			}
+			catch( InterruptedException e )
+			{
+				Log.e( "Unity", "Exception:", e );
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+
+		ArrayList<FileBrowserEntryInfo> result = new ArrayList<FileBrowserEntryInfo>( names.length );
+		for( int i = 0; i < names.length; i++ )
+		{
+			if( types[i] != TYPE_INVALID )
+				result.add( new FileBrowserEntryInfo( names[i], directoryPath + names[i], types[i] == TYPE_DIRECTORY, sizes[i], lastModifiedDates[i] ) );
+		}
+
+		return result;
+	}
+
+	private static void StatEntries( String directoryPath, String[] names, int startIndex, int endIndex, byte[] types, long[] sizes, long[] lastModifiedDates )
+	{
+		for( int i = startIndex; i < endIndex; i++ )
+		{
+			String entryPath = directoryPath + names[i];
+			try
+			{
+				StructStat stat = Os.lstat( entryPath );
+				if( OsConstants.S_ISLNK( stat.st_mode ) )
+				{
+					// Resolve symbolic links to their targets' attributes, like File API does
+					stat = Os.stat( entryPath );
+				}
+
+				types[i] = OsConstants.S_ISDIR( stat.st_mode ) ? TYPE_DIRECTORY : TYPE_FILE;
+				sizes[i] = types[i] == TYPE_DIRECTORY ? 0L : stat.st_size;
+				lastModifiedDates[i] = stat.st_mtime * 1000L;
+			}
+			catch( ErrnoException e )
+			{
+				// Entry was deleted after the folder was enumerated or it is a broken symbolic link
+				types[i] = TYPE_INVALID;
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -9,6 +9,8 @@ import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.provider.DocumentsContract;
 import android.text.TextUtils;
 import android.util.Log;
@@ -209,8 +211,8 @@ public class FileBrowserSAFEntry
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( mUri, new String[] {
-					DocumentsContract.Document.COLUMN_DOCUMENT_ID }, null, null, null );
+			c = FileBrowserProviderCalls.Query( resolver, mUri, new String[] {
+					DocumentsContract.Document.COLUMN_DOCUMENT_ID } );
 			return c.getCount() > 0;
 		}
 		catch( Exception e )
@@ -232,6 +234,43 @@ public class FileBrowserSAFEntry
 		}
 	}
 
+	// Unlike !exists(), returns true only if the provider reports that the entry doesn't exist (or is no longer accessible).
+	// Failed/timed out queries return false since they say nothing about the entry
+	public boolean isMissing()
+	{
+		final ContentResolver resolver = mContext.getContentResolver();
+		Cursor c = null;
+		try
+		{
+			c = FileBrowserProviderCalls.Query( resolver, mUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID } );
+
+			// DocumentsProvider returns a null cursor for missing documents
+			return c == null || c.getCount() == 0;
+		}
+		catch( SecurityException e )
+		{
+			// The permission to the entry was revoked
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.w( TAG, "Failed query: " + e );
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				if( c != null )
+					c.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( TAG, "Exception:", e );
+			}
+		}
+	}
+
 	public ArrayList<FileBrowserSAFEntry> listFiles()
 	{
 		final ContentResolver resolver = mContext.getContentResolver();
@@ -241,8 +280,8 @@ public class FileBrowserSAFEntry
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( childrenUri, new String[] {
-					DocumentsContract.Document.COLUMN_DOCUMENT_ID }, null, null, null );
+			c = FileBrowserProviderCalls.Query( resolver, childrenUri, new String[] {
+					DocumentsContract.Document.COLUMN_DOCUMENT_ID } );
 			while( c.moveToNext() )
 			{
 				final String documentId = c.getString( 0 );
@@ -271,17 +310,109 @@ public class FileBrowserSAFEntry
 		return results;
 	}
 
+	// Lists the children alongside their attributes with a single query (listFiles + per-child queries would cost a query per attribute).
+	// Returns null if the query fails so that a failed listing can't be mistaken for an empty folder
+	public ArrayList<FileBrowserEntryInfo> listFilesWithAttributes()
+	{
+		final ContentResolver resolver = mContext.getContentResolver();
+		final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree( mUri, DocumentsContract.getDocumentId( mUri ) );
+		final ArrayList<FileBrowserEntryInfo> results = new ArrayList<FileBrowserEntryInfo>();
+		Cursor c = null;
+		try
+		{
+			c = FileBrowserProviderCalls.Query( resolver, childrenUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+					DocumentsContract.Document.COLUMN_SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED } );
+			results.ensureCapacity( c.getCount() );
+			final String treeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( mUri.toString() );
+			while( c.moveToNext() )
+			{
+				final boolean isDirectory = DocumentsContract.Document.MIME_TYPE_DIR.equals( c.getString( 1 ) );
+				final String uri = buildChildUri( treeUriPrefix, c.getString( 0 ) );
+				results.add( new FileBrowserEntryInfo( c.getString( 2 ), uri, isDirectory, c.isNull( 3 ) ? 0L : c.getLong( 3 ), c.isNull( 4 ) ? 0L : c.getLong( 4 ) ) );
+			}
+		}
+		catch( Exception e )
+		{
+			Log.w( "Unity", "Failed query: " + e );
+			return null;
+		}
+		finally
+		{
+			try
+			{
+				if( c != null )
+					c.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( TAG, "Exception:", e );
+			}
+		}
+
+		return results;
+	}
+
+	// Lists the children alongside their attributes with a single query into a compact listing that doesn't allocate objects per child.
+	// Returns null if the query fails
+	public FileBrowserColumnarListing listFilesColumnar()
+	{
+		final ContentResolver resolver = mContext.getContentResolver();
+		final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree( mUri, DocumentsContract.getDocumentId( mUri ) );
+		final String treeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( mUri.toString() );
+		FileBrowserColumnarListing results = null;
+		Cursor c = null;
+		try
+		{
+			c = FileBrowserProviderCalls.Query( resolver, childrenUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+					DocumentsContract.Document.COLUMN_SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED } );
+			results = new FileBrowserColumnarListing( treeUriPrefix, c.getCount() );
+			while( c.moveToNext() )
+			{
+				final boolean isDirectory = DocumentsContract.Document.MIME_TYPE_DIR.equals( c.getString( 1 ) );
+				final String documentId = treeUriPrefix != null ? c.getString( 0 ) : buildChildUri( null, c.getString( 0 ) );
+				final String name = c.getString( 2 );
+				results.Add( name != null ? name : "", documentId, isDirectory, c.isNull( 3 ) ? 0L : c.getLong( 3 ), c.isNull( 4 ) ? 0L : c.getLong( 4 ) );
+			}
+		}
+		catch( Exception e )
+		{
+			Log.w( "Unity", "Failed query: " + e );
+			return null;
+		}
+		finally
+		{
+			try
+			{
+				if( c != null )
+					c.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( TAG, "Exception:", e );
+			}
+		}
+
+		return results;
+	}
+
 	public void appendFilesToStringBuilder( StringBuilder stringBuilder )
+	{
+		appendFilesToStringBuilder( stringBuilder, null );
+	}
+
+	// If cancellationSignal is canceled, the query is aborted and stringBuilder's contents must be discarded
+	public void appendFilesToStringBuilder( StringBuilder stringBuilder, CancellationSignal cancellationSignal )
 	{
 		final ContentResolver resolver = mContext.getContentResolver();
 		final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree( mUri, DocumentsContract.getDocumentId( mUri ) );
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( childrenUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_DISPLAY_NAME }, null, null, null );
-			stringBuilder.append( c.getCount() ).append( "<>" );
+			c = FileBrowserProviderCalls.Query( resolver, childrenUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE, DocumentsContract.Document.COLUMN_DISPLAY_NAME }, null, null, cancellationSignal );
+			FileBrowserListingCodec.AppendHeader( stringBuilder, c.getCount() );
 			if( c.moveToNext() )
 			{
+				final String treeUriPrefix = FileBrowserPathUtils.GetTreeUriPrefix( mUri.toString() );
 				int documentIdIndex = c.getColumnIndex( DocumentsContract.Document.COLUMN_DOCUMENT_ID );
 				int mimeTypeIndex = c.getColumnIndex( DocumentsContract.Document.COLUMN_MIME_TYPE );
 				int nameIndex = c.getColumnIndex( DocumentsContract.Document.COLUMN_DISPLAY_NAME );
@@ -290,12 +421,20 @@ public class FileBrowserSAFEntry
 				{
 					final boolean isDirectory = DocumentsContract.Document.MIME_TYPE_DIR.equals( c.getString( mimeTypeIndex ) );
 					final String name = c.getString( nameIndex );
-					final String uri = DocumentsContract.buildDocumentUriUsingTree( mUri, c.getString( documentIdIndex ) ).toString();
+					final String uri = buildChildUri( treeUriPrefix, c.getString( documentIdIndex ) );
+
+					FileBrowserListingCodec.AppendEntry( stringBuilder, isDirectory, name, uri );
 
-					stringBuilder.append( isDirectory ? "d" : "f" ).append( name ).append( "<>" ).append( uri ).append( "<>" );
+					// Cursor windows of large folders are filled lazily while iterating, so stop iterating as soon as possible, too
+					if( cancellationSignal != null && cancellationSignal.isCanceled() )
+						break;
 				} while( c.moveToNext() );
 			}
 		}
+		catch( OperationCanceledException e )
+		{
+			// The listing was superseded, its result is discarded by the caller
+		}
 		catch( Exception e )
 		{
 			Log.w( "Unity", "Failed query: " + e );
@@ -314,11 +453,27 @@ public class FileBrowserSAFEntry
 		}
 	}
 
-	public String renameTo( String displayName )
+	public String renameTo( final String displayName )
 	{
 		try
 		{
-			final Uri result = DocumentsContract.renameDocument( mContext.getContentResolver(), mUri, displayName );
+			final ContentResolver resolver = mContext.getContentResolver();
+			final Uri uri = mUri;
+			final Uri result = FileBrowserProviderCalls.Execute( uri.getAuthority(), new FileBrowserProviderCalls.Call<Uri>()
+			{
+				@Override
+				protected Uri Run( CancellationSignal cancellationSignal ) throws Exception
+				{
+					return DocumentsContract.renameDocument( resolver, uri, displayName );
+				}
+
+				@Override
+				protected boolean CanHedge()
+				{
+					return false;
+				}
+			}, null );
+
 			if( result != null )
 				mUri = result;
 		}
@@ -330,6 +485,15 @@ public class FileBrowserSAFEntry
 		return mUri.toString();
 	}
 
+	// Builds the child's uri with string operations when possible since Uri builders are costly for large folders
+	private String buildChildUri( String treeUriPrefix, String documentId )
+	{
+		if( treeUriPrefix != null )
+			return FileBrowserPathUtils.BuildDocumentUri( treeUriPrefix, documentId );
+
+		return DocumentsContract.buildDocumentUriUsingTree( mUri, documentId ).toString();
+	}
+
 	private String getRawType()
 	{
 		return queryForString( DocumentsContract.Document.COLUMN_MIME_TYPE, null );
@@ -341,7 +505,7 @@ public class FileBrowserSAFEntry
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( mUri, new String[] { column }, null, null, null );
+			c = FileBrowserProviderCalls.Query( resolver, mUri, new String[] { column } );
 			if( c.moveToFirst() && !c.isNull( 0 ) )
 				return c.getString( 0 );
 
@@ -377,7 +541,7 @@ public class FileBrowserSAFEntry
 		Cursor c = null;
 		try
 		{
-			c = resolver.query( mUri, new String[] { column }, null, null, null );
+			c = FileBrowserProviderCalls.Query( resolver, mUri, new String[] { column } );
 			if( c.moveToFirst() && !c.isNull( 0 ) )
 				return c.getLong( 0 );
 
@@ -0,0 +1,81 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.StatFs;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStatVfs;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+// Checks the free space of copy destinations and preallocates the destination files so that large copies fail before writing
+// anything if the destination is full (instead of leaving a truncated file behind) and long sequential writes don't fragment
+// the file or update the filesystem's metadata repeatedly
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserStorageSpace
+{
+	// Smaller copies are started right away
+	public static final long LARGE_COPY_THRESHOLD = 4L * 1024L * 1024L;
+
+	// Returns the free space of the volume that contains the path (which doesn't have to exist yet) or -1 if it can't be determined
+	public static long GetAvailableBytes( File path )
+	{
+		while( path != null && !path.exists() )
+			path = path.getParentFile();
+
+		if( path == null )
+			return -1L;
+
+		try
+		{
+			return new StatFs( path.getPath() ).getAvailableBytes();
+		}
+		catch( Exception e )
+		{
+			return -1L;
+		}
+	}
+
+	// Returns -1 if the free space can't be determined (e.g. the file descriptor is a pipe)
+	public static long GetAvailableBytes( FileDescriptor fd )
+	{
+		try
+		{
+			StructStatVfs stat = Os.fstatvfs( fd );
+			return stat.f_bavail * stat.f_frsize;
+		}
+		catch( ErrnoException e )
+		{
+			return -1L;
+		}
+	}
+
+	// availableBytes can be -1 if it is unknown
+	public static void EnsureAvailable( long availableBytes, long requiredBytes ) throws IOException
+	{
+		if( availableBytes >= 0L && availableBytes < requiredBytes )
+			throw new IOException( "Not enough free space: " + requiredBytes + " bytes are required but " + availableBytes + " bytes are available" );
+	}
+
+	// Reserves length bytes starting from offset and returns true on success. The file's size becomes at least offset + length,
+	// so it must be truncated to the copied length afterwards. Filesystems that don't support preallocation (e.g. FUSE) are ignored
+	public static boolean Preallocate( FileDescriptor fd, long offset, long length ) throws IOException
+	{
+		try
+		{
+			Os.posix_fallocate( fd, offset, length );
+			return true;
+		}
+		catch( ErrnoException e )
+		{
+			if( e.errno == OsConstants.ENOSPC )
+				throw new IOException( "Not enough free space: " + length + " bytes couldn't be preallocated", e );
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+// Incrementally synchronizes a destination folder with a source folder: only the new and changed files are copied.
+// Both folders are listed with single-pass queries that also return the entries' sizes and last modified dates
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserSync
+{
+	private static class Statistics
+	{
+		public int copiedFileCount;
+		public int skippedFileCount;
+		public int deletedEntryCount;
+		public int errorCount;
+	}
+
+	// A file is considered changed if its size differs from the destination file or it was modified after the destination
+	// file. If compareChecksums is true, files with matching sizes are compared by their MD5 checksums instead. If
+	// deleteExtraEntries is true, destination files/folders that don't exist in the source folder are deleted. Folders that
+	// can't be listed (on either side) are skipped entirely, so a failed listing never causes any deletions
+	//
+	// Result is formatted as "copiedFileCount<>skippedFileCount<>deletedEntryCount<>errorCount<>" where errorCount is the
+	// number of folders that couldn't be listed, files that couldn't be synchronized and extra entries that couldn't be deleted
+	public static String Sync( Context context, String sourceRawUri, String destinationRawUri, boolean compareChecksums, boolean deleteExtraEntries )
+	{
+		Statistics statistics = new Statistics();
+		if( !destinationRawUri.contains( "://" ) )
+			new File( destinationRawUri ).mkdirs();
+
+		SyncDirectoryRecursively( context, sourceRawUri, destinationRawUri, compareChecksums, deleteExtraEntries, statistics );
+		return statistics.copiedFileCount + "<>" + statistics.skippedFileCount + "<>" + statistics.deletedEntryCount + "<>" + statistics.errorCount + "<>";
+	}
+
+	private static void SyncDirectoryRecursively( Context context, String sourceRawUri, String destinationRawUri, boolean compareChecksums, boolean deleteExtraEntries, Statistics statistics )
+	{
+		boolean isDestinationSAFDirectory = destinationRawUri.contains( "://" );
+
+		ArrayList<FileBrowserEntryInfo> sourceContents = FileBrowser.ListEntriesWithAttributes( context, sourceRawUri );
+		ArrayList<FileBrowserEntryInfo> destinationContents = sourceContents != null ? FileBrowser.ListEntriesWithAttributes( context, destinationRawUri ) : null;
+		if( destinationContents == null )
+		{
+			Log.e( "Unity", "Couldn't list directory: " + ( sourceContents == null ? sourceRawUri : destinationRawUri ) );
+			statistics.errorCount++;
+			return;
+		}
+
+		HashMap<String, FileBrowserEntryInfo> destinationEntries = new HashMap<String, FileBrowserEntryInfo>( destinationContents.size() * 2 );
+		for( int i = 0; i < destinationContents.size(); i++ )
+			destinationEntries.put( destinationContents.get( i ).name, destinationContents.get( i ) );
+
+		HashSet<String> sourceEntryNames = deleteExtraEntries ? new HashSet<String>( sourceContents.size() * 2 ) : null;
+		for( int i = 0; i < sourceContents.size(); i++ )
+		{
+			FileBrowserEntryInfo sourceEntry = sourceContents.get( i );
+			FileBrowserEntryInfo destinationEntry = destinationEntries.get( sourceEntry.name );
+			if( sourceEntryNames != null )
+				sourceEntryNames.add( sourceEntry.name );
+
+			try
+			{
+				// Destination entry's type doesn't match the source entry's type, delete the destination entry
+				if( destinationEntry != null && destinationEntry.isDirectory != sourceEntry.isDirectory )
+				{
+					if( !FileBrowser.DeleteEntry( context, destinationEntry.rawUri, destinationEntry.isDirectory ) )
+						throw new IOException( "Couldn't delete: " + destinationEntry.rawUri );
+
+					destinationEntry = null;
+				}
+
+				if( sourceEntry.isDirectory )
+				{
+					String targetRawUri;
+					if( destinationEntry != null )
+						targetRawUri = destinationEntry.rawUri;
+					else if( isDestinationSAFDirectory )
+					{
+						targetRawUri = FileBrowser.CreateSAFEntry( context, destinationRawUri, true, sourceEntry.name );
+						if( targetRawUri.length() == 0 )
+							throw new IOException( "Couldn't create directory: " + sourceEntry.name );
+					}
+					else
+					{
+						File targetDirectory = new File( destinationRawUri, sourceEntry.name );
+						targetDirectory.mkdirs();
+						targetRawUri = targetDirectory.getPath();
+					}
+
+					SyncDirectoryRecursively( context, sourceEntry.rawUri, targetRawUri, compareChecksums, deleteExtraEntries, statistics );
+				}
+				else if( destinationEntry != null && !IsFileChanged( context, sourceEntry, destinationEntry, compareChecksums ) )
+					statistics.skippedFileCount++;
+				else
+				{
+					String targetRawUri;
+					if( destinationEntry != null )
+						targetRawUri = destinationEntry.rawUri;
+					else if( isDestinationSAFDirectory )
+					{
+						targetRawUri = FileBrowser.CreateSAFEntry( context, destinationRawUri, false, sourceEntry.name );
+						if( targetRawUri.length() == 0 )
+							throw new IOException( "Couldn't create file: " + sourceEntry.name );
+					}
+					else
+						targetRawUri = new File( destinationRawUri, sourceEntry.name ).getPath();
+
+					if( !FileBrowser.CopyFile( context, sourceEntry.rawUri, targetRawUri, false ) )
+						throw new IOException( "Couldn't copy file: " + sourceEntry.rawUri );
+
+					// Raw files can preserve the source's last modified date so that the next sync can compare the dates exactly
+					if( !isDestinationSAFDirectory && sourceEntry.lastModified > 0L )
+						new File( targetRawUri ).setLastModified( sourceEntry.lastModified );
+
+					statistics.copiedFileCount++;
+				}
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+				statistics.errorCount++;
+			}
+		}
+
+		if( sourceEntryNames != null )
+		{
+			for( int i = 0; i < destinationContents.size(); i++ )
+			{
+				FileBrowserEntryInfo destinationEntry = destinationContents.get( i );
+				if( !sourceEntryNames.contains( destinationEntry.name ) )
+				{
+					if( FileBrowser.DeleteEntry( context, destinationEntry.rawUri, destinationEntry.isDirectory ) )
+						statistics.deletedEntryCount++;
+					else
+					{
+						Log.e( "Unity", "Couldn't delete: " + destinationEntry.rawUri );
+						statistics.errorCount++;
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean IsFileChanged( Context context, FileBrowserEntryInfo sourceEntry, FileBrowserEntryInfo destinationEntry, boolean compareChecksums )
+	{
+		if( sourceEntry.size != destinationEntry.size )
+			return true;
+
+		if( compareChecksums )
+		{
+			String sourceChecksum = FileBrowserChecksums.Calculate( context, sourceEntry.rawUri, "MD5" );
+			return sourceChecksum.length() == 0 || !sourceChecksum.equals( FileBrowserChecksums.Calculate( context, destinationEntry.rawUri, "MD5" ) );
+		}
+
+		return sourceEntry.lastModified > destinationEntry.lastModified;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,6 @@
+package com.yasirkula.unity;
+
+public interface FileBrowserThumbnailReceiver
+{
+	void OnThumbnailReady( String rawUri, String thumbnailPath );
+}
\ No newline at end of file
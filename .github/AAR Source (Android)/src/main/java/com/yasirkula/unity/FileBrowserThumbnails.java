@@ -0,0 +1,510 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.util.Log;
+import android.util.LruCache;
+import android.webkit.MimeTypeMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Generates thumbnails of Storage Access Framework (SAF) files and raw files on a bounded pool of background threads.
+// Generated thumbnails are saved to a size-limited disk cache (keyed by the file's uri, thumbnail size and the file's
+// last modified date) and the encoded JPEG data of the most recently used thumbnails are also kept in memory so that
+// they can be served without touching the disk
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserThumbnails
+{
+	private static final int WORKER_COUNT = 2;
+	private static final int MEMORY_CACHE_CAPACITY = 8 * 1024 * 1024; // In bytes
+	private static final long DISK_CACHE_CAPACITY = 32L * 1024L * 1024L;
+	private static final int JPEG_QUALITY = 85;
+
+	private static class Request implements Runnable
+	{
+		private final Context context;
+		private final String rawUri;
+		private final int maxSize;
+		private final long lastModified;
+		private final String requestKey;
+		private final FileBrowserThumbnailReceiver thumbnailReceiver;
+
+		private final CancellationSignal cancellationSignal = new CancellationSignal();
+
+		public Request( Context context, String rawUri, int maxSize, long lastModified, FileBrowserThumbnailReceiver thumbnailReceiver )
+		{
+			this.context = context;
+			this.rawUri = rawUri;
+			this.maxSize = maxSize;
+			this.lastModified = lastModified;
+			this.requestKey = GetCacheKey( rawUri, maxSize, lastModified );
+			this.thumbnailReceiver = thumbnailReceiver;
+		}
+
+		public void cancel()
+		{
+			cancellationSignal.cancel();
+			executor.remove( this );
+		}
+
+		@Override
+		public void run()
+		{
+			String thumbnailPath = "";
+			try
+			{
+				if( !cancellationSignal.isCanceled() )
+				{
+					FileBrowserIOScheduler.Begin( FileBrowserIOScheduler.PRIORITY_PREFETCH, rawUri );
+					try
+					{
+						thumbnailPath = GetThumbnail( context, rawUri, maxSize, lastModified, cancellationSignal );
+					}
+					finally
+					{
+						FileBrowserIOScheduler.End();
+					}
+				}
+			}
+			catch( Exception e )
+			{
+				if( !cancellationSignal.isCanceled() )
+					Log.e( "Unity", "Exception:", e );
+			}
+			finally
+			{
+				pendingRequests.remove( requestKey, this );
+			}
+
+			if( !cancellationSignal.isCanceled() )
+				thumbnailReceiver.OnThumbnailReady( rawUri, thumbnailPath );
+		}
+	}
+
+	// Keyed by the memory cache key, so requests for different thumbnail sizes of the same file don't cancel each other
+	private static final ConcurrentHashMap<String, Request> pendingRequests = new ConcurrentHashMap<String, Request>();
+	private static final LruCache<String, byte[]> memoryCache = new LruCache<String, byte[]>( MEMORY_CACHE_CAPACITY )
+	{
+		@Override
+		protected int sizeOf( String key, byte[] value )
+		{
+			return value.length;
+		}
+	};
+
+	private static ThreadPoolExecutor executor;
+	private static File diskCacheDirectory;
+	private static long diskCacheSize = -1L;
+
+	// lastModified can be 0 if it isn't known by the caller, in which case it is fetched from the file
+	public static void Enqueue( Context context, String rawUri, int maxSize, long lastModified, FileBrowserThumbnailReceiver thumbnailReceiver )
+	{
+		if( maxSize <= 0 )
+		{
+			Log.e( "Unity", "Thumbnail size must be positive: " + maxSize );
+			thumbnailReceiver.OnThumbnailReady( rawUri, "" );
+			return;
+		}
+
+		synchronized( FileBrowserThumbnails.class )
+		{
+			if( executor == null )
+			{
+				executor = new ThreadPoolExecutor( WORKER_COUNT, WORKER_COUNT, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), FileBrowserWorkers.CreateThreadFactory( "FileBrowserThumbnail" ) );
+				executor.allowCoreThreadTimeOut( true );
+			}
+		}
+
+		// A newer request for the same thumbnail replaces the pending one
+		Request request = new Request( context.getApplicationContext(), rawUri, maxSize, lastModified, thumbnailReceiver );
+		Request previousRequest = pendingRequests.put( request.requestKey, request );
+		if( previousRequest != null )
+			previousRequest.cancel();
+
+		executor.execute( request );
+	}
+
+	// Should be called for the files that are no longer visible (e.g. scrolled out of view). Cancels the file's pending requests
+	// of all thumbnail sizes
+	public static void Cancel( String rawUri )
+	{
+		for( Request request : pendingRequests.values() )
+		{
+			if( request.rawUri.equals( rawUri ) && pendingRequests.remove( request.requestKey, request ) )
+				request.cancel();
+		}
+	}
+
+	public static void CancelAll()
+	{
+		for( Request request : pendingRequests.values() )
+		{
+			if( pendingRequests.remove( request.requestKey, request ) )
+				request.cancel();
+		}
+	}
+
+	// Returns the JPEG data of the thumbnail if it is in the memory cache, null otherwise. Never touches the disk or the provider,
+	// so it can be called for the visible rows every frame
+	public static byte[] GetFromMemoryCache( String rawUri, int maxSize, long lastModified )
+	{
+		if( maxSize <= 0 )
+			return null;
+
+		return memoryCache.get( GetCacheKey( rawUri, maxSize, lastModified ) );
+	}
+
+	private static String GetThumbnail( Context context, String rawUri, int maxSize, long lastModified, CancellationSignal cancellationSignal ) throws Exception
+	{
+		boolean isSAFFile = rawUri.contains( "://" );
+		Uri uri = isSAFFile ? Uri.parse( rawUri ) : null;
+
+		// When the caller already knows the last modified date, cache hits don't need to query the file at all
+		boolean isCacheChecked = lastModified > 0L;
+		if( isCacheChecked )
+		{
+			String thumbnailPath = GetCachedThumbnail( context, rawUri, maxSize, lastModified );
+			if( thumbnailPath != null )
+				return thumbnailPath;
+		}
+
+		// Fetch the file's attributes in a single query
+		int flags = 0;
+		String mimeType = null;
+		if( isSAFFile )
+		{
+			Cursor c = FileBrowserProviderCalls.Query( context.getContentResolver(), uri, new String[] { DocumentsContract.Document.COLUMN_LAST_MODIFIED, DocumentsContract.Document.COLUMN_FLAGS, DocumentsContract.Document.COLUMN_MIME_TYPE } );
+			if( c == null )
+				return "";
+
+			try
+			{
+				if( !c.moveToFirst() )
+					return "";
+
+				if( lastModified <= 0L && !c.isNull( 0 ) )
+					lastModified = c.getLong( 0 );
+
+				flags = c.isNull( 1 ) ? 0 : c.getInt( 1 );
+				mimeType = c.getString( 2 );
+			}
+			finally
+			{
+				c.close();
+			}
+		}
+		else
+		{
+			if( lastModified <= 0L )
+				lastModified = new File( rawUri ).lastModified();
+
+			int extensionSeparator = rawUri.lastIndexOf( '.' );
+			if( extensionSeparator > rawUri.lastIndexOf( File.separatorChar ) )
+				mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension( rawUri.substring( extensionSeparator + 1 ).toLowerCase( Locale.ENGLISH ) );
+		}
+
+		if( !isCacheChecked )
+		{
+			String thumbnailPath = GetCachedThumbnail( context, rawUri, maxSize, lastModified );
+			if( thumbnailPath != null )
+				return thumbnailPath;
+		}
+
+		String cacheKey = GetCacheKey( rawUri, maxSize, lastModified );
+		File thumbnailFile = new File( GetDiskCacheDirectory( context ), GetCacheFileName( cacheKey ) );
+
+		Bitmap bitmap = null;
+		if( isSAFFile && ( flags & DocumentsContract.Document.FLAG_SUPPORTS_THUMBNAIL ) != 0 )
+			bitmap = DocumentsContract.getDocumentThumbnail( context.getContentResolver(), uri, new Point( maxSize, maxSize ), cancellationSignal );
+
+		if( bitmap == null && mimeType != null && mimeType.startsWith( "image/" ) )
+		{
+			ParcelFileDescriptor fileDescriptor = isSAFFile ? context.getContentResolver().openFileDescriptor( uri, "r", cancellationSignal ) : ParcelFileDescriptor.open( new File( rawUri ), ParcelFileDescriptor.MODE_READ_ONLY );
+			if( fileDescriptor != null )
+			{
+				try
+				{
+					bitmap = DecodeSampledBitmap( fileDescriptor, maxSize );
+				}
+				finally
+				{
+					fileDescriptor.close();
+				}
+			}
+		}
+
+		if( bitmap == null )
+			return "";
+
+		byte[] thumbnailData;
+		try
+		{
+			if( cancellationSignal.isCanceled() )
+				return "";
+
+			float scale = (float) maxSize / Math.max( bitmap.getWidth(), bitmap.getHeight() );
+			if( scale < 1f )
+			{
+				Bitmap scaledBitmap = Bitmap.createScaledBitmap( bitmap, Math.max( 1, (int) ( bitmap.getWidth() * scale ) ), Math.max( 1, (int) ( bitmap.getHeight() * scale ) ), true );
+				if( scaledBitmap != bitmap )
+				{
+					bitmap.recycle();
+					bitmap = scaledBitmap;
+				}
+			}
+
+			ByteArrayOutputStream encodedThumbnail = new ByteArrayOutputStream( 16 * 1024 );
+			if( !bitmap.compress( Bitmap.CompressFormat.JPEG, JPEG_QUALITY, encodedThumbnail ) )
+				return "";
+
+			thumbnailData = encodedThumbnail.toByteArray();
+		}
+		finally
+		{
+			bitmap.recycle();
+		}
+
+		if( !WriteToDiskCache( thumbnailFile, thumbnailData ) )
+			return "";
+
+		OnThumbnailSavedToDiskCache( thumbnailData.length );
+		memoryCache.put( cacheKey, thumbnailData );
+
+		return thumbnailFile.getPath();
+	}
+
+	// Writes to a temporary file first so that a partially written thumbnail is never served from the cache
+	private static boolean WriteToDiskCache( File thumbnailFile, byte[] thumbnailData ) throws Exception
+	{
+		File temporaryFile = new File( thumbnailFile.getPath() + ".tmp" + Thread.currentThread().getId() );
+		OutputStream output = new FileOutputStream( temporaryFile );
+		try
+		{
+			output.write( thumbnailData );
+		}
+		finally
+		{
+			output.close();
+		}
+
+		if( !temporaryFile.renameTo( thumbnailFile ) )
+		{
+			temporaryFile.delete();
+			return false;
+		}
+
+		return true;
+	}
+
+	// Returns null on cache miss
+	private static String GetCachedThumbnail( Context context, String rawUri, int maxSize, long lastModified ) throws Exception
+	{
+		String cacheKey = GetCacheKey( rawUri, maxSize, lastModified );
+		File thumbnailFile = new File( GetDiskCacheDirectory( context ), GetCacheFileName( cacheKey ) );
+
+		// Memory cache entries are removed when the disk cache evicts their files, so they are normally on the disk, too. If the
+		// system has cleared the app's cache directory in the meantime, the thumbnail is restored from memory without decoding it
+		byte[] thumbnailData = memoryCache.get( cacheKey );
+		if( thumbnailData != null )
+		{
+			if( thumbnailFile.exists() )
+				return thumbnailFile.getPath();
+
+			if( WriteToDiskCache( thumbnailFile, thumbnailData ) )
+			{
+				OnThumbnailSavedToDiskCache( thumbnailData.length );
+				return thumbnailFile.getPath();
+			}
+		}
+
+		long thumbnailSize = thumbnailFile.length(); // 0 if the file doesn't exist
+		if( thumbnailSize <= 0L )
+			return null;
+
+		// Mark the thumbnail as recently used so that it is evicted last and keep its data in memory for GetFromMemoryCache
+		thumbnailFile.setLastModified( System.currentTimeMillis() );
+		if( thumbnailSize <= MEMORY_CACHE_CAPACITY / 16 )
+		{
+			thumbnailData = ReadFile( thumbnailFile, (int) thumbnailSize );
+			if( thumbnailData != null )
+				memoryCache.put( cacheKey, thumbnailData );
+		}
+
+		return thumbnailFile.getPath();
+	}
+
+	private static byte[] ReadFile( File file, int length )
+	{
+		FileInputStream input = null;
+		try
+		{
+			input = new FileInputStream( file );
+			byte[] data = new byte[length];
+			int totalLength = 0;
+			while( totalLength < length )
+			{
+				int len = input.read( data, totalLength, length - totalLength );
+				if( len < 0 )
+					return null;
+
+				totalLength += len;
+			}
+
+			return data;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return null;
+		}
+		finally
+		{
+			if( input != null )
+			{
+				try
+				{
+					input.close();
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+			}
+		}
+	}
+
+	private static Bitmap DecodeSampledBitmap( ParcelFileDescriptor fileDescriptor, int maxSize )
+	{
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFileDescriptor( fileDescriptor.getFileDescriptor(), null, options );
+		if( options.outWidth <= 0 || options.outHeight <= 0 )
+			return null;
+
+		// Decode the largest power-of-two downsampled image that still covers maxSize
+		int sampleSize = 1;
+		while( options.outWidth / ( sampleSize * 2 ) >= maxSize && options.outHeight / ( sampleSize * 2 ) >= maxSize )
+			sampleSize *= 2;
+
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = sampleSize;
+		return BitmapFactory.decodeFileDescriptor( fileDescriptor.getFileDescriptor(), null, options );
+	}
+
+	private static synchronized File GetDiskCacheDirectory( Context context )
+	{
+		if( diskCacheDirectory == null )
+		{
+			diskCacheDirectory = new File( context.getCacheDir(), "SimpleFileBrowserThumbnails" );
+			diskCacheDirectory.mkdirs();
+		}
+
+		return diskCacheDirectory;
+	}
+
+	private static synchronized void OnThumbnailSavedToDiskCache( long thumbnailSize )
+	{
+		File[] cachedFiles = null;
+		if( diskCacheSize < 0L )
+		{
+			cachedFiles = diskCacheDirectory.listFiles();
+			diskCacheSize = 0L;
+			if( cachedFiles != null )
+			{
+				for( File cachedFile : cachedFiles )
+					diskCacheSize += cachedFile.length();
+			}
+		}
+		else
+			diskCacheSize += thumbnailSize;
+
+		if( diskCacheSize <= DISK_CACHE_CAPACITY )
+			return;
+
+		// Evict the least recently used thumbnails until the cache shrinks to 3/4 of its capacity
+		if( cachedFiles == null )
+			cachedFiles = diskCacheDirectory.listFiles();
+		if( cachedFiles == null )
+			return;
+
+		final long[] lastModifiedDates = new long[cachedFiles.length];
+		Integer[] sortedIndices = new Integer[cachedFiles.length];
+		for( int i = 0; i < cachedFiles.length; i++ )
+		{
+			lastModifiedDates[i] = cachedFiles[i].lastModified();
+			sortedIndices[i] = i;
+		}
+
+		Arrays.sort( sortedIndices, new Comparator<Integer>()
+		{
+			@Override
+			public int compare( Integer a, Integer b )
+			{
+				long difference = lastModifiedDates[a] - lastModifiedDates[b];
+				return difference < 0 ? -1 : ( difference > 0 ? 1 : 0 );
+			}
+		} );
+
+		HashSet<String> evictedFileNames = new HashSet<String>();
+		for( int i = 0; i < sortedIndices.length && diskCacheSize > DISK_CACHE_CAPACITY * 3L / 4L; i++ )
+		{
+			File cachedFile = cachedFiles[sortedIndices[i]];
+			long cachedFileSize = cachedFile.length();
+			if( cachedFile.delete() )
+			{
+				diskCacheSize -= cachedFileSize;
+				evictedFileNames.add( cachedFile.getName() );
+			}
+		}
+
+		// Remove only the evicted thumbnails from the memory cache. File names are hashes of the cache keys, so the memory cache's
+		// keys are hashed to find them
+		if( evictedFileNames.size() > 0 )
+		{
+			for( String cacheKey : memoryCache.snapshot().keySet() )
+			{
+				try
+				{
+					if( evictedFileNames.contains( GetCacheFileName( cacheKey ) ) )
+						memoryCache.remove( cacheKey );
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+			}
+		}
+	}
+
+	private static String GetCacheKey( String rawUri, int maxSize, long lastModified )
+	{
+		return rawUri + "|" + maxSize + "|" + lastModified;
+	}
+
+	private static String GetCacheFileName( String cacheKey ) throws Exception
+	{
+		return FileBrowserChecksums.ToHexString( MessageDigest.getInstance( "MD5" ).digest( cacheKey.getBytes( "UTF-8" ) ) ) + ".jpg";
+	}
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.yasirkula.unity;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Records the latest calls of the public FileBrowser functions (operation, authority, duration, query count, copied bytes and
+// provider call status) into a fixed-size ring buffer that can be dumped for bug reports. Writers claim slots with an atomic
+// counter and publish immutable entries, so recording never blocks. While a system trace is being captured, the calls are
+// also wrapped in android.os.Trace sections and the calls that exceed the slow call threshold are marked on a counter track.
+// Fed by FileBrowserMetrics while enabled, disabled by default
+public class FileBrowserTrace
+{
+	private static final int CAPACITY = 256; // Must be a power of two
+	private static final String SLOW_CALL_COUNTER = "FileBrowserSlowCall";
+
+	private static class Entry
+	{
+		public final long sequence;
+		public final long timestamp;
+		public final String operation;
+		public final String authority;
+		public final long duration; // In microseconds
+		public final int queryCount;
+		public final long bytesCopied;
+		public final int status;
+
+		public Entry( long sequence, long timestamp, String operation, String authority, long duration, int queryCount, long bytesCopied, int status )
+		{
+			this.sequence = sequence;
+			this.timestamp = timestamp;
+			this.operation = operation;
+			this.authority = authority;
+			this.duration = duration;
+			this.queryCount = queryCount;
+			this.bytesCopied = bytesCopied;
+			this.status = status;
+		}
+	}
+
+	private static final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<Entry>( CAPACITY );
+	private static final AtomicLong nextSequence = new AtomicLong();
+
+	private static volatile boolean enabled;
+	private static volatile long slowCallThreshold; // In microseconds
+
+	private static final FileBrowserMetrics.Listener metricsListener = new FileBrowserMetrics.Listener()
+	{
+		@Override
+		public boolean OnBegin( String operation )
+		{
+			return BeginSection( operation );
+		}
+
+		@Override
+		public void OnEnd( String operation, String authority, long duration, int queryCount, long bytesCopied, boolean isSectionStarted )
+		{
+			if( isSectionStarted )
+				Trace.endSection();
+
+			Record( operation, authority, duration, queryCount, bytesCopied );
+		}
+	};
+
+	public static void SetEnabled( boolean enabled, long slowCallThresholdMillis )
+	{
+		FileBrowserTrace.slowCallThreshold = Math.max( 0L, slowCallThresholdMillis ) * 1000L;
+		FileBrowserTrace.enabled = enabled;
+		FileBrowserMetrics.SetListener( enabled ? metricsListener : null );
+	}
+
+	public static boolean IsEnabled()
+	{
+		return enabled;
+	}
+
+	public static void Clear()
+	{
+		for( int i = 0; i < CAPACITY; i++ )
+			entries.set( i, null );
+	}
+
+	// Returns true if a section was started, in which case it must be ended on the same thread
+	private static boolean BeginSection( String operation )
+	{
+		if( !enabled || Build.VERSION.SDK_INT < 29 || !Trace.isEnabled() )
+			return false;
+
+		Trace.beginSection( "FileBrowser." + operation );
+		return true;
+	}
+
+	private static void Record( String operation, String authority, long duration, int queryCount, long bytesCopied )
+	{
+		if( !enabled )
+			return;
+
+		long sequence = nextSequence.getAndIncrement();
+		entries.set( (int) ( sequence & ( CAPACITY - 1 ) ), new Entry( sequence, System.currentTimeMillis(), operation, authority, duration, queryCount, bytesCopied, FileBrowserProviderCalls.GetStatus() ) );
+
+		// Trace sections can't be emitted retroactively, so slow calls are marked as spikes on a counter track right after their sections
+		if( duration >= slowCallThreshold && Build.VERSION.SDK_INT >= 29 && Trace.isEnabled() )
+		{
+			Trace.setCounter( SLOW_CALL_COUNTER, duration / 1000L );
+			Trace.setCounter( SLOW_CALL_COUNTER, 0L );
+		}
+	}
+
+	// Returns the recorded calls from oldest to newest, one call per line
+	public static String Dump()
+	{
+		Entry[] snapshot = new Entry[CAPACITY];
+		int count = 0;
+		for( int i = 0; i < CAPACITY; i++ )
+		{
+			Entry entry = entries.get( i );
+			if( entry != null )
+				snapshot[count++] = entry;
+		}
+
+		Arrays.sort( snapshot, 0, count, new Comparator<Entry>()
+		{
+			@Override
+			public int compare( Entry entry1, Entry entry2 )
+			{
+				return entry1.sequence < entry2.sequence ? -1 : ( entry1.sequence > entry2.sequence ? 1 : 0 );
+			}
+		} );
+
+		long slowCallThreshold = FileBrowserTrace.slowCallThreshold;
+		SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss.SSS", Locale.ENGLISH );
+		StringBuilder result = new StringBuilder( 64 + count * 128 );
+		result.append( "Calls: " ).append( count ).append( ", slow call threshold: " ).append( slowCallThreshold / 1000L ).append( " ms\n" );
+		for( int i = 0; i < count; i++ )
+		{
+			Entry entry = snapshot[i];
+			result.append( dateFormat.format( new Date( entry.timestamp ) ) ).append( ' ' ).append( entry.operation )
+					.append( " authority=" ).append( entry.authority != null && entry.authority.length() > 0 ? entry.authority : "-" )
+					.append( " duration=" ).append( entry.duration ).append( "us queries=" ).append( entry.queryCount )
+					.append( " bytes=" ).append( entry.bytesCopied ).append( " status=" ).append( GetStatusName( entry.status ) );
+
+			if( entry.duration >= slowCallThreshold )
+				result.append( " SLOW" );
+
+			result.append( '\n' );
+		}
+
+		return result.toString();
+	}
+
+	public static boolean Save( String path )
+	{
+		FileOutputStream outputStream = null;
+		try
+		{
+			outputStream = new FileOutputStream( path );
+			outputStream.write( Dump().getBytes( "UTF-8" ) );
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+		finally
+		{
+			if( outputStream != null )
+			{
+				try
+				{
+					outputStream.close();
+				}
+				catch( Exception e )
+				{
+					Log.e( "Unity", "Exception:", e );
+				}
+			}
+		}
+	}
+
+	private static String GetStatusName( int status )
+	{
+		switch( status )
+		{
+			case FileBrowserProviderCalls.STATUS_TIMED_OUT: return "TimedOut";
+			case FileBrowserProviderCalls.STATUS_SKIPPED: return "Skipped";
+			default: return "OK";
+		}
+	}
+}
@@ -0,0 +1,742 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+
+// Copies/moves Storage Access Framework (SAF) files/folders and raw files/folders like FileBrowser.CopyFile and CopyDirectory
+// while persisting the plan (the source entries) and the progress (the completed entries and the byte offset within the
+// current file) in a journal. If the transfer is interrupted (e.g. the app is killed), it can be resumed later: completed
+// entries are skipped and the partially copied file is continued in append mode.
+//
+// Journal files consist of a header that contains the plan, followed by the progress records that are appended while the
+// transfer progresses. A record that was being written while the app was killed is ignored
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserTransfers
+{
+	private static final int JOURNAL_VERSION = 1;
+	private static final String JOURNAL_DIRECTORY = "SimpleFileBrowserTransfers";
+	private static final String JOURNAL_EXTENSION = ".journal";
+	private static final String TEMPORARY_JOURNAL_EXTENSION = ".tmp";
+
+	private static final byte RECORD_COMPLETED = 1;
+	private static final byte RECORD_OFFSET = 2;
+
+	// The current file's offset is journaled after every this many bytes
+	private static final long OFFSET_RECORD_INTERVAL = 8L * 1024L * 1024L;
+
+	private static class Item
+	{
+		public final boolean isDirectory;
+		public final int parentIndex; // -1 for the transferred entry itself
+		public final String name;
+		public final String sourceRawUri;
+		public final long size;
+		public final long lastModified;
+
+		public Item( boolean isDirectory, int parentIndex, String name, String sourceRawUri, long size, long lastModified )
+		{
+			this.isDirectory = isDirectory;
+			this.parentIndex = parentIndex;
+			this.name = name;
+			this.sourceRawUri = sourceRawUri;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+	}
+
+	static class Journal
+	{
+		public final String id;
+		public final File file;
+		public String sourceRawUri;
+		public String destinationRawUri;
+		public boolean isDirectory;
+		public boolean isMoveOperation;
+
+		// Folders precede their contents
+		public ArrayList<Item> items;
+		public boolean[] completedItems;
+		public int completedItemCount;
+
+		// The partially copied file
+		public int offsetItem = -1;
+		public long offset;
+
+		// Length of the journal up to its last complete record (-1 if unknown)
+		public long length = -1L;
+
+		private DataOutputStream recordStream;
+
+		public Journal( String id, File file )
+		{
+			this.id = id;
+			this.file = file;
+		}
+
+		public void RecordCompleted( int index ) throws IOException
+		{
+			GetRecordStream().writeByte( RECORD_COMPLETED );
+			recordStream.writeInt( index );
+			recordStream.flush();
+
+			completedItems[index] = true;
+			completedItemCount++;
+		}
+
+		public void RecordOffset( int index, long offset ) throws IOException
+		{
+			GetRecordStream().writeByte( RECORD_OFFSET );
+			recordStream.writeInt( index );
+			recordStream.writeLong( offset );
+			recordStream.flush();
+		}
+
+		public void Close()
+		{
+			if( recordStream != null )
+			{
+				try
+				{
+					recordStream.close();
+				}
+				catch( IOException e )
+				{
+					// The records were flushed already
+				}
+
+				recordStream = null;
+			}
+		}
+
+		private DataOutputStream GetRecordStream() throws IOException
+		{
+			// Records are flushed immediately, they survive the app being killed without having to sync the file
+			if( recordStream == null )
+			{
+				// Discard the incomplete record (if any) so that the new records can be read back
+				FileOutputStream stream = new FileOutputStream( file, true );
+				if( length >= 0L && stream.getChannel().size() > length )
+					stream.getChannel().truncate( length );
+
+				recordStream = new DataOutputStream( new BufferedOutputStream( stream, 64 ) );
+			}
+
+			return recordStream;
+		}
+	}
+
+	// Resolves (and creates, if necessary) the destination entries of the plan's items
+	private static class Destinations
+	{
+		private final Context context;
+		private final Journal journal;
+		private final String[] rawUris;
+		private final HashMap<Integer, FileBrowserColumnarListing> folderContents = new HashMap<Integer, FileBrowserColumnarListing>();
+
+		public Destinations( Context context, Journal journal )
+		{
+			this.context = context;
+			this.journal = journal;
+			this.rawUris = new String[journal.items.size()];
+		}
+
+		public String Get( int index ) throws IOException
+		{
+			if( rawUris[index] != null )
+				return rawUris[index];
+
+			Item item = journal.items.get( index );
+			String rawUri;
+			if( item.parentIndex < 0 )
+			{
+				rawUri = journal.destinationRawUri;
+				if( item.isDirectory && !FileBrowserPathUtils.IsSAFPath( rawUri ) )
+					new File( rawUri ).mkdirs();
+			}
+			else
+			{
+				String parentRawUri = Get( item.parentIndex );
+				if( FileBrowserPathUtils.IsSAFPath( parentRawUri ) )
+				{
+					// Entries that were created by the interrupted attempt are found by their names
+					FileBrowserColumnarListing contents = folderContents.get( item.parentIndex );
+					if( contents == null )
+					{
+						contents = new FileBrowserSAFEntry( context, Uri.parse( parentRawUri ) ).listFilesColumnar();
+						if( contents == null )
+							throw new IOException( "Couldn't list " + parentRawUri );
+
+						folderContents.put( item.parentIndex, contents );
+					}
+
+					rawUri = FileBrowser.FindSAFEntryWithNameOrCreateNew( context, parentRawUri, contents, item.isDirectory, item.name );
+				}
+				else
+				{
+					File file = new File( parentRawUri, item.name );
+					if( item.isDirectory )
+						file.mkdirs();
+
+					rawUri = file.getPath();
+				}
+			}
+
+			if( rawUri == null || rawUri.length() == 0 )
+				throw new IOException( "Couldn't create the destination of " + item.sourceRawUri );
+
+			rawUris[index] = rawUri;
+			return rawUri;
+		}
+	}
+
+	// Counts the bytes that were read so that the length of the journal up to its last complete record is known
+	private static class CountingInputStream extends FilterInputStream
+	{
+		public long count;
+
+		public CountingInputStream( InputStream input )
+		{
+			super( input );
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int result = super.read();
+			if( result >= 0 )
+				count++;
+
+			return result;
+		}
+
+		@Override
+		public int read( byte[] buffer, int offset, int length ) throws IOException
+		{
+			int result = super.read( buffer, offset, length );
+			if( result > 0 )
+				count += result;
+
+			return result;
+		}
+
+		@Override
+		public long skip( long byteCount ) throws IOException
+		{
+			long result = super.skip( byteCount );
+			count += result;
+			return result;
+		}
+	}
+
+	private static final HashSet<String> runningTransfers = new HashSet<String>();
+
+	// Returns true if the transfer is completed. Otherwise, its journal is kept so that the transfer can be resumed (see GetPending)
+	public static boolean Start( Context context, String sourceRawUri, String destinationRawUri, boolean isDirectory, boolean isMoveOperation )
+	{
+		// Moving the entry within the same volume/provider doesn't require copying its contents, nor a journal
+		boolean isSourceSAF = FileBrowserPathUtils.IsSAFPath( sourceRawUri );
+		if( isMoveOperation && isSourceSAF == FileBrowserPathUtils.IsSAFPath( destinationRawUri ) )
+		{
+			if( isSourceSAF ? FileBrowser.TryMoveSAFEntry( context, sourceRawUri, destinationRawUri, isDirectory ) : FileBrowser.TryMoveRawEntry( sourceRawUri, destinationRawUri, isDirectory ) )
+				return true;
+		}
+
+		Journal journal;
+		try
+		{
+			journal = CreateJournal( context, sourceRawUri, destinationRawUri, isDirectory, isMoveOperation );
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+
+		return Run( context, journal );
+	}
+
+	// Returns null if the transfer doesn't exist
+	static Journal Load( Context context, String id )
+	{
+		File file = GetJournalFile( context, id );
+		return file != null ? ReadJournal( id, file ) : null;
+	}
+
+	// Returns true if the transfer is completed. Returns false if the transfer is already running or fails again
+	static boolean Resume( Context context, Journal journal )
+	{
+		return Run( context, journal );
+	}
+
+	// Result is formatted as "count<>" followed by "id<>sourceRawUri<>destinationRawUri<>isMoveOperation<>completedEntryCount<>entryCount<>"
+	// for each interrupted transfer where isMoveOperation is 1 or 0. Running transfers are omitted
+	public static String GetPending( Context context )
+	{
+		StringBuilder result = new StringBuilder( 256 );
+		int count = 0;
+
+		File[] files = new File( context.getFilesDir(), JOURNAL_DIRECTORY ).listFiles();
+		if( files != null )
+		{
+			for( int i = 0; i < files.length; i++ )
+			{
+				String fileName = files[i].getName();
+				if( fileName.endsWith( TEMPORARY_JOURNAL_EXTENSION ) )
+				{
+					// The app was killed while the plan was being written, the transfer hasn't started yet
+					files[i].delete();
+					continue;
+				}
+
+				if( !fileName.endsWith( JOURNAL_EXTENSION ) )
+					continue;
+
+				String id = fileName.substring( 0, fileName.length() - JOURNAL_EXTENSION.length() );
+				synchronized( runningTransfers )
+				{
+					if( runningTransfers.contains( id ) )
+						continue;
+				}
+
+				Journal journal = ReadJournal( id, files[i] );
+				if( journal == null )
+					continue;
+
+				result.append( id ).append( "<>" ).append( journal.sourceRawUri ).append( "<>" ).append( journal.destinationRawUri ).append( "<>" )
+						.append( journal.isMoveOperation ? 1 : 0 ).append( "<>" ).append( journal.completedItemCount ).append( "<>" ).append( journal.items.size() ).append( "<>" );
+				count++;
+			}
+		}
+
+		return count + "<>" + result.toString();
+	}
+
+	// Deletes the journal of an interrupted transfer, the entries that were copied so far are kept
+	public static void Discard( Context context, String id )
+	{
+		synchronized( runningTransfers )
+		{
+			if( runningTransfers.contains( id ) )
+				return;
+
+			File file = GetJournalFile( context, id );
+			if( file != null )
+				file.delete();
+		}
+	}
+
+	private static boolean Run( Context context, Journal journal )
+	{
+		synchronized( runningTransfers )
+		{
+			if( !runningTransfers.add( journal.id ) )
+				return false;
+		}
+
+		try
+		{
+			FileBrowserPrefetcher.Invalidate();
+
+			Destinations destinations = new Destinations( context, journal );
+			for( int i = 0; i < journal.items.size(); i++ )
+			{
+				if( journal.completedItems[i] )
+					continue;
+
+				FileBrowserIOScheduler.Checkpoint();
+
+				String destinationRawUri = destinations.Get( i );
+				if( !journal.items.get( i ).isDirectory )
+					CopyItem( context, journal, i, destinationRawUri );
+
+				journal.RecordCompleted( i );
+			}
+
+			// If some of the sources couldn't be deleted, the journal is kept so that resuming the transfer retries deleting them
+			if( journal.isMoveOperation && !DeleteSources( context, journal ) )
+				return false;
+
+			journal.Close();
+			journal.file.delete();
+			return true;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return false;
+		}
+		finally
+		{
+			journal.Close();
+
+			synchronized( runningTransfers )
+			{
+				runningTransfers.remove( journal.id );
+			}
+		}
+	}
+
+	// Deletes the sources of the moved items. Entries that weren't in the plan (e.g. files that were created in the source folder
+	// before the transfer was resumed) weren't copied, so only the planned files that haven't changed since are deleted and their
+	// folders are deleted only if they are empty afterwards. Returns false if some of the planned files couldn't be deleted
+	private static boolean DeleteSources( Context context, Journal journal )
+	{
+		boolean result = true;
+		for( int i = journal.items.size() - 1; i >= 0; i-- )
+		{
+			Item item = journal.items.get( i );
+			if( item.isDirectory )
+				continue;
+
+			FileBrowserIOScheduler.Checkpoint();
+
+			if( FileBrowserPathUtils.IsSAFPath( item.sourceRawUri ) )
+			{
+				FileBrowserSAFEntry source = new FileBrowserSAFEntry( context, Uri.parse( item.sourceRawUri ) );
+				if( source.length() == item.size && source.lastModified() == item.lastModified && !source.delete() && !source.isMissing() )
+				{
+					Log.e( "Unity", "Couldn't delete moved file: " + item.sourceRawUri );
+					result = false;
+				}
+			}
+			else
+			{
+				File source = new File( item.sourceRawUri );
+				if( source.exists() && source.length() == item.size && source.lastModified() == item.lastModified && !source.delete() )
+				{
+					Log.e( "Unity", "Couldn't delete moved file: " + item.sourceRawUri );
+					result = false;
+				}
+			}
+		}
+
+		// Folders precede their contents in the plan, so iterating backwards deletes the children before their parents
+		for( int i = journal.items.size() - 1; i >= 0; i-- )
+		{
+			Item item = journal.items.get( i );
+			if( !item.isDirectory )
+				continue;
+
+			if( FileBrowserPathUtils.IsSAFPath( item.sourceRawUri ) )
+			{
+				FileBrowserSAFEntry source = new FileBrowserSAFEntry( context, Uri.parse( item.sourceRawUri ) );
+				FileBrowserColumnarListing contents = source.listFilesColumnar();
+				if( contents != null && contents.GetCount() == 0 )
+					source.delete();
+			}
+			else
+			{
+				File source = new File( item.sourceRawUri );
+				String[] contents = source.list();
+				if( contents != null && contents.length == 0 )
+					source.delete();
+			}
+		}
+
+		return result;
+	}
+
+	private static void CopyItem( Context context, Journal journal, int index, String destinationRawUri ) throws IOException
+	{
+		Item item = journal.items.get( index );
+		boolean isSourceSAF = FileBrowserPathUtils.IsSAFPath( item.sourceRawUri );
+		boolean isDestinationSAF = FileBrowserPathUtils.IsSAFPath( destinationRawUri );
+
+		long offset = 0L;
+		if( journal.offsetItem == index && journal.offset > 0L )
+		{
+			// Continue the partially copied file only if the source hasn't changed since. The destination was truncated when the
+			// file was first opened, so the bytes that were written after the last journaled offset are valid, as well
+			long sourceSize, sourceLastModified, destinationSize;
+			if( isSourceSAF )
+			{
+				FileBrowserSAFEntry source = new FileBrowserSAFEntry( context, Uri.parse( item.sourceRawUri ) );
+				sourceSize = source.length();
+				sourceLastModified = source.lastModified();
+			}
+			else
+			{
+				File source = new File( item.sourceRawUri );
+				sourceSize = source.length();
+				sourceLastModified = source.lastModified();
+			}
+
+			if( isDestinationSAF )
+				destinationSize = new FileBrowserSAFEntry( context, Uri.parse( destinationRawUri ) ).length();
+			else
+				destinationSize = new File( destinationRawUri ).length();
+
+			if( sourceSize == item.size && sourceLastModified == item.lastModified && destinationSize >= journal.offset && destinationSize <= sourceSize )
+				offset = destinationSize;
+		}
+
+		InputStream input = isSourceSAF ? context.getContentResolver().openInputStream( Uri.parse( item.sourceRawUri ) ) : new FileInputStream( item.sourceRawUri );
+		if( input == null )
+			throw new IOException( "Couldn't open " + item.sourceRawUri );
+
+		try
+		{
+			Skip( input, offset );
+
+			OutputStream output;
+			if( isDestinationSAF )
+				output = context.getContentResolver().openOutputStream( Uri.parse( destinationRawUri ), offset > 0L ? "wa" : "rwt" );
+			else
+				output = new FileOutputStream( destinationRawUri, offset > 0L );
+
+			if( output == null )
+				throw new IOException( "Couldn't open " + destinationRawUri );
+
+			try
+			{
+				Copy( journal, index, input, output, offset );
+			}
+			finally
+			{
+				output.close();
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+
+	private static void Copy( Journal journal, int index, InputStream input, OutputStream output, long offset ) throws IOException
+	{
+		byte[] buffer = FileBrowserBufferPool.Acquire();
+		try
+		{
+			long nextRecordOffset = offset + OFFSET_RECORD_INTERVAL;
+			int len;
+			while( ( len = input.read( buffer ) ) > 0 )
+			{
+				output.write( buffer, 0, len );
+				offset += len;
+				FileBrowserMetrics.OnBytesCopied( len );
+
+				if( offset >= nextRecordOffset )
+				{
+					output.flush();
+					journal.RecordOffset( index, offset );
+					nextRecordOffset = offset + OFFSET_RECORD_INTERVAL;
+
+					FileBrowserIOScheduler.Checkpoint();
+				}
+			}
+		}
+		finally
+		{
+			FileBrowserBufferPool.Release( buffer );
+		}
+	}
+
+	private static void Skip( InputStream input, long byteCount ) throws IOException
+	{
+		while( byteCount > 0L )
+		{
+			long skipped = input.skip( byteCount );
+			if( skipped <= 0L )
+			{
+				// Some streams can't skip, read the bytes instead
+				if( input.read() < 0 )
+					throw new EOFException();
+
+				skipped = 1L;
+			}
+
+			byteCount -= skipped;
+		}
+	}
+
+	private static Journal CreateJournal( Context context, String sourceRawUri, String destinationRawUri, boolean isDirectory, boolean isMoveOperation ) throws IOException
+	{
+		ArrayList<Item> items = new ArrayList<Item>();
+		if( isDirectory )
+		{
+			// Folders are listed breadth-first, each folder's contents are appended after it
+			items.add( new Item( true, -1, "", sourceRawUri, 0L, 0L ) );
+			for( int i = 0; i < items.size(); i++ )
+			{
+				Item folder = items.get( i );
+				if( !folder.isDirectory )
+					continue;
+
+				FileBrowserIOScheduler.Checkpoint();
+
+				ArrayList<FileBrowserEntryInfo> contents = FileBrowser.ListEntriesWithAttributes( context, folder.sourceRawUri );
+				if( contents == null )
+					throw new IOException( "Couldn't list " + folder.sourceRawUri );
+
+				for( int j = 0; j < contents.size(); j++ )
+				{
+					FileBrowserEntryInfo content = contents.get( j );
+					items.add( new Item( content.isDirectory, i, content.name, content.rawUri, content.size, content.lastModified ) );
+				}
+			}
+		}
+		else if( FileBrowserPathUtils.IsSAFPath( sourceRawUri ) )
+		{
+			FileBrowserSAFEntry source = new FileBrowserSAFEntry( context, Uri.parse( sourceRawUri ) );
+			items.add( new Item( false, -1, "", sourceRawUri, source.length(), source.lastModified() ) );
+		}
+		else
+		{
+			File source = new File( sourceRawUri );
+			items.add( new Item( false, -1, "", sourceRawUri, source.length(), source.lastModified() ) );
+		}
+
+		File directory = new File( context.getFilesDir(), JOURNAL_DIRECTORY );
+		directory.mkdirs();
+
+		// The plan is written to a temporary file first so that a journal is either complete or doesn't exist
+		String id = UUID.randomUUID().toString();
+		File file = new File( directory, id + JOURNAL_EXTENSION );
+		File temporaryFile = new File( directory, id + TEMPORARY_JOURNAL_EXTENSION );
+
+		DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temporaryFile ) ) );
+		try
+		{
+			output.writeInt( JOURNAL_VERSION );
+			output.writeUTF( sourceRawUri );
+			output.writeUTF( destinationRawUri );
+			output.writeBoolean( isDirectory );
+			output.writeBoolean( isMoveOperation );
+			output.writeInt( items.size() );
+			for( int i = 0; i < items.size(); i++ )
+			{
+				Item item = items.get( i );
+				output.writeBoolean( item.isDirectory );
+				output.writeInt( item.parentIndex );
+				output.writeUTF( item.name );
+				output.writeUTF( item.sourceRawUri );
+				output.writeLong( item.size );
+				output.writeLong( item.lastModified );
+			}
+		}
+		finally
+		{
+			output.close();
+		}
+
+		if( !temporaryFile.renameTo( file ) )
+		{
+			temporaryFile.delete();
+			throw new IOException( "Couldn't create the transfer journal" );
+		}
+
+		Journal journal = new Journal( id, file );
+		journal.sourceRawUri = sourceRawUri;
+		journal.destinationRawUri = destinationRawUri;
+		journal.isDirectory = isDirectory;
+		journal.isMoveOperation = isMoveOperation;
+		journal.items = items;
+		journal.completedItems = new boolean[items.size()];
+		return journal;
+	}
+
+	// Returns null if the journal doesn't exist or is corrupt
+	private static Journal ReadJournal( String id, File file )
+	{
+		if( !file.isFile() )
+			return null;
+
+		Journal journal = new Journal( id, file );
+		try
+		{
+			CountingInputStream countingInput = new CountingInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+			DataInputStream input = new DataInputStream( countingInput );
+			try
+			{
+				if( input.readInt() != JOURNAL_VERSION )
+					return null;
+
+				journal.sourceRawUri = input.readUTF();
+				journal.destinationRawUri = input.readUTF();
+				journal.isDirectory = input.readBoolean();
+				journal.isMoveOperation = input.readBoolean();
+
+				int itemCount = input.readInt();
+				journal.items = new ArrayList<Item>( itemCount );
+				for( int i = 0; i < itemCount; i++ )
+					journal.items.add( new Item( input.readBoolean(), input.readInt(), input.readUTF(), input.readUTF(), input.readLong(), input.readLong() ) );
+
+				journal.completedItems = new boolean[itemCount];
+				journal.length = countingInput.count;
+				try
+				{
+					while( true )
+					{
+						byte record = input.readByte();
+						int index = input.readInt();
+						if( index < 0 || index >= itemCount )
+							break;
+
+						if( record == RECORD_COMPLETED )
+						{
+							if( !journal.completedItems[index] )
+							{
+								journal.completedItems[index] = true;
+								journal.completedItemCount++;
+							}
+						}
+						else if( record == RECORD_OFFSET )
+						{
+							long offset = input.readLong();
+							journal.offsetItem = index;
+							journal.offset = offset;
+						}
+						else
+							break;
+
+						journal.length = countingInput.count;
+					}
+				}
+				catch( EOFException e )
+				{
+					// Reached the last record (which may be incomplete)
+				}
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return null;
+		}
+
+		return journal;
+	}
+
+	private static File GetJournalFile( Context context, String id )
+	{
+		// Ids are file names, reject paths
+		if( id.length() == 0 || id.indexOf( '/' ) >= 0 || id.indexOf( '\\' ) >= 0 || id.startsWith( "." ) )
+			return null;
+
+		return new File( new File( context.getFilesDir(), JOURNAL_DIRECTORY ), id + JOURNAL_EXTENSION );
+	}
+}
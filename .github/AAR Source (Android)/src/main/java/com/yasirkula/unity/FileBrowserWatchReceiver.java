@@ -0,0 +1,6 @@
+package com.yasirkula.unity;
+
+public interface FileBrowserWatchReceiver
+{
+	void OnFolderChanged( String rawUri, String changes );
+}
\ No newline at end of file
@@ -0,0 +1,391 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Watches raw folders with FileObserver and Storage Access Framework (SAF) folders with ContentObserver. Change events are
+// debounced and coalesced on a dedicated thread, then the folder's changes are reported to the receiver on that thread
+//
+// Changes are formatted as "count<>" followed by "XYname<>rawUri<>" for each changed entry where X is c for created, d for
+// deleted and m for modified entries, and Y is d for folders and f for files. A count of -1 means that the watched folder
+// itself was deleted or moved
+public class FileBrowserWatcher
+{
+	// Changes are reported after no new event arrives for DEBOUNCE_DELAY milliseconds, but no later than MAX_DELAY
+	// milliseconds after the first event (so that continuously changing folders are still reported)
+	private static final long DEBOUNCE_DELAY = 200L;
+	private static final long MAX_DELAY = 1000L;
+
+	private static final char CHANGE_CREATED = FileBrowserListingDiff.CHANGE_CREATED;
+	private static final char CHANGE_DELETED = FileBrowserListingDiff.CHANGE_DELETED;
+	private static final char CHANGE_MODIFIED = FileBrowserListingDiff.CHANGE_MODIFIED;
+
+	private static final int RAW_EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM | FileObserver.MOVED_TO
+			| FileObserver.CLOSE_WRITE | FileObserver.ATTRIB | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+	private static final int RAW_EVENT_IS_DIRECTORY = 0x40000000; // IN_ISDIR
+
+	private static abstract class Watch implements Runnable
+	{
+		public final String rawUri;
+		public final FileBrowserWatchReceiver receiver;
+
+		private boolean isScheduled;
+		private long firstEventTime;
+		public volatile boolean isStopped;
+
+		public Watch( String rawUri, FileBrowserWatchReceiver receiver )
+		{
+			this.rawUri = rawUri;
+			this.receiver = receiver;
+		}
+
+		// Must be called on the watcher thread
+		protected void OnEvent()
+		{
+			long time = SystemClock.uptimeMillis();
+			if( !isScheduled )
+			{
+				isScheduled = true;
+				firstEventTime = time;
+			}
+			else
+				handler.removeCallbacks( this );
+
+			handler.postDelayed( this, Math.max( 0L, Math.min( DEBOUNCE_DELAY, firstEventTime + MAX_DELAY - time ) ) );
+		}
+
+		@Override
+		public void run()
+		{
+			isScheduled = false;
+			if( isStopped )
+				return;
+
+			String changes = CollectChanges();
+			if( changes != null && !isStopped )
+				receiver.OnFolderChanged( rawUri, changes );
+		}
+
+		// Returns null if nothing has changed since the last call
+		protected abstract String CollectChanges();
+
+		public abstract boolean Start( Context context ) throws Exception;
+
+		public void Stop()
+		{
+			isStopped = true;
+			handler.removeCallbacks( this );
+		}
+	}
+
+	private static class Change
+	{
+		public char type;
+		public boolean isDirectory;
+
+		public Change( char type, boolean isDirectory )
+		{
+			this.type = type;
+			this.isDirectory = isDirectory;
+		}
+	}
+
+	// Raw folders report each entry's changes, so only the affected entries are inspected
+	private static class RawWatch extends Watch
+	{
+		private FileObserver observer;
+
+		private final LinkedHashMap<String, Change> pendingChanges = new LinkedHashMap<String, Change>();
+		private boolean isFolderRemoved;
+
+		public RawWatch( String rawUri, FileBrowserWatchReceiver receiver )
+		{
+			super( rawUri, receiver );
+		}
+
+		@Override
+		@SuppressWarnings( "deprecation" )
+		public boolean Start( Context context )
+		{
+			if( !new File( rawUri ).isDirectory() )
+				return false;
+
+			observer = new FileObserver( rawUri, RAW_EVENTS )
+			{
+				@Override
+				public void onEvent( final int event, final String path )
+				{
+					handler.post( new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							if( !isStopped )
+								RecordEvent( event, path );
+						}
+					} );
+				}
+			};
+
+			observer.startWatching();
+			return true;
+		}
+
+		@Override
+		public void Stop()
+		{
+			super.Stop();
+			observer.stopWatching();
+		}
+
+		private void RecordEvent( int event, String path )
+		{
+			boolean isDirectory = ( event & RAW_EVENT_IS_DIRECTORY ) != 0;
+			switch( event & FileObserver.ALL_EVENTS )
+			{
+				case FileObserver.CREATE:
+				case FileObserver.MOVED_TO:
+					RecordChange( path, CHANGE_CREATED, isDirectory );
+					break;
+				case FileObserver.DELETE:
+				case FileObserver.MOVED_FROM:
+					RecordChange( path, CHANGE_DELETED, isDirectory );
+					break;
+				case FileObserver.CLOSE_WRITE:
+				case FileObserver.ATTRIB:
+					RecordChange( path, CHANGE_MODIFIED, isDirectory );
+					break;
+				case FileObserver.DELETE_SELF:
+				case FileObserver.MOVE_SELF:
+					isFolderRemoved = true;
+					OnEvent();
+					break;
+			}
+		}
+
+		private void RecordChange( String name, char type, boolean isDirectory )
+		{
+			if( name == null || name.length() == 0 )
+				return;
+
+			// Coalesce the new change with the entry's pending change
+			Change change = pendingChanges.get( name );
+			if( change == null )
+				pendingChanges.put( name, new Change( type, isDirectory ) );
+			else if( change.type == CHANGE_CREATED && type == CHANGE_DELETED )
+				pendingChanges.remove( name ); // Temporary file
+			else
+			{
+				if( change.type == CHANGE_DELETED && type == CHANGE_CREATED )
+					change.type = CHANGE_MODIFIED; // Replaced
+				else if( change.type != CHANGE_CREATED || type != CHANGE_MODIFIED )
+					change.type = type;
+
+				change.isDirectory = isDirectory;
+			}
+
+			OnEvent();
+		}
+
+		@Override
+		protected String CollectChanges()
+		{
+			if( isFolderRemoved )
+			{
+				pendingChanges.clear();
+				return "-1" + FileBrowserListingCodec.SEPARATOR;
+			}
+
+			if( pendingChanges.size() == 0 )
+				return null;
+
+			StringBuilder result = new StringBuilder( pendingChanges.size() * 128 + 8 );
+			FileBrowserListingCodec.AppendHeader( result, pendingChanges.size() );
+			for( Map.Entry<String, Change> entry : pendingChanges.entrySet() )
+			{
+				Change change = entry.getValue();
+				File file = new File( rawUri, entry.getKey() );
+
+				result.append( change.type );
+				FileBrowserListingCodec.AppendEntry( result, change.type != CHANGE_DELETED ? file.isDirectory() : change.isDirectory, entry.getKey(), file.getPath() );
+			}
+
+			pendingChanges.clear();
+			return result.toString();
+		}
+	}
+
+	// SAF providers only report that a folder's contents have changed, so the folder is re-listed and compared with its
+	// previous contents. The children cursor is kept open because some providers (e.g. ExternalStorageProvider) monitor
+	// the folder only while there is an open cursor for it
+	private static class SAFWatch extends Watch
+	{
+		private FileBrowserSAFEntry folder;
+		private Cursor childrenCursor;
+		private ContentObserver observer;
+		private Context context;
+
+		private HashMap<String, FileBrowserEntryInfo> contents = new HashMap<String, FileBrowserEntryInfo>();
+
+		public SAFWatch( String rawUri, FileBrowserWatchReceiver receiver )
+		{
+			super( rawUri, receiver );
+		}
+
+		@Override
+		@TargetApi( Build.VERSION_CODES.LOLLIPOP )
+		public boolean Start( Context context ) throws Exception
+		{
+			this.context = context;
+
+			folder = new FileBrowserSAFEntry( context, Uri.parse( rawUri ) );
+			if( !folder.exists() || !folder.isDirectory() )
+				return false;
+
+			Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree( folder.getUri(), DocumentsContract.getDocumentId( folder.getUri() ) );
+
+			childrenCursor = FileBrowserProviderCalls.Query( context.getContentResolver(), childrenUri, new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID } );
+
+			// Stop isn't called for watches that fail to start, so the cursor must be closed here in that case
+			boolean isStarted = false;
+			try
+			{
+				ArrayList<FileBrowserEntryInfo> entries = folder.listFilesWithAttributes();
+				if( entries == null )
+					return false;
+
+				contents = FileBrowserListingDiff.ToMap( entries );
+
+				observer = new ContentObserver( handler )
+				{
+					@Override
+					public void onChange( boolean selfChange )
+					{
+						if( !isStopped )
+							OnEvent();
+					}
+				};
+
+				context.getContentResolver().registerContentObserver( childrenUri, true, observer );
+				isStarted = true;
+				return true;
+			}
+			finally
+			{
+				if( !isStarted && childrenCursor != null )
+				{
+					childrenCursor.close();
+					childrenCursor = null;
+				}
+			}
+		}
+
+		@Override
+		public void Stop()
+		{
+			super.Stop();
+
+			try
+			{
+				context.getContentResolver().unregisterContentObserver( observer );
+				if( childrenCursor != null )
+					childrenCursor.close();
+			}
+			catch( Exception e )
+			{
+				Log.e( "Unity", "Exception:", e );
+			}
+		}
+
+		@Override
+		protected String CollectChanges()
+		{
+			ArrayList<FileBrowserEntryInfo> entries = folder.listFilesWithAttributes();
+			if( entries == null )
+			{
+				// A failed listing is retried on the next change event, the folder is reported as deleted only if the provider confirms it
+				if( !folder.isMissing() )
+					return null;
+
+				contents.clear();
+				return "-1" + FileBrowserListingCodec.SEPARATOR;
+			}
+
+			HashMap<String, FileBrowserEntryInfo> newContents = FileBrowserListingDiff.ToMap( entries );
+
+			StringBuilder changes = new StringBuilder( 256 );
+			int changeCount = FileBrowserListingDiff.AppendChanges( changes, contents, entries, newContents, false );
+
+			contents = newContents;
+			if( changeCount == 0 )
+				return null;
+
+			return changeCount + FileBrowserListingCodec.SEPARATOR + changes.toString();
+		}
+	}
+
+	private static HandlerThread handlerThread;
+	private static Handler handler;
+
+	private static final HashMap<Integer, Watch> watches = new HashMap<Integer, Watch>();
+	private static int nextWatchId = 1;
+
+	// Returns the watch's id which must be passed to Unwatch when the folder no longer needs to be watched (or 0 on failure)
+	public static synchronized int Watch( Context context, String rawUri, FileBrowserWatchReceiver receiver )
+	{
+		if( handlerThread == null )
+		{
+			handlerThread = new HandlerThread( "FileBrowserWatcher" );
+			handlerThread.setDaemon( true );
+			handlerThread.start();
+			handler = new Handler( handlerThread.getLooper() );
+		}
+
+		Watch watch = FileBrowserPathUtils.IsSAFPath( rawUri ) ? new SAFWatch( rawUri, receiver ) : new RawWatch( rawUri, receiver );
+		try
+		{
+			if( !watch.Start( context.getApplicationContext() ) )
+				return 0;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return 0;
+		}
+
+		int watchId = nextWatchId++;
+		watches.put( watchId, watch );
+		return watchId;
+	}
+
+	public static synchronized void Unwatch( int watchId )
+	{
+		Watch watch = watches.remove( watchId );
+		if( watch != null )
+			watch.Stop();
+	}
+
+	public static synchronized void UnwatchAll()
+	{
+		for( Watch watch : watches.values() )
+			watch.Stop();
+
+		watches.clear();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.yasirkula.unity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared background threads that the plugin uses for parallel file operations. This class must not depend on the Android framework
+public class FileBrowserWorkers
+{
+	private static ExecutorService executor;
+
+	public static synchronized ExecutorService GetExecutor()
+	{
+		if( executor == null )
+			executor = Executors.newCachedThreadPool( CreateThreadFactory( "FileBrowserWorker" ) );
+
+		return executor;
+	}
+
+	// Creates daemon threads so that the plugin's threads never keep the process alive
+	public static ThreadFactory CreateThreadFactory( final String name )
+	{
+		return new ThreadFactory()
+		{
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread( Runnable runnable )
+			{
+				Thread thread = new Thread( runnable, name + "-" + threadCount.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+	}
+}
\ No newline at end of file
@@ -0,0 +1,647 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.provider.DocumentsProvider;
+
+import org.robolectric.Robolectric;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// An in-memory DocumentsProvider for Robolectric tests, so that the benchmarks measure the plugin and the simulated IPC latency
+// rather than the local filesystem and large trees (100k entries) can be created quickly. Document ids are "fake:" followed by
+// the document's relative path (like ExternalStorageProvider's "primary:" ids) so that the plugin's uri heuristics
+// (e.g. GetParentUriCandidates) apply to them, too. Each call is delayed by the configured latency to simulate a provider that
+// runs in another process.
+//
+// File contents are kept in memory, too. Since openDocument must return a real file descriptor, a file's contents are copied
+// to a spool file inside the spool directory while a descriptor is opened for it. Once a file is opened for writing, the spool
+// file becomes its contents until the file is deleted
+public class FakeDocumentsProvider extends DocumentsProvider
+{
+	public static final String AUTHORITY = "com.yasirkula.unity.test.documents";
+	public static final String ROOT_DOCUMENT_ID = "fake:";
+
+	private static final String[] DEFAULT_ROOT_PROJECTION = new String[] { DocumentsContract.Root.COLUMN_ROOT_ID, DocumentsContract.Root.COLUMN_DOCUMENT_ID,
+			DocumentsContract.Root.COLUMN_TITLE, DocumentsContract.Root.COLUMN_FLAGS };
+	private static final String[] DEFAULT_DOCUMENT_PROJECTION = new String[] { DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE,
+			DocumentsContract.Document.COLUMN_DISPLAY_NAME, DocumentsContract.Document.COLUMN_SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED,
+			DocumentsContract.Document.COLUMN_FLAGS };
+
+	private static final byte[] EMPTY_DATA = new byte[0];
+
+	private static class Document
+	{
+		public final boolean isDirectory;
+		public String name;
+		public Document parent;
+		public final LinkedHashMap<String, Document> children; // null for files
+		public byte[] data = EMPTY_DATA; // Shared between the files created by CreateTree, never modified in place
+		public File spoolFile; // Replaces data once the file is opened for writing
+		public long lastModified = System.currentTimeMillis();
+		public boolean isReadOnly;
+		public boolean isBroken;
+
+		public Document( boolean isDirectory, String name )
+		{
+			this.isDirectory = isDirectory;
+			this.name = name;
+			this.children = isDirectory ? new LinkedHashMap<String, Document>() : null;
+		}
+
+		public long GetSize()
+		{
+			return isDirectory ? 0L : ( spoolFile != null ? spoolFile.length() : data.length );
+		}
+
+		public long GetLastModified()
+		{
+			return spoolFile != null ? Math.max( lastModified, spoolFile.lastModified() ) : lastModified;
+		}
+
+		public String GetDocumentId()
+		{
+			if( parent == null )
+				return ROOT_DOCUMENT_ID;
+
+			StringBuilder path = new StringBuilder( name );
+			for( Document ancestor = parent; ancestor.parent != null; ancestor = ancestor.parent )
+				path.insert( 0, '/' ).insert( 0, ancestor.name );
+
+			return path.insert( 0, ROOT_DOCUMENT_ID ).toString();
+		}
+	}
+
+	private static final Object lock = new Object();
+	private static Document root;
+	private static File spoolDirectory;
+	private static int spoolFileCount;
+
+	private static volatile long latency;
+	private static final AtomicInteger callCount = new AtomicInteger();
+
+	// Registers an empty provider with Robolectric's ContentResolver, the spool files are created inside spoolDirectory
+	public static void Install( File spoolDirectory )
+	{
+		synchronized( lock )
+		{
+			root = new Document( true, "" );
+			FakeDocumentsProvider.spoolDirectory = spoolDirectory;
+		}
+
+		latency = 0L;
+		callCount.set( 0 );
+
+		// DocumentsProvider refuses to start unless it is declared like a real documents provider
+		ProviderInfo info = new ProviderInfo();
+		info.authority = AUTHORITY;
+		info.exported = true;
+		info.grantUriPermissions = true;
+		info.readPermission = Manifest.permission.MANAGE_DOCUMENTS;
+		info.writePermission = Manifest.permission.MANAGE_DOCUMENTS;
+		Robolectric.buildContentProvider( FakeDocumentsProvider.class ).create( info );
+	}
+
+	public static void SetLatency( long latencyMillis )
+	{
+		latency = Math.max( 0L, latencyMillis );
+	}
+
+	// Returns the number of provider calls since Install
+	public static int GetCallCount()
+	{
+		return callCount.get();
+	}
+
+	// Returns the tree uri that grants access to the folder at relativePath ("" for the root folder)
+	public static Uri GetTreeUri( String relativePath )
+	{
+		return DocumentsContract.buildTreeDocumentUri( AUTHORITY, ROOT_DOCUMENT_ID + relativePath );
+	}
+
+	// Returns the raw uri of the entry at relativePath as the plugin sees it: a document uri inside the root folder's tree
+	public static String GetRawUri( String relativePath )
+	{
+		return DocumentsContract.buildDocumentUriUsingTree( GetTreeUri( "" ), ROOT_DOCUMENT_ID + relativePath ).toString();
+	}
+
+	public static boolean Exists( String relativePath )
+	{
+		synchronized( lock )
+		{
+			return Find( relativePath ) != null;
+		}
+	}
+
+	public static boolean IsDirectory( String relativePath )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			return document != null && document.isDirectory;
+		}
+	}
+
+	// Returns the names of the folder's children or null if it isn't a folder
+	public static String[] GetChildNames( String relativePath )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			if( document == null || !document.isDirectory )
+				return null;
+
+			return document.children.keySet().toArray( new String[document.children.size()] );
+		}
+	}
+
+	// Returns -1 if the file doesn't exist
+	public static long GetSize( String relativePath )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			return document != null ? document.GetSize() : -1L;
+		}
+	}
+
+	// Returns null if the file doesn't exist
+	public static byte[] GetData( String relativePath ) throws IOException
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			if( document == null || document.isDirectory )
+				return null;
+
+			return document.spoolFile != null ? ReadFile( document.spoolFile ) : document.data.clone();
+		}
+	}
+
+	public static void SetLastModified( String relativePath, long lastModified )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			if( document != null )
+			{
+				document.lastModified = lastModified;
+				if( document.spoolFile != null )
+					document.spoolFile.setLastModified( lastModified );
+			}
+		}
+	}
+
+	// Read-only documents can't be written, renamed, moved or deleted and read-only folders can't have new children
+	public static void SetReadOnly( String relativePath, boolean isReadOnly )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			if( document != null )
+				document.isReadOnly = isReadOnly;
+		}
+	}
+
+	// Broken documents are listed as usual but can't be opened, e.g. to interrupt a copy
+	public static void SetBroken( String relativePath, boolean isBroken )
+	{
+		synchronized( lock )
+		{
+			Document document = Find( relativePath );
+			if( document != null )
+				document.isBroken = isBroken;
+		}
+	}
+
+	// Creates the folder at relativePath and its missing parent folders
+	public static void CreateFolder( String relativePath )
+	{
+		synchronized( lock )
+		{
+			GetOrCreateFolder( relativePath );
+		}
+	}
+
+	// Creates (or replaces) the file at relativePath, its missing parent folders are created, too
+	public static void CreateFile( String relativePath, byte[] data )
+	{
+		synchronized( lock )
+		{
+			int separatorIndex = relativePath.lastIndexOf( '/' );
+			Document parent = GetOrCreateFolder( separatorIndex >= 0 ? relativePath.substring( 0, separatorIndex ) : "" );
+			Document file = new Document( false, relativePath.substring( separatorIndex + 1 ) );
+			file.data = data;
+			AddChild( parent, file );
+		}
+	}
+
+	// Creates fileCount files of fileSize bytes ("File0.bin", "File1.bin"...) inside the folder at relativePath
+	public static void CreateFiles( String relativePath, int fileCount, int fileSize )
+	{
+		byte[] data = CreateData( fileSize );
+		synchronized( lock )
+		{
+			Document folder = GetOrCreateFolder( relativePath );
+			for( int i = 0; i < fileCount; i++ )
+			{
+				Document file = new Document( false, "File" + i + ".bin" );
+				file.data = data;
+				AddChild( folder, file );
+			}
+		}
+	}
+
+	// Creates depth nested folders ("Level1/Level2/...") inside the folder at relativePath and fileCount files of fileSize bytes
+	// ("File0.bin", "File1.bin"...) in that folder and each of the nested folders
+	public static void CreateTree( String relativePath, int depth, int fileCount, int fileSize )
+	{
+		String folderPath = relativePath;
+		for( int level = 0; level <= depth; level++ )
+		{
+			if( level > 0 )
+				folderPath = folderPath.length() > 0 ? ( folderPath + "/Level" + level ) : ( "Level" + level );
+
+			CreateFiles( folderPath, fileCount, fileSize );
+		}
+	}
+
+	// Returns fileSize bytes with a recognizable pattern
+	public static byte[] CreateData( int fileSize )
+	{
+		byte[] data = new byte[fileSize];
+		for( int i = 0; i < data.length; i++ )
+			data[i] = (byte) i;
+
+		return data;
+	}
+
+	@Override
+	public boolean onCreate()
+	{
+		return true;
+	}
+
+	@Override
+	public Cursor queryRoots( String[] projection )
+	{
+		OnCall( null );
+
+		MatrixCursor result = new MatrixCursor( projection != null ? projection : DEFAULT_ROOT_PROJECTION );
+		result.newRow().add( DocumentsContract.Root.COLUMN_ROOT_ID, "fake" ).add( DocumentsContract.Root.COLUMN_DOCUMENT_ID, ROOT_DOCUMENT_ID )
+				.add( DocumentsContract.Root.COLUMN_TITLE, "Fake" ).add( DocumentsContract.Root.COLUMN_FLAGS, DocumentsContract.Root.FLAG_SUPPORTS_CREATE | DocumentsContract.Root.FLAG_SUPPORTS_IS_CHILD );
+
+		return result;
+	}
+
+	@Override
+	public Cursor queryDocument( String documentId, String[] projection ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		MatrixCursor result = new MatrixCursor( projection != null ? projection : DEFAULT_DOCUMENT_PROJECTION );
+		synchronized( lock )
+		{
+			AddRow( result, documentId, GetExistingDocument( documentId ) );
+		}
+
+		return result;
+	}
+
+	@Override
+	public Cursor queryChildDocuments( String parentDocumentId, String[] projection, String sortOrder ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		synchronized( lock )
+		{
+			Document parent = GetExistingDocument( parentDocumentId );
+			if( !parent.isDirectory )
+				throw new FileNotFoundException( parentDocumentId );
+
+			String childIdPrefix = parentDocumentId.equals( ROOT_DOCUMENT_ID ) ? ROOT_DOCUMENT_ID : ( parentDocumentId + "/" );
+			MatrixCursor result = new MatrixCursor( projection != null ? projection : DEFAULT_DOCUMENT_PROJECTION, parent.children.size() );
+			for( Document child : parent.children.values() )
+				AddRow( result, childIdPrefix + child.name, child );
+
+			return result;
+		}
+	}
+
+	@Override
+	public ParcelFileDescriptor openDocument( String documentId, String mode, CancellationSignal signal ) throws FileNotFoundException
+	{
+		OnCall( signal );
+
+		int parsedMode = ParcelFileDescriptor.parseMode( mode );
+		boolean isWriteMode = mode.indexOf( 'w' ) >= 0;
+		synchronized( lock )
+		{
+			Document document = GetExistingDocument( documentId );
+			if( document.isDirectory || document.isBroken || ( isWriteMode && document.isReadOnly ) )
+				throw new FileNotFoundException( "Can't open " + documentId + " in " + mode + " mode" );
+
+			try
+			{
+				if( document.spoolFile == null )
+				{
+					File spoolFile = CreateSpoolFile( document.data );
+					if( !isWriteMode )
+					{
+						// Each reader gets its own copy of the in-memory contents, the copies are deleted with the spool directory
+						return ParcelFileDescriptor.open( spoolFile, parsedMode );
+					}
+
+					document.spoolFile = spoolFile;
+					document.data = EMPTY_DATA;
+				}
+
+				if( isWriteMode )
+					document.lastModified = System.currentTimeMillis();
+
+				return ParcelFileDescriptor.open( document.spoolFile, parsedMode );
+			}
+			catch( IOException e )
+			{
+				throw new IllegalStateException( e );
+			}
+		}
+	}
+
+	@Override
+	public String createDocument( String parentDocumentId, String mimeType, String displayName ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		synchronized( lock )
+		{
+			Document parent = GetExistingDocument( parentDocumentId );
+			if( !parent.isDirectory || parent.isReadOnly )
+				throw new IllegalStateException( "Can't create " + displayName + " inside " + parentDocumentId );
+
+			// Like most providers, a unique name is picked if the name is occupied
+			String name = displayName;
+			for( int i = 1; parent.children.containsKey( name ); i++ )
+				name = displayName + " (" + i + ")";
+
+			Document document = new Document( DocumentsContract.Document.MIME_TYPE_DIR.equals( mimeType ), name );
+			AddChild( parent, document );
+			return document.GetDocumentId();
+		}
+	}
+
+	@Override
+	public void deleteDocument( String documentId ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		synchronized( lock )
+		{
+			Document document = GetExistingDocument( documentId );
+			if( document.parent == null || document.isReadOnly )
+				throw new IllegalStateException( "Couldn't delete " + documentId );
+
+			document.parent.children.remove( document.name );
+			document.parent.lastModified = System.currentTimeMillis();
+			document.parent = null;
+			DeleteSpoolFiles( document );
+		}
+	}
+
+	@Override
+	public String renameDocument( String documentId, String displayName ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		synchronized( lock )
+		{
+			Document document = GetExistingDocument( documentId );
+			if( document.parent == null || document.isReadOnly || document.parent.children.containsKey( displayName ) )
+				throw new IllegalStateException( "Couldn't rename " + documentId );
+
+			Document parent = document.parent;
+			parent.children.remove( document.name );
+			document.name = displayName;
+			AddChild( parent, document );
+			return document.GetDocumentId();
+		}
+	}
+
+	@Override
+	public String moveDocument( String sourceDocumentId, String sourceParentDocumentId, String targetParentDocumentId ) throws FileNotFoundException
+	{
+		OnCall( null );
+
+		synchronized( lock )
+		{
+			Document document = GetExistingDocument( sourceDocumentId );
+			Document targetParent = GetExistingDocument( targetParentDocumentId );
+			if( document.parent == null || document.isReadOnly || !targetParent.isDirectory || targetParent.isReadOnly || targetParent.children.containsKey( document.name ) )
+				throw new IllegalStateException( "Couldn't move " + sourceDocumentId );
+
+			for( Document ancestor = targetParent; ancestor != null; ancestor = ancestor.parent )
+			{
+				if( ancestor == document )
+					throw new IllegalStateException( "Couldn't move " + sourceDocumentId + " into itself" );
+			}
+
+			document.parent.children.remove( document.name );
+			document.parent.lastModified = System.currentTimeMillis();
+			AddChild( targetParent, document );
+			return document.GetDocumentId();
+		}
+	}
+
+	@Override
+	public boolean isChildDocument( String parentDocumentId, String documentId )
+	{
+		OnCall( null );
+
+		String prefix = parentDocumentId.equals( ROOT_DOCUMENT_ID ) ? ROOT_DOCUMENT_ID : ( parentDocumentId + "/" );
+		return documentId.length() > prefix.length() && documentId.startsWith( prefix );
+	}
+
+	@Override
+	public DocumentsContract.Path findDocumentPath( String parentDocumentId, String childDocumentId ) throws FileNotFoundException
+	{
+		OnCall( null );
+		synchronized( lock )
+		{
+			GetExistingDocument( childDocumentId );
+		}
+
+		if( parentDocumentId == null )
+			parentDocumentId = ROOT_DOCUMENT_ID;
+
+		// The path starts with the parent and each following segment adds one path component
+		ArrayList<String> path = new ArrayList<String>();
+		path.add( parentDocumentId );
+		for( int index = childDocumentId.indexOf( '/', parentDocumentId.length() + 1 ); index >= 0; index = childDocumentId.indexOf( '/', index + 1 ) )
+			path.add( childDocumentId.substring( 0, index ) );
+
+		if( !childDocumentId.equals( parentDocumentId ) )
+			path.add( childDocumentId );
+
+		return new DocumentsContract.Path( null, path );
+	}
+
+	private static void OnCall( CancellationSignal signal )
+	{
+		callCount.incrementAndGet();
+
+		long latency = FakeDocumentsProvider.latency;
+		if( latency > 0L )
+		{
+			SystemClock.sleep( latency );
+			if( signal != null )
+				signal.throwIfCanceled();
+		}
+	}
+
+	private static void AddRow( MatrixCursor cursor, String documentId, Document document )
+	{
+		int flags = 0;
+		if( !document.isReadOnly )
+		{
+			flags = DocumentsContract.Document.FLAG_SUPPORTS_DELETE | DocumentsContract.Document.FLAG_SUPPORTS_RENAME | DocumentsContract.Document.FLAG_SUPPORTS_MOVE;
+			flags |= document.isDirectory ? DocumentsContract.Document.FLAG_DIR_SUPPORTS_CREATE : DocumentsContract.Document.FLAG_SUPPORTS_WRITE;
+		}
+
+		cursor.newRow().add( DocumentsContract.Document.COLUMN_DOCUMENT_ID, documentId )
+				.add( DocumentsContract.Document.COLUMN_MIME_TYPE, document.isDirectory ? DocumentsContract.Document.MIME_TYPE_DIR : "application/octet-stream" )
+				.add( DocumentsContract.Document.COLUMN_DISPLAY_NAME, document.parent == null ? "Fake" : document.name )
+				.add( DocumentsContract.Document.COLUMN_SIZE, document.GetSize() )
+				.add( DocumentsContract.Document.COLUMN_LAST_MODIFIED, document.GetLastModified() )
+				.add( DocumentsContract.Document.COLUMN_FLAGS, flags );
+	}
+
+	// Must be called while holding the lock. Returns null if the document doesn't exist
+	private static Document Find( String relativePath )
+	{
+		Document document = root;
+		if( relativePath.length() == 0 )
+			return document;
+
+		for( String name : relativePath.split( "/" ) )
+		{
+			if( document == null || !document.isDirectory )
+				return null;
+
+			document = document.children.get( name );
+		}
+
+		return document;
+	}
+
+	private static Document GetExistingDocument( String documentId ) throws FileNotFoundException
+	{
+		Document document = documentId.startsWith( ROOT_DOCUMENT_ID ) ? Find( documentId.substring( ROOT_DOCUMENT_ID.length() ) ) : null;
+		if( document == null )
+			throw new FileNotFoundException( documentId );
+
+		return document;
+	}
+
+	private static Document GetOrCreateFolder( String relativePath )
+	{
+		Document folder = root;
+		if( relativePath.length() == 0 )
+			return folder;
+
+		for( String name : relativePath.split( "/" ) )
+		{
+			Document child = folder.children.get( name );
+			if( child == null || !child.isDirectory )
+			{
+				child = new Document( true, name );
+				AddChild( folder, child );
+			}
+
+			folder = child;
+		}
+
+		return folder;
+	}
+
+	private static void AddChild( Document parent, Document child )
+	{
+		Document previousChild = parent.children.put( child.name, child );
+		if( previousChild != null && previousChild != child )
+		{
+			previousChild.parent = null;
+			DeleteSpoolFiles( previousChild );
+		}
+
+		child.parent = parent;
+		parent.lastModified = System.currentTimeMillis();
+	}
+
+	private static File CreateSpoolFile( byte[] data ) throws IOException
+	{
+		File spoolFile = new File( spoolDirectory, "Spool" + ( spoolFileCount++ ) + ".bin" );
+		FileOutputStream output = new FileOutputStream( spoolFile );
+		try
+		{
+			output.write( data );
+		}
+		finally
+		{
+			output.close();
+		}
+
+		return spoolFile;
+	}
+
+	private static void DeleteSpoolFiles( Document document )
+	{
+		if( document.spoolFile != null )
+		{
+			document.spoolFile.delete();
+			document.spoolFile = null;
+		}
+
+		if( document.isDirectory )
+		{
+			for( Document child : document.children.values() )
+				DeleteSpoolFiles( child );
+		}
+	}
+
+	private static byte[] ReadFile( File file ) throws IOException
+	{
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream input = new FileInputStream( file );
+		try
+		{
+			int totalLength = 0;
+			while( totalLength < data.length )
+			{
+				int len = input.read( data, totalLength, data.length - totalLength );
+				if( len < 0 )
+					break;
+
+				totalLength += len;
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+
+		return data;
+	}
+}
@@ -0,0 +1,188 @@
+package com.yasirkula.unity;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+
+// Measures the wall time and the number of ContentResolver queries of the plugin's Storage Access Framework (SAF) functions
+// on large folders. FileBrowserBenchmarkTest runs it against FakeDocumentsProvider whose latency simulates the providers' IPC
+@TargetApi( Build.VERSION_CODES.Q )
+public class FileBrowserBenchmark
+{
+	private static final String COPY_DESTINATION_FOLDER_NAME = "SimpleFileBrowserBenchmarkCopy";
+
+	// Maximum number of operations that are passed to FileBrowserBatch at once while creating the benchmark tree
+	private static final int CREATE_BATCH_SIZE = 1000;
+
+	// Sums the query counts that FileBrowserMetrics reports for the benchmarked calls. Calls of other threads (e.g. prefetching)
+	// are ignored
+	private static class QueryCounter implements FileBrowserMetrics.Listener
+	{
+		private final Thread thread = Thread.currentThread();
+		private long queryCount;
+
+		@Override
+		public boolean OnBegin( String operation )
+		{
+			return false;
+		}
+
+		@Override
+		public void OnEnd( String operation, String authority, long duration, int queryCount, long bytesCopied, boolean beginResult )
+		{
+			if( Thread.currentThread() == thread )
+				this.queryCount += queryCount;
+		}
+
+		// Returns the number of queries since the last call
+		public long Reset()
+		{
+			long result = queryCount;
+			queryCount = 0L;
+			return result;
+		}
+	}
+
+	// Creates depth nested folders ("Level1/Level2/...") inside the SAF folder/raw folder and entryCount empty files inside the
+	// deepest folder. Returns the deepest folder's path which can then be passed to Run (or an empty string on failure)
+	public static String CreateTree( Context context, String rootRawUri, int entryCount, int depth )
+	{
+		try
+		{
+			boolean isSAFFolder = FileBrowserPathUtils.IsSAFPath( rootRawUri );
+
+			String folderRawUri = rootRawUri;
+			for( int i = 1; i <= depth; i++ )
+			{
+				if( isSAFFolder )
+				{
+					folderRawUri = FileBrowser.CreateSAFEntry( context, folderRawUri, true, "Level" + i );
+					if( folderRawUri.length() == 0 )
+						return "";
+				}
+				else
+				{
+					File folder = new File( folderRawUri, "Level" + i );
+					folder.mkdirs();
+					folderRawUri = folder.getPath();
+				}
+			}
+
+			StringBuilder operations = new StringBuilder( CREATE_BATCH_SIZE * ( folderRawUri.length() + 24 ) );
+			for( int i = 0; i < entryCount; i += CREATE_BATCH_SIZE )
+			{
+				operations.setLength( 0 );
+				for( int j = i, end = Math.min( i + CREATE_BATCH_SIZE, entryCount ); j < end; j++ )
+					operations.append( "cf<>" ).append( folderRawUri ).append( "<>" ).append( "File" ).append( j ).append( ".bin<>" );
+
+				FileBrowserBatch.Execute( context, operations.toString() );
+			}
+
+			return folderRawUri;
+		}
+		catch( Exception e )
+		{
+			Log.e( "Unity", "Exception:", e );
+			return "";
+		}
+	}
+
+	// Runs each benchmarked function iterations times on the SAF folder. If scratchRawUri isn't empty, CopyDirectory is also
+	// benchmarked by copying the folder into a temporary folder inside scratchRawUri (which is deleted afterwards)
+	//
+	// Result is formatted as "count<>" followed by "name<>iterations<>totalWallTime<>minWallTime<>maxWallTime<>queryCount<>"
+	// for each function where durations are in microseconds and queryCount is the total number of queries of all iterations.
+	// The queries are counted via the FileBrowserMetrics listener, so FileBrowserTrace is disabled while the benchmark runs
+	public static String Run( Context context, String folderRawUri, String scratchRawUri, int iterations )
+	{
+		QueryCounter queryCounter = new QueryCounter();
+		FileBrowserMetrics.SetListener( queryCounter );
+		try
+		{
+			return Run( context, folderRawUri, scratchRawUri, iterations, queryCounter );
+		}
+		finally
+		{
+			FileBrowserMetrics.SetListener( null );
+		}
+	}
+
+	private static String Run( Context context, String folderRawUri, String scratchRawUri, int iterations, QueryCounter queryCounter )
+	{
+		iterations = Math.max( 1, iterations );
+
+		StringBuilder result = new StringBuilder( 512 );
+		int functionCount = 0;
+
+		// Warm up the provider's process and caches so that the first iteration isn't an outlier
+		FileBrowser.OpenSAFFolder( context, folderRawUri );
+
+		long[] stats = new long[4];
+		for( int function = 0; function < 4; function++ )
+		{
+			String name;
+			switch( function )
+			{
+				case 0: name = "OpenSAFFolder"; break;
+				case 1: name = "GetParentDirectory"; break;
+				case 2: name = "FetchSAFQuickLinks"; break;
+				default:
+					if( scratchRawUri == null || scratchRawUri.length() == 0 )
+						continue;
+
+					name = "CopyDirectory";
+					break;
+			}
+
+			stats[0] = 0L; // Total wall time
+			stats[1] = Long.MAX_VALUE; // Min wall time
+			stats[2] = 0L; // Max wall time
+			stats[3] = 0L; // Query count
+
+			for( int i = 0; i < iterations; i++ )
+			{
+				String copyDestinationRawUri = null;
+				if( function == 3 )
+				{
+					if( FileBrowserPathUtils.IsSAFPath( scratchRawUri ) )
+						copyDestinationRawUri = FileBrowser.CreateSAFEntry( context, scratchRawUri, true, COPY_DESTINATION_FOLDER_NAME );
+					else
+						copyDestinationRawUri = new File( scratchRawUri, COPY_DESTINATION_FOLDER_NAME ).getPath();
+				}
+
+				queryCounter.Reset();
+				long startTime = System.nanoTime();
+				try
+				{
+					switch( function )
+					{
+						case 0: FileBrowser.OpenSAFFolder( context, folderRawUri ); break;
+						case 1: FileBrowser.GetParentDirectory( context, folderRawUri ); break;
+						case 2: FileBrowser.FetchSAFQuickLinks( context ); break;
+						default: FileBrowser.CopyDirectory( context, folderRawUri, copyDestinationRawUri, false ); break;
+					}
+				}
+				finally
+				{
+					long duration = ( System.nanoTime() - startTime ) / 1000L;
+					stats[0] += duration;
+					stats[1] = Math.min( stats[1], duration );
+					stats[2] = Math.max( stats[2], duration );
+					stats[3] += queryCounter.Reset();
+
+					if( copyDestinationRawUri != null )
+						FileBrowser.DeleteEntry( context, copyDestinationRawUri, true );
+				}
+			}
+
+			result.append( name ).append( "<>" ).append( iterations ).append( "<>" ).append( stats[0] ).append( "<>" ).append( stats[1] ).append( "<>" )
+					.append( stats[2] ).append( "<>" ).append( stats[3] ).append( "<>" );
+			functionCount++;
+		}
+
+		return functionCount + "<>" + result.toString();
+	}
+}
\ No newline at end of file
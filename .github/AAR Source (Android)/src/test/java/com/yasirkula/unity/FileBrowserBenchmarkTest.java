@@ -0,0 +1,152 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Runs FileBrowserBenchmark against FakeDocumentsProvider on trees of different shapes: flat folders with 1k, 10k and 100k
+// entries and a deeply nested tree. The results are written to a report file (build/reports/fileBrowserBenchmark.txt by default).
+// The benchmark's latency, iterations and report path can be changed with the fileBrowserBenchmark.latency,
+// fileBrowserBenchmark.iterations and fileBrowserBenchmark.report system properties,
+// e.g. "./gradlew test --tests '*FileBrowserBenchmarkTest' -DfileBrowserBenchmark.latency=20"
+@RunWith( RobolectricTestRunner.class )
+@Config( sdk = Build.VERSION_CODES.TIRAMISU )
+public class FileBrowserBenchmarkTest
+{
+	private static final int FUNCTION_COUNT = 4;
+	private static final int DEEP_TREE_DEPTH = 64;
+	private static final int DEEP_TREE_FILE_COUNT = 4;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Context context;
+	private int iterations;
+	private StringBuilder report;
+
+	@Before
+	public void SetUp() throws Exception
+	{
+		Application application = RuntimeEnvironment.getApplication();
+		Shadows.shadowOf( application ).grantPermissions( Manifest.permission.MANAGE_DOCUMENTS );
+		context = application;
+
+		FakeDocumentsProvider.Install( temporaryFolder.newFolder( "spool" ) );
+		context.getContentResolver().takePersistableUriPermission( FakeDocumentsProvider.GetTreeUri( "" ), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+		FakeDocumentsProvider.CreateFolder( "Scratch" );
+
+		iterations = Integer.getInteger( "fileBrowserBenchmark.iterations", 3 );
+		report = new StringBuilder( 1024 );
+	}
+
+	@After
+	public void TearDown()
+	{
+		FakeDocumentsProvider.SetLatency( 0L );
+		FileBrowserPrefetcher.Invalidate();
+	}
+
+	@Test
+	public void BenchmarkSAFFunctions() throws IOException
+	{
+		// The 1k tree is created via the plugin (FileBrowserBenchmark.CreateTree) so that it is covered, too. The larger trees are
+		// created directly inside the provider. Copying them would take too long with the simulated latency, so CopyDirectory is
+		// benchmarked on the smaller trees only
+		String folderRawUri = FileBrowserBenchmark.CreateTree( context, FakeDocumentsProvider.GetRawUri( "" ), 1000, 3 );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Level1/Level2/Level3" ), folderRawUri );
+		assertEquals( 1000, FakeDocumentsProvider.GetChildNames( "Level1/Level2/Level3" ).length );
+
+		FakeDocumentsProvider.CreateFiles( "Flat10k", 10000, 0 );
+		FakeDocumentsProvider.CreateFiles( "Flat100k", 100000, 0 );
+		FakeDocumentsProvider.CreateTree( "Deep", DEEP_TREE_DEPTH, DEEP_TREE_FILE_COUNT, 16 );
+
+		// The latency is applied after the trees are created so that only the benchmarked functions pay for it
+		FakeDocumentsProvider.SetLatency( Long.getLong( "fileBrowserBenchmark.latency", 2L ) );
+
+		long[] flatListingQueries = Benchmark( "Flat 1k entries", folderRawUri, true );
+		assertTrue( "Listing 10k entries made more queries than listing 1k entries", Benchmark( "Flat 10k entries", FakeDocumentsProvider.GetRawUri( "Flat10k" ), false )[0] <= flatListingQueries[0] );
+		assertTrue( "Listing 100k entries made more queries than listing 1k entries", Benchmark( "Flat 100k entries", FakeDocumentsProvider.GetRawUri( "Flat100k" ), false )[0] <= flatListingQueries[0] );
+
+		// Listing a folder is a single query regardless of its depth, too
+		assertTrue( "Listing the deep tree made more queries than listing a flat folder", Benchmark( "Deep tree (depth " + DEEP_TREE_DEPTH + ")", FakeDocumentsProvider.GetRawUri( "Deep" ), true )[0] <= flatListingQueries[0] );
+
+		FakeDocumentsProvider.SetLatency( 0L );
+		assertEquals( 0, FakeDocumentsProvider.GetChildNames( "Scratch" ).length );
+		assertEquals( 100000, FakeDocumentsProvider.GetChildNames( "Flat100k" ).length );
+
+		WriteReport();
+	}
+
+	// Runs FileBrowserBenchmark on the folder, validates its result and appends it to the report. Returns the average query count
+	// of each function (OpenSAFFolder, GetParentDirectory, FetchSAFQuickLinks, CopyDirectory)
+	private long[] Benchmark( String shape, String folderRawUri, boolean benchmarkCopy )
+	{
+		String result = FileBrowserBenchmark.Run( context, folderRawUri, benchmarkCopy ? FakeDocumentsProvider.GetRawUri( "Scratch" ) : "", iterations );
+
+		// "count<>" followed by "name<>iterations<>totalWallTime<>minWallTime<>maxWallTime<>queryCount<>" for each function
+		String[] fields = result.split( "<>" );
+		int functionCount = Integer.parseInt( fields[0] );
+		assertEquals( benchmarkCopy ? FUNCTION_COUNT : FUNCTION_COUNT - 1, functionCount );
+
+		report.append( shape ).append( '\n' );
+		report.append( String.format( "  %-20s %12s %12s %12s %12s\n", "Function", "Avg (us)", "Min (us)", "Max (us)", "Queries" ) );
+
+		long[] queryCounts = new long[FUNCTION_COUNT];
+		for( int i = 0; i < functionCount; i++ )
+		{
+			String name = fields[1 + i * 6];
+			long totalWallTime = Long.parseLong( fields[1 + i * 6 + 2] );
+			long queryCount = Long.parseLong( fields[1 + i * 6 + 5] );
+
+			assertEquals( String.valueOf( iterations ), fields[1 + i * 6 + 1] );
+			assertTrue( name + " didn't query the provider", queryCount > 0L );
+
+			queryCounts[i] = queryCount / iterations;
+			report.append( String.format( "  %-20s %12d %12s %12s %12d\n", name, totalWallTime / iterations, fields[1 + i * 6 + 3], fields[1 + i * 6 + 4], queryCounts[i] ) );
+		}
+
+		report.append( '\n' );
+		return queryCounts;
+	}
+
+	private void WriteReport() throws IOException
+	{
+		File reportFile = new File( System.getProperty( "fileBrowserBenchmark.report", "build/reports/fileBrowserBenchmark.txt" ) );
+		File reportDirectory = reportFile.getAbsoluteFile().getParentFile();
+		if( reportDirectory != null )
+			reportDirectory.mkdirs();
+
+		Writer writer = new OutputStreamWriter( new FileOutputStream( reportFile ), "UTF-8" );
+		try
+		{
+			writer.write( "FileBrowserBenchmark (" + iterations + " iterations, " + Long.getLong( "fileBrowserBenchmark.latency", 2L ) + " ms latency)\n\n" );
+			writer.write( report.toString() );
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Runs the plugin's batch, sync, archive and transfer functions against FakeDocumentsProvider, including their failure paths
+@RunWith( RobolectricTestRunner.class )
+@Config( sdk = Build.VERSION_CODES.TIRAMISU )
+public class FileBrowserBulkOperationsTest
+{
+	private static final int FILE_SIZE = 1000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Context context;
+
+	@Before
+	public void SetUp() throws Exception
+	{
+		Application application = RuntimeEnvironment.getApplication();
+		Shadows.shadowOf( application ).grantPermissions( Manifest.permission.MANAGE_DOCUMENTS );
+		context = application;
+
+		FakeDocumentsProvider.Install( temporaryFolder.newFolder( "spool" ) );
+	}
+
+	@After
+	public void TearDown()
+	{
+		FileBrowserPrefetcher.Invalidate();
+	}
+
+	@Test
+	public void ExecuteBatchOperationsReportsEachOperation()
+	{
+		FakeDocumentsProvider.CreateFiles( "", 3, FILE_SIZE );
+		FakeDocumentsProvider.SetReadOnly( "File2.bin", true );
+
+		String operations = "cf<>" + FakeDocumentsProvider.GetRawUri( "" ) + "<>New.bin<>"
+				+ "cd<>" + FakeDocumentsProvider.GetRawUri( "" ) + "<>NewFolder<>"
+				+ "r<>" + FakeDocumentsProvider.GetRawUri( "File0.bin" ) + "<>Renamed.bin<>"
+				+ "d<>" + FakeDocumentsProvider.GetRawUri( "File1.bin" ) + "<><>"
+				+ "d<>" + FakeDocumentsProvider.GetRawUri( "File2.bin" ) + "<><>";
+
+		String[] results = FileBrowser.ExecuteBatchOperations( context, operations ).split( "<>", -1 );
+		assertEquals( "5", results[0] );
+		assertEquals( "1" + FakeDocumentsProvider.GetRawUri( "New.bin" ), results[1] );
+		assertEquals( "1" + FakeDocumentsProvider.GetRawUri( "NewFolder" ), results[2] );
+		assertEquals( "1" + FakeDocumentsProvider.GetRawUri( "Renamed.bin" ), results[3] );
+		assertEquals( "1", results[4] );
+		assertEquals( "0", results[5] );
+
+		assertTrue( FakeDocumentsProvider.IsDirectory( "NewFolder" ) );
+		assertEquals( 0L, FakeDocumentsProvider.GetSize( "New.bin" ) );
+		assertEquals( FILE_SIZE, FakeDocumentsProvider.GetSize( "Renamed.bin" ) );
+		assertFalse( FakeDocumentsProvider.Exists( "File0.bin" ) );
+		assertFalse( FakeDocumentsProvider.Exists( "File1.bin" ) );
+		assertTrue( FakeDocumentsProvider.Exists( "File2.bin" ) );
+	}
+
+	@Test
+	public void SyncDirectoryCopiesOnlyChangedFiles() throws IOException
+	{
+		CreateSyncFolders();
+
+		assertEquals( "2<>1<>1<>0<>", FileBrowser.SyncDirectory( context, FakeDocumentsProvider.GetRawUri( "Source" ), FakeDocumentsProvider.GetRawUri( "Destination" ), false, true ) );
+
+		assertArrayEquals( FakeDocumentsProvider.GetData( "Source/File1.bin" ), FakeDocumentsProvider.GetData( "Destination/File1.bin" ) );
+		assertArrayEquals( FakeDocumentsProvider.GetData( "Source/File2.bin" ), FakeDocumentsProvider.GetData( "Destination/File2.bin" ) );
+		assertFalse( FakeDocumentsProvider.Exists( "Destination/Extra.bin" ) );
+
+		// Nothing has changed since the last sync
+		FakeDocumentsProvider.SetLastModified( "Destination/File1.bin", 2000L );
+		FakeDocumentsProvider.SetLastModified( "Destination/File2.bin", 2000L );
+		assertEquals( "0<>3<>0<>0<>", FileBrowser.SyncDirectory( context, FakeDocumentsProvider.GetRawUri( "Source" ), FakeDocumentsProvider.GetRawUri( "Destination" ), false, true ) );
+	}
+
+	@Test
+	public void SyncDirectoryCountsFailedCopiesAndDeletionsAsErrors()
+	{
+		CreateSyncFolders();
+		FakeDocumentsProvider.SetReadOnly( "Destination/File1.bin", true );
+		FakeDocumentsProvider.SetReadOnly( "Destination/Extra.bin", true );
+
+		assertEquals( "1<>1<>0<>2<>", FileBrowser.SyncDirectory( context, FakeDocumentsProvider.GetRawUri( "Source" ), FakeDocumentsProvider.GetRawUri( "Destination" ), false, true ) );
+		assertEquals( 10L, FakeDocumentsProvider.GetSize( "Destination/File1.bin" ) );
+		assertTrue( FakeDocumentsProvider.Exists( "Destination/Extra.bin" ) );
+	}
+
+	@Test
+	public void ExportedArchiveCanBeImported() throws IOException
+	{
+		FakeDocumentsProvider.CreateTree( "Source", 2, 2, FILE_SIZE );
+		FakeDocumentsProvider.CreateFolder( "Imported" );
+
+		File archive = new File( temporaryFolder.getRoot(), "Archive.zip" );
+		assertTrue( FileBrowser.ExportArchive( context, FakeDocumentsProvider.GetRawUri( "Source" ), archive.getPath() ) );
+		assertTrue( FileBrowser.ImportArchive( context, archive.getPath(), FakeDocumentsProvider.GetRawUri( "Imported" ) ) );
+
+		String[] paths = new String[] { "File0.bin", "File1.bin", "Level1/File0.bin", "Level1/File1.bin", "Level1/Level2/File0.bin", "Level1/Level2/File1.bin" };
+		for( int i = 0; i < paths.length; i++ )
+			assertArrayEquals( paths[i], FakeDocumentsProvider.GetData( "Source/" + paths[i] ), FakeDocumentsProvider.GetData( "Imported/" + paths[i] ) );
+	}
+
+	@Test
+	public void ArchiveFunctionsFailIfAnEntryCantBeProcessed()
+	{
+		FakeDocumentsProvider.CreateTree( "Source", 1, 2, FILE_SIZE );
+		FakeDocumentsProvider.CreateFolder( "Imported" );
+
+		File archive = new File( temporaryFolder.getRoot(), "Archive.zip" );
+		assertTrue( FileBrowser.ExportArchive( context, FakeDocumentsProvider.GetRawUri( "Source" ), archive.getPath() ) );
+
+		FakeDocumentsProvider.SetReadOnly( "Imported", true );
+		assertFalse( FileBrowser.ImportArchive( context, archive.getPath(), FakeDocumentsProvider.GetRawUri( "Imported" ) ) );
+
+		FakeDocumentsProvider.SetBroken( "Source/Level1/File1.bin", true );
+		assertFalse( FileBrowser.ExportArchive( context, FakeDocumentsProvider.GetRawUri( "Source" ), new File( temporaryFolder.getRoot(), "Broken.zip" ).getPath() ) );
+	}
+
+	@Test
+	public void FailedMoveKeepsTheSource()
+	{
+		FakeDocumentsProvider.CreateFiles( "", 1, FILE_SIZE );
+		FakeDocumentsProvider.SetBroken( "File0.bin", true );
+
+		File destination = new File( temporaryFolder.getRoot(), "File0.bin" );
+		assertFalse( FileBrowser.CopyFile( context, FakeDocumentsProvider.GetRawUri( "File0.bin" ), destination.getPath(), true ) );
+		assertTrue( FakeDocumentsProvider.Exists( "File0.bin" ) );
+	}
+
+	@Test
+	public void InterruptedMoveCanBeResumed() throws IOException
+	{
+		FakeDocumentsProvider.CreateTree( "Source", 1, 2, FILE_SIZE );
+		FakeDocumentsProvider.SetBroken( "Source/Level1/File1.bin", true );
+
+		// Moving to another storage copies the entries, the last file can't be copied
+		File destination = new File( temporaryFolder.getRoot(), "Destination" );
+		assertFalse( FileBrowser.TransferEntry( context, FakeDocumentsProvider.GetRawUri( "Source" ), destination.getPath(), true, true ) );
+
+		// "count<>" followed by "id<>sourceRawUri<>destinationRawUri<>isMoveOperation<>completedEntryCount<>entryCount<>"
+		String[] pendingTransfers = FileBrowser.GetPendingTransfers( context ).split( "<>" );
+		assertEquals( "1", pendingTransfers[0] );
+		assertEquals( "1", pendingTransfers[4] );
+		assertEquals( "6", pendingTransfers[6] );
+		assertTrue( Integer.parseInt( pendingTransfers[5] ) < 6 );
+		assertTrue( FakeDocumentsProvider.Exists( "Source/File0.bin" ) );
+		assertTrue( FakeDocumentsProvider.Exists( "Source/Level1/File0.bin" ) );
+
+		// A file that is created in the source folder in the meantime isn't part of the transfer, so it mustn't be deleted
+		FakeDocumentsProvider.CreateFile( "Source/New.bin", FakeDocumentsProvider.CreateData( FILE_SIZE ) );
+		FakeDocumentsProvider.SetBroken( "Source/Level1/File1.bin", false );
+		assertTrue( FileBrowser.ResumeTransfer( context, pendingTransfers[1] ) );
+		assertEquals( "0<>", FileBrowser.GetPendingTransfers( context ) );
+
+		String[] paths = new String[] { "File0.bin", "File1.bin", "Level1/File0.bin", "Level1/File1.bin" };
+		for( int i = 0; i < paths.length; i++ )
+			assertArrayEquals( paths[i], FakeDocumentsProvider.CreateData( FILE_SIZE ), ReadFile( new File( destination, paths[i] ) ) );
+
+		assertFalse( new File( destination, "New.bin" ).exists() );
+		assertEquals( Arrays.asList( "New.bin" ), Arrays.asList( FakeDocumentsProvider.GetChildNames( "Source" ) ) );
+	}
+
+	// Source contains File0-2.bin. Destination contains an up-to-date File0.bin, an outdated File1.bin and Extra.bin
+	private static void CreateSyncFolders()
+	{
+		FakeDocumentsProvider.CreateFiles( "Source", 3, FILE_SIZE );
+		FakeDocumentsProvider.CreateFile( "Destination/File0.bin", FakeDocumentsProvider.CreateData( FILE_SIZE ) );
+		FakeDocumentsProvider.CreateFile( "Destination/File1.bin", FakeDocumentsProvider.CreateData( 10 ) );
+		FakeDocumentsProvider.CreateFile( "Destination/Extra.bin", FakeDocumentsProvider.CreateData( 10 ) );
+
+		for( int i = 0; i < 3; i++ )
+			FakeDocumentsProvider.SetLastModified( "Source/File" + i + ".bin", 1000L );
+
+		FakeDocumentsProvider.SetLastModified( "Destination/File0.bin", 2000L );
+	}
+
+	private static byte[] ReadFile( File file ) throws IOException
+	{
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream input = new FileInputStream( file );
+		try
+		{
+			int totalLength = 0;
+			while( totalLength < data.length )
+			{
+				int len = input.read( data, totalLength, data.length - totalLength );
+				if( len < 0 )
+					break;
+
+				totalLength += len;
+			}
+		}
+		finally
+		{
+			input.close();
+		}
+
+		return data;
+	}
+}
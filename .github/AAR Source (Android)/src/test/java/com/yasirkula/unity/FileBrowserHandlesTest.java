@@ -0,0 +1,206 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+// Runs the EntryHandle functions against FakeDocumentsProvider and the raw filesystem
+@RunWith( RobolectricTestRunner.class )
+@Config( sdk = Build.VERSION_CODES.TIRAMISU )
+public class FileBrowserHandlesTest
+{
+	private static final int FILE_SIZE = 1000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Context context;
+
+	@Before
+	public void SetUp() throws Exception
+	{
+		Application application = RuntimeEnvironment.getApplication();
+		Shadows.shadowOf( application ).grantPermissions( Manifest.permission.MANAGE_DOCUMENTS );
+		context = application;
+
+		FakeDocumentsProvider.Install( temporaryFolder.newFolder( "spool" ) );
+		FakeDocumentsProvider.CreateFiles( "Folder", 2, FILE_SIZE );
+	}
+
+	@After
+	public void TearDown()
+	{
+		FileBrowser.ReleaseAllEntryHandles();
+		FileBrowserPrefetcher.Invalidate();
+	}
+
+	@Test
+	public void AcquiringAnEntryTwiceReturnsTheSameHandle()
+	{
+		String rawUri = FakeDocumentsProvider.GetRawUri( "Folder" );
+		int handle = FileBrowser.AcquireEntryHandle( rawUri );
+		assertNotEquals( 0, handle );
+		assertEquals( handle, FileBrowser.AcquireEntryHandle( rawUri ) );
+
+		// The handle stays valid until it is released as many times as it was acquired
+		FileBrowser.ReleaseEntryHandle( handle );
+		assertEquals( rawUri, FileBrowser.EntryHandleRawUri( handle ) );
+		FileBrowser.ReleaseEntryHandle( handle );
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle ) );
+	}
+
+	@Test
+	public void ReleasedHandlesStayInvalidAfterTheirSlotIsReused()
+	{
+		int handle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+		FileBrowser.ReleaseEntryHandle( handle );
+
+		int newHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ) );
+		assertNotEquals( handle, newHandle );
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle ) );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ), FileBrowser.EntryHandleRawUri( newHandle ) );
+
+		// Releasing the stale handle mustn't release the slot's new entry
+		FileBrowser.ReleaseEntryHandle( handle );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ), FileBrowser.EntryHandleRawUri( newHandle ) );
+	}
+
+	@Test
+	public void ReleaseAllInvalidatesEveryHandle()
+	{
+		int handle1 = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+		int handle2 = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ) );
+		FileBrowser.ReleaseAllEntryHandles();
+
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle1 ) );
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle2 ) );
+
+		int newHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+		assertNotEquals( handle1, newHandle );
+		assertNotEquals( handle2, newHandle );
+	}
+
+	@Test
+	public void ReleaseEntryHandlesReleasesEachHandle()
+	{
+		int handle1 = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+		int handle2 = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ) );
+		int handle3 = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder" ) );
+		FileBrowser.ReleaseEntryHandles( handle1 + "<>" + handle2 + "<>" );
+
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle1 ) );
+		assertEquals( "", FileBrowser.EntryHandleRawUri( handle2 ) );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Folder" ), FileBrowser.EntryHandleRawUri( handle3 ) );
+	}
+
+	@Test
+	public void OpenFolderHandleCachesTheAttributes()
+	{
+		FakeDocumentsProvider.CreateFolder( "Folder/Subfolder" );
+		FakeDocumentsProvider.SetLastModified( "Folder/File0.bin", 1234L );
+
+		int folderHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder" ) );
+
+		// "count<>" followed by "handle<>Xname<>size<>lastModified<>" for each entry
+		String[] fields = FileBrowser.OpenFolderHandle( context, folderHandle ).split( "<>" );
+		assertEquals( "3", fields[0] );
+
+		boolean isFileFound = false, isFolderFound = false;
+		for( int i = 1; i < fields.length; i += 4 )
+		{
+			int handle = Integer.parseInt( fields[i] );
+			if( fields[i + 1].equals( "fFile0.bin" ) )
+			{
+				isFileFound = true;
+				assertEquals( String.valueOf( FILE_SIZE ), fields[i + 2] );
+				assertEquals( "1234", fields[i + 3] );
+				assertEquals( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ), FileBrowser.EntryHandleRawUri( handle ) );
+
+				// The cached attributes are returned without querying the provider
+				int callCount = FakeDocumentsProvider.GetCallCount();
+				assertEquals( FILE_SIZE, FileBrowser.EntryHandleSize( context, handle ) );
+				assertEquals( 1234L, FileBrowser.EntryHandleLastModified( context, handle ) );
+				assertEquals( callCount, FakeDocumentsProvider.GetCallCount() );
+			}
+			else if( fields[i + 1].equals( "dSubfolder" ) )
+			{
+				isFolderFound = true;
+				assertEquals( FakeDocumentsProvider.GetRawUri( "Folder/Subfolder" ), FileBrowser.EntryHandleRawUri( handle ) );
+			}
+		}
+
+		assertTrue( isFileFound );
+		assertTrue( isFolderFound );
+	}
+
+	@Test
+	public void RenamingASAFFolderUpdatesItsChildrensHandles() throws IOException
+	{
+		int folderHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder" ) );
+		int fileHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+
+		assertTrue( FileBrowser.RenameEntryHandle( context, folderHandle, "Renamed" ) );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Renamed" ), FileBrowser.EntryHandleRawUri( folderHandle ) );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Renamed/File0.bin" ), FileBrowser.EntryHandleRawUri( fileHandle ) );
+
+		File destination = new File( temporaryFolder.getRoot(), "File0.bin" );
+		assertTrue( FileBrowser.ReadFromEntryHandle( context, fileHandle, destination.getPath() ) );
+		assertEquals( FILE_SIZE, destination.length() );
+	}
+
+	@Test
+	public void RenamingARawFolderUpdatesItsChildrensHandles() throws IOException
+	{
+		File folder = temporaryFolder.newFolder( "Folder" );
+		File file = new File( folder, "File.txt" );
+		assertTrue( file.createNewFile() );
+
+		int folderHandle = FileBrowser.AcquireEntryHandle( folder.getPath() );
+		int fileHandle = FileBrowser.AcquireEntryHandle( file.getPath() );
+
+		assertTrue( FileBrowser.RenameEntryHandle( context, folderHandle, "Renamed" ) );
+		File renamedFolder = new File( temporaryFolder.getRoot(), "Renamed" );
+		assertEquals( renamedFolder.getPath(), FileBrowser.EntryHandleRawUri( folderHandle ) );
+		assertEquals( new File( renamedFolder, "File.txt" ).getPath(), FileBrowser.EntryHandleRawUri( fileHandle ) );
+		assertTrue( new File( FileBrowser.EntryHandleRawUri( fileHandle ) ).isFile() );
+	}
+
+	@Test
+	public void DeleteEntryHandleDeletesTheEntry()
+	{
+		int handle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File0.bin" ) );
+		assertTrue( FileBrowser.DeleteEntryHandle( context, handle ) );
+		assertFalse( FakeDocumentsProvider.Exists( "Folder/File0.bin" ) );
+
+		// Read-only entries can't be deleted
+		FakeDocumentsProvider.SetReadOnly( "Folder/File1.bin", true );
+		int readOnlyHandle = FileBrowser.AcquireEntryHandle( FakeDocumentsProvider.GetRawUri( "Folder/File1.bin" ) );
+		assertFalse( FileBrowser.DeleteEntryHandle( context, readOnlyHandle ) );
+		assertTrue( FakeDocumentsProvider.Exists( "Folder/File1.bin" ) );
+
+		// Stale handles fail without touching any entry
+		FileBrowser.ReleaseEntryHandle( readOnlyHandle );
+		assertFalse( FileBrowser.DeleteEntryHandle( context, readOnlyHandle ) );
+		assertFalse( FileBrowser.CopyEntryHandle( context, readOnlyHandle, new File( temporaryFolder.getRoot(), "Copy.bin" ).getPath(), false, false ) );
+	}
+}
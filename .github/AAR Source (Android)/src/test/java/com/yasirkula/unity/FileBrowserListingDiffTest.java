@@ -0,0 +1,80 @@
+package com.yasirkula.unity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+// FileBrowserListingDiff doesn't depend on the Android framework, so it is tested without Robolectric
+public class FileBrowserListingDiffTest
+{
+	@Test
+	public void ReportsCreatedModifiedAndDeletedEntries()
+	{
+		ArrayList<FileBrowserEntryInfo> previousEntries = Entries( File( "A.txt", "uri/a", 10L ), File( "B.txt", "uri/b", 20L ), Folder( "C", "uri/c" ) );
+		ArrayList<FileBrowserEntryInfo> currentEntries = Entries( File( "A.txt", "uri/a", 10L ), File( "B.txt", "uri/b", 25L ), File( "D.txt", "uri/d", 30L ) );
+
+		assertEquals( "3<>mfB.txt<>uri/b<>cfD.txt<>uri/d<>ddC<>uri/c<>", Diff( previousEntries, currentEntries ) );
+	}
+
+	@Test
+	public void KeepsEntriesWithDuplicateNamesApart()
+	{
+		// Some providers (e.g. Google Drive) allow multiple entries with the same name in a folder
+		ArrayList<FileBrowserEntryInfo> previousEntries = Entries( File( "Photo.jpg", "uri/1", 10L ), File( "Photo.jpg", "uri/2", 20L ) );
+		ArrayList<FileBrowserEntryInfo> currentEntries = Entries( File( "Photo.jpg", "uri/2", 20L ), File( "Photo.jpg", "uri/3", 30L ) );
+
+		assertEquals( "2<>cfPhoto.jpg<>uri/3<>dfPhoto.jpg<>uri/1<>", Diff( previousEntries, currentEntries ) );
+	}
+
+	@Test
+	public void ReportsRenamesThatKeepTheUriAsModifications()
+	{
+		ArrayList<FileBrowserEntryInfo> previousEntries = Entries( File( "Old.txt", "uri/a", 10L ) );
+		ArrayList<FileBrowserEntryInfo> currentEntries = Entries( File( "New.txt", "uri/a", 10L ) );
+
+		assertEquals( "1<>mfNew.txt<>uri/a<>", Diff( previousEntries, currentEntries ) );
+	}
+
+	@Test
+	public void ReportsNothingForIdenticalListings()
+	{
+		ArrayList<FileBrowserEntryInfo> entries = Entries( File( "A.txt", "uri/a", 10L ), Folder( "B", "uri/b" ) );
+		assertEquals( "0<>", Diff( entries, Entries( File( "A.txt", "uri/a", 10L ), Folder( "B", "uri/b" ) ) ) );
+	}
+
+	@Test
+	public void AppendsAttributesWhenRequested()
+	{
+		StringBuilder changes = new StringBuilder();
+		ArrayList<FileBrowserEntryInfo> currentEntries = Entries( File( "A.txt", "uri/a", 10L ) );
+		FileBrowserListingDiff.AppendChanges( changes, FileBrowserListingDiff.ToMap( Entries() ), currentEntries, FileBrowserListingDiff.ToMap( currentEntries ), true );
+
+		assertEquals( "cfA.txt<>uri/a<>10<>1000<>", changes.toString() );
+	}
+
+	// Returns "changeCount<>" followed by the changes without attributes
+	private static String Diff( ArrayList<FileBrowserEntryInfo> previousEntries, ArrayList<FileBrowserEntryInfo> currentEntries )
+	{
+		StringBuilder changes = new StringBuilder();
+		int changeCount = FileBrowserListingDiff.AppendChanges( changes, FileBrowserListingDiff.ToMap( previousEntries ), currentEntries, FileBrowserListingDiff.ToMap( currentEntries ), false );
+		return changeCount + "<>" + changes.toString();
+	}
+
+	private static ArrayList<FileBrowserEntryInfo> Entries( FileBrowserEntryInfo... entries )
+	{
+		return new ArrayList<FileBrowserEntryInfo>( Arrays.asList( entries ) );
+	}
+
+	private static FileBrowserEntryInfo File( String name, String rawUri, long size )
+	{
+		return new FileBrowserEntryInfo( name, rawUri, false, size, 1000L );
+	}
+
+	private static FileBrowserEntryInfo Folder( String name, String rawUri )
+	{
+		return new FileBrowserEntryInfo( name, rawUri, true, 0L, 1000L );
+	}
+}
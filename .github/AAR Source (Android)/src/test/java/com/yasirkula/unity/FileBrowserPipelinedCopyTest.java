@@ -0,0 +1,181 @@
+package com.yasirkula.unity;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+// FileBrowserPipelinedCopy doesn't depend on the Android framework, so it is tested without Robolectric
+public class FileBrowserPipelinedCopyTest
+{
+	@Test
+	public void CopiesSmallStreamsOnTheCallingThread() throws IOException
+	{
+		byte[] data = CreateData( 1000 );
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		assertEquals( data.length, FileBrowserPipelinedCopy.Copy( new ByteArrayInputStream( data ), output ) );
+		assertArrayEquals( data, output.toByteArray() );
+	}
+
+	@Test
+	public void CopiesLargeStreams() throws IOException
+	{
+		// Spans multiple chunks of the reader thread and isn't a multiple of the chunk size
+		byte[] data = CreateData( 5 * 1024 * 1024 + 123 );
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		assertEquals( data.length, FileBrowserPipelinedCopy.Copy( new ByteArrayInputStream( data ), output ) );
+		assertArrayEquals( data, output.toByteArray() );
+	}
+
+	@Test
+	public void CopiesEmptyStreams() throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals( 0L, FileBrowserPipelinedCopy.Copy( new ByteArrayInputStream( new byte[0] ), output ) );
+		assertEquals( 0, output.size() );
+	}
+
+	@Test
+	public void RethrowsReaderIOExceptions()
+	{
+		try
+		{
+			FileBrowserPipelinedCopy.Copy( new FailingInputStream( 1024 * 1024, new IOException( "Read failed" ) ), new ByteArrayOutputStream() );
+			fail( "Copy didn't throw" );
+		}
+		catch( IOException e )
+		{
+			assertEquals( "Read failed", e.getMessage() );
+		}
+	}
+
+	@Test
+	public void RethrowsReaderRuntimeExceptions() throws IOException
+	{
+		// A provider's stream may throw unchecked exceptions (e.g. SecurityException), they mustn't be reported as a completed copy
+		try
+		{
+			FileBrowserPipelinedCopy.Copy( new FailingInputStream( 1024 * 1024, new IllegalStateException( "Provider died" ) ), new ByteArrayOutputStream() );
+			fail( "Copy didn't throw" );
+		}
+		catch( IllegalStateException e )
+		{
+			assertEquals( "Provider died", e.getMessage() );
+		}
+	}
+
+	@Test
+	public void StopsReadingWhenTheOutputFails()
+	{
+		final byte[] data = CreateData( 4 * 1024 * 1024 );
+		final AtomicBoolean isReadAfterReturn = new AtomicBoolean();
+		final AtomicBoolean hasReturned = new AtomicBoolean();
+
+		InputStream input = new ByteArrayInputStream( data )
+		{
+			@Override
+			public synchronized int read( byte[] buffer, int offset, int length )
+			{
+				if( hasReturned.get() )
+					isReadAfterReturn.set( true );
+
+				return super.read( buffer, offset, length );
+			}
+		};
+
+		OutputStream output = new OutputStream()
+		{
+			private int writtenLength;
+
+			@Override
+			public void write( int b ) throws IOException
+			{
+				write( new byte[] { (byte) b }, 0, 1 );
+			}
+
+			@Override
+			public void write( byte[] buffer, int offset, int length ) throws IOException
+			{
+				writtenLength += length;
+				if( writtenLength > FileBrowserBufferPool.BUFFER_SIZE )
+					throw new IOException( "Write failed" );
+			}
+		};
+
+		try
+		{
+			FileBrowserPipelinedCopy.Copy( input, output );
+			fail( "Copy didn't throw" );
+		}
+		catch( IOException e )
+		{
+			assertEquals( "Write failed", e.getMessage() );
+		}
+		finally
+		{
+			hasReturned.set( true );
+		}
+
+		// The caller closes the input as soon as Copy returns, so the reader must have stopped by then
+		assertFalse( isReadAfterReturn.get() );
+	}
+
+	private static byte[] CreateData( int length )
+	{
+		byte[] data = new byte[length];
+		new Random( length ).nextBytes( data );
+		return data;
+	}
+
+	// Returns zeros until failAfterLength bytes are read, then throws the exception
+	private static class FailingInputStream extends InputStream
+	{
+		private final int failAfterLength;
+		private final Exception exception;
+		private int readLength;
+
+		public FailingInputStream( int failAfterLength, Exception exception )
+		{
+			this.failAfterLength = failAfterLength;
+			this.exception = exception;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			byte[] buffer = new byte[1];
+			return read( buffer, 0, 1 ) < 0 ? -1 : ( buffer[0] & 0xFF );
+		}
+
+		@Override
+		public int read( byte[] buffer, int offset, int length ) throws IOException
+		{
+			if( readLength >= failAfterLength )
+			{
+				if( exception instanceof IOException )
+					throw (IOException) exception;
+
+				throw (RuntimeException) exception;
+			}
+
+			length = Math.min( length, failAfterLength - readLength );
+			for( int i = 0; i < length; i++ )
+				buffer[offset + i] = 0;
+
+			readLength += length;
+			return length;
+		}
+	}
+}
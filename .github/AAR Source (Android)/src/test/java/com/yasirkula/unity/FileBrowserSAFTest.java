@@ -0,0 +1,174 @@
+package com.yasirkula.unity;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+// Runs the plugin's Storage Access Framework (SAF) functions against FakeDocumentsProvider
+@RunWith( RobolectricTestRunner.class )
+@Config( sdk = Build.VERSION_CODES.TIRAMISU )
+public class FileBrowserSAFTest
+{
+	private static final int DEPTH = 2;
+	private static final int FILE_COUNT = 3;
+	private static final int FILE_SIZE = 1000;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Context context;
+
+	@Before
+	public void SetUp() throws Exception
+	{
+		Application application = RuntimeEnvironment.getApplication();
+		Shadows.shadowOf( application ).grantPermissions( Manifest.permission.MANAGE_DOCUMENTS );
+		context = application;
+
+		FakeDocumentsProvider.Install( temporaryFolder.newFolder( "spool" ) );
+		FakeDocumentsProvider.CreateTree( "", DEPTH, FILE_COUNT, FILE_SIZE );
+	}
+
+	@After
+	public void TearDown()
+	{
+		// The plugin's state is static and survives between tests
+		FileBrowser.SetProviderCallTimeout( 0, 0 );
+		FileBrowserPrefetcher.Invalidate();
+	}
+
+	@Test
+	public void OpenSAFFolderListsEntries()
+	{
+		ArrayList<FileBrowserEntryInfo> entries = FileBrowserListingCodec.Decode( FileBrowser.OpenSAFFolder( context, FakeDocumentsProvider.GetRawUri( "" ) ), false );
+		assertNotNull( entries );
+		assertEquals( FILE_COUNT + 1, entries.size() );
+
+		int directoryCount = 0;
+		for( int i = 0; i < entries.size(); i++ )
+		{
+			FileBrowserEntryInfo entry = entries.get( i );
+			if( entry.isDirectory )
+			{
+				directoryCount++;
+				assertEquals( "Level1", entry.name );
+				assertEquals( FakeDocumentsProvider.GetRawUri( "Level1" ), entry.rawUri );
+			}
+		}
+
+		assertEquals( 1, directoryCount );
+	}
+
+	@Test
+	public void CopyDirectoryCopiesToRawFolder() throws Exception
+	{
+		File destination = new File( temporaryFolder.getRoot(), "destination" );
+		FileBrowser.CopyDirectory( context, FakeDocumentsProvider.GetRawUri( "" ), destination.getPath(), false );
+
+		AssertTree( destination );
+	}
+
+	@Test
+	public void CopyDirectoryCopiesWithinProvider()
+	{
+		String destinationRawUri = FileBrowser.CreateSAFEntry( context, FakeDocumentsProvider.GetRawUri( "" ), true, "Copy" );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Copy" ), destinationRawUri );
+
+		FileBrowser.CopyDirectory( context, FakeDocumentsProvider.GetRawUri( "Level1" ), destinationRawUri, false );
+
+		assertEquals( FILE_COUNT + 1, FakeDocumentsProvider.GetChildNames( "Copy" ).length );
+		assertEquals( FILE_SIZE, FakeDocumentsProvider.GetSize( "Copy/Level2/File0.bin" ) );
+	}
+
+	@Test
+	public void CopyDirectoryMovesWithinProvider()
+	{
+		String destinationRawUri = FileBrowser.CreateSAFEntry( context, FakeDocumentsProvider.GetRawUri( "" ), true, "Moved" );
+		FileBrowser.CopyDirectory( context, FakeDocumentsProvider.GetRawUri( "Level1/Level2" ), destinationRawUri, true );
+
+		// The folder is moved onto the empty destination folder without a "Moved (1)" duplicate
+		assertFalse( FakeDocumentsProvider.Exists( "Level1/Level2" ) );
+		assertFalse( FakeDocumentsProvider.Exists( "Moved (1)" ) );
+		assertEquals( FILE_COUNT, FakeDocumentsProvider.GetChildNames( "Moved" ).length );
+	}
+
+	@Test
+	public void GetParentDirectoryReturnsParentFolder()
+	{
+		assertEquals( FakeDocumentsProvider.GetRawUri( "Level1" ), FileBrowser.GetParentDirectory( context, FakeDocumentsProvider.GetRawUri( "Level1/Level2" ) ) );
+		assertEquals( FakeDocumentsProvider.GetRawUri( "" ), FileBrowser.GetParentDirectory( context, FakeDocumentsProvider.GetRawUri( "Level1" ) ) );
+	}
+
+	@Test
+	public void FetchSAFQuickLinksReturnsPersistedFolders()
+	{
+		context.getContentResolver().takePersistableUriPermission( FakeDocumentsProvider.GetTreeUri( "" ), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+
+		String quickLinks = FileBrowser.FetchSAFQuickLinks( context );
+		assertEquals( "Fake<>" + FakeDocumentsProvider.GetRawUri( "" ) + "<>1", quickLinks );
+		assertEquals( FileBrowserProviderCalls.STATUS_OK, FileBrowser.GetLastProviderCallStatus() );
+	}
+
+	@Test
+	public void FetchSAFQuickLinksKeepsUnresponsiveFolders()
+	{
+		context.getContentResolver().takePersistableUriPermission( FakeDocumentsProvider.GetTreeUri( "" ), Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION );
+
+		FileBrowser.SetProviderCallTimeout( 50, 0 );
+		FakeDocumentsProvider.SetLatency( 200L );
+
+		assertEquals( "0", FileBrowser.FetchSAFQuickLinks( context ) );
+		assertEquals( FileBrowserProviderCalls.STATUS_TIMED_OUT, FileBrowser.GetLastProviderCallStatus() );
+		assertEquals( 1, context.getContentResolver().getPersistedUriPermissions().size() );
+	}
+
+	@Test
+	public void SlowProviderCallsTimeOut()
+	{
+		FileBrowser.SetProviderCallTimeout( 50, 0 );
+		FakeDocumentsProvider.SetLatency( 200L );
+
+		FileBrowser.OpenSAFFolder( context, FakeDocumentsProvider.GetRawUri( "" ) );
+		assertEquals( FileBrowserProviderCalls.STATUS_TIMED_OUT, FileBrowser.GetLastProviderCallStatus() );
+
+		FakeDocumentsProvider.SetLatency( 0L );
+		FileBrowser.SetProviderCallTimeout( 0, 0 );
+
+		FileBrowser.OpenSAFFolder( context, FakeDocumentsProvider.GetRawUri( "" ) );
+		assertEquals( FileBrowserProviderCalls.STATUS_OK, FileBrowser.GetLastProviderCallStatus() );
+	}
+
+	private static void AssertTree( File folder )
+	{
+		for( int level = 0; level <= DEPTH; level++ )
+		{
+			if( level > 0 )
+				folder = new File( folder, "Level" + level );
+
+			assertTrue( folder.isDirectory() );
+			for( int i = 0; i < FILE_COUNT; i++ )
+				assertEquals( FILE_SIZE, new File( folder, "File" + i + ".bin" ).length() );
+		}
+	}
+}
@@ -0,0 +1,29 @@
+﻿#if UNITY_EDITOR || UNITY_ANDROID
+using UnityEngine;
+
+namespace SimpleFileBrowser
+{
+	public class FBListingReceiveCallbackAndroid : AndroidJavaProxy
+	{
+		// The callback isn't invoked at all if the folder's contents haven't changed, so a single helper is shared instead of creating a
+		// self-destroying helper per request
+		private static FBCallbackHelper callbackHelper;
+
+		private readonly FileBrowser.AndroidListingUpdateCallback callback;
+
+		public FBListingReceiveCallbackAndroid( FileBrowser.AndroidListingUpdateCallback callback ) : base( "com.yasirkula.unity.FileBrowserListingReceiver" )
+		{
+			this.callback = callback;
+
+			if( !callbackHelper )
+				callbackHelper = FBCallbackHelper.Create( false );
+		}
+
+		[UnityEngine.Scripting.Preserve]
+		public void OnListingUpdated( string rawUri, string listing )
+		{
+			callbackHelper.CallOnMainThread( () => callback( rawUri, listing ) );
+		}
+	}
+}
+#endif
\ No newline at end of file
@@ -795,6 +795,7 @@ namespace SimpleFileBrowser
 		public delegate void PermissionCallback( Permission permission );
 #if UNITY_EDITOR || UNITY_ANDROID
 		public delegate void AndroidSAFDirectoryPickCallback( string rawUri, string name );
+		public delegate void AndroidListingUpdateCallback( string rawUri, string listing );
 #endif
 
 		private OnSuccess onSuccess;
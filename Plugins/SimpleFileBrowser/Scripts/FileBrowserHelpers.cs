@@ -430,7 +430,9 @@ namespace SimpleFileBrowser
 #if !UNITY_EDITOR && UNITY_ANDROID
 			if( ShouldUseSAF ) // No need to use ShouldUseSAFForPath because both SAF paths and raw file paths are handled on the native-side
 			{
-				AJC.CallStatic( "CopyFile", Context, sourcePath, destinationPath, false );
+				if( !AJC.CallStatic<bool>( "CopyFile", Context, sourcePath, destinationPath, false ) )
+					throw new IOException( "Couldn't copy " + sourcePath + " to " + destinationPath );
+
 				return;
 			}
 #endif
@@ -442,7 +444,9 @@ namespace SimpleFileBrowser
 #if !UNITY_EDITOR && UNITY_ANDROID
 			if( ShouldUseSAF ) // No need to use ShouldUseSAFForPath because both SAF paths and raw directory paths are handled on the native-side
 			{
-				AJC.CallStatic( "CopyDirectory", Context, sourcePath, destinationPath, false );
+				if( !AJC.CallStatic<bool>( "CopyDirectory", Context, sourcePath, destinationPath, false ) )
+					throw new IOException( "Couldn't copy " + sourcePath + " to " + destinationPath );
+
 				return;
 			}
 #endif
@@ -467,7 +471,9 @@ namespace SimpleFileBrowser
 #if !UNITY_EDITOR && UNITY_ANDROID
 			if( ShouldUseSAF ) // No need to use ShouldUseSAFForPath because both SAF paths and raw file paths are handled on the native-side
 			{
-				AJC.CallStatic( "CopyFile", Context, sourcePath, destinationPath, true );
+				if( !AJC.CallStatic<bool>( "CopyFile", Context, sourcePath, destinationPath, true ) )
+					throw new IOException( "Couldn't move " + sourcePath + " to " + destinationPath );
+
 				return;
 			}
 #endif
@@ -479,7 +485,9 @@ namespace SimpleFileBrowser
 #if !UNITY_EDITOR && UNITY_ANDROID
 			if( ShouldUseSAF ) // No need to use ShouldUseSAFForPath because both SAF paths and raw directory paths are handled on the native-side
 			{
-				AJC.CallStatic( "CopyDirectory", Context, sourcePath, destinationPath, true );
+				if( !AJC.CallStatic<bool>( "CopyDirectory", Context, sourcePath, destinationPath, true ) )
+					throw new IOException( "Couldn't move " + sourcePath + " to " + destinationPath );
+
 				return;
 			}
 #endif
@@ -561,5 +569,108 @@ namespace SimpleFileBrowser
 #endif
 			return new FileInfo( path ).LastWriteTime;
 		}
+
+#if !UNITY_EDITOR && UNITY_ANDROID
+		// Returns the folder's contents as "generation<>0<>count<>" followed by "XName<>path<>size<>lastModified<>" for each entry where X is
+		// d for folders and f for files. If generation is the token that was returned by the previous call for this folder, only the changes
+		// are returned as "generation<>1<>count<>" followed by "CXName<>path<>size<>lastModified<>" for each entry where C is c for created,
+		// m for modified and d for deleted entries. "0<>0<>0<>" is returned if the folder can't be listed
+		public static string OpenFolderDelta( string path, long generation )
+		{
+			return AJC.CallStatic<string>( "OpenFolderDelta", Context, path, generation );
+		}
+
+		// Returns the persisted listing of the folder immediately ("count<>" followed by "XName<>path<>size<>lastModified<>" for each entry,
+		// or an empty string if it was never listed) and revalidates it in the background. If the folder's contents have changed, the
+		// up-to-date listing is passed to callback on the main thread (an empty listing means that the folder can no longer be listed)
+		public static string OpenCachedFolder( string path, FileBrowser.AndroidListingUpdateCallback callback )
+		{
+			return AJC.CallStatic<string>( "OpenCachedFolder", Context, path, new FBListingReceiveCallbackAndroid( callback ) );
+		}
+
+		public static void ClearListingIndex()
+		{
+			AJC.CallStatic( "ClearListingIndex", Context );
+		}
+
+		// The next OpenFolderDelta call for each folder will return the whole folder
+		public static void ClearFolderDeltaSnapshots()
+		{
+			AJC.CallStatic( "ClearFolderDeltaSnapshots" );
+		}
+
+		// Returns a handle for the file/folder that can be passed to the other EntryHandle functions (or 0 if too many handles are acquired).
+		// Acquiring the same path multiple times returns the same handle, each call must be paired with ReleaseEntryHandle
+		public static int AcquireEntryHandle( string path )
+		{
+			return AJC.CallStatic<int>( "AcquireEntryHandle", path );
+		}
+
+		public static void ReleaseEntryHandle( int handle )
+		{
+			AJC.CallStatic( "ReleaseEntryHandle", handle );
+		}
+
+		public static void ReleaseEntryHandles( int[] handles )
+		{
+			System.Text.StringBuilder packedHandles = new System.Text.StringBuilder( handles.Length * 8 );
+			for( int i = 0; i < handles.Length; i++ )
+				packedHandles.Append( handles[i] ).Append( "<>" );
+
+			AJC.CallStatic( "ReleaseEntryHandles", packedHandles.ToString() );
+		}
+
+		public static void ReleaseAllEntryHandles()
+		{
+			AJC.CallStatic( "ReleaseAllEntryHandles" );
+		}
+
+		// Acquires a handle for each entry in the folder and returns "count<>" followed by "handle<>XName<>size<>lastModified<>" for each
+		// entry where X is d for folders and f for files. The returned handles must be released, too
+		public static string OpenFolderHandle( int folderHandle )
+		{
+			return AJC.CallStatic<string>( "OpenFolderHandle", Context, folderHandle );
+		}
+
+		// Returns an empty string if the handle was released
+		public static string EntryHandleRawUri( int handle )
+		{
+			return AJC.CallStatic<string>( "EntryHandleRawUri", handle );
+		}
+
+		// Returns the size that was fetched by OpenFolderHandle without accessing the file (if the entry was listed that way)
+		public static long EntryHandleSize( int handle )
+		{
+			return AJC.CallStatic<long>( "EntryHandleSize", Context, handle );
+		}
+
+		public static System.DateTime EntryHandleLastModified( int handle )
+		{
+			return new System.DateTime( 1970, 1, 1, 0, 0, 0 ).AddMilliseconds( AJC.CallStatic<long>( "EntryHandleLastModified", Context, handle ) );
+		}
+
+		// The handle keeps referring to the renamed entry (and the handles of a renamed folder's descendants are updated)
+		public static bool RenameEntryHandle( int handle, string newName )
+		{
+			return AJC.CallStatic<bool>( "RenameEntryHandle", Context, handle, newName );
+		}
+
+		// The handle must still be released afterwards
+		public static bool DeleteEntryHandle( int handle )
+		{
+			return AJC.CallStatic<bool>( "DeleteEntryHandle", Context, handle );
+		}
+
+		public static bool CopyEntryHandle( int handle, string destinationPath, bool isDirectory, bool isMoveOperation )
+		{
+			return AJC.CallStatic<bool>( "CopyEntryHandle", Context, handle, destinationPath, isDirectory, isMoveOperation );
+		}
+
+		// Copies the file to destinationFile which must be a raw filesystem path (e.g. inside Application.temporaryCachePath)
+		public static bool ReadFromEntryHandle( int handle, string destinationFile )
+		{
+			return AJC.CallStatic<bool>( "ReadFromEntryHandle", Context, handle, destinationFile );
+		}
+#endif
 	}
 }
\ No newline at end of file